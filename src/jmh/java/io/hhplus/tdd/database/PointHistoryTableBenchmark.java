@@ -0,0 +1,70 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.TransactionType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 이력 수(tableSize)에 따른 유저별 이력 조회 시간을 PointHistoryTable(전체 탐색)과 IndexedPointHistoryStore(유저별 인덱스)로 비교합니다.
+ * PointHistoryTable.insert는 건마다 지연(throttle)이 있어 준비 단계가 끝나지 않으므로, 준비 단계에서만 내부 리스트에 직접 이력을 채웁니다.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PointHistoryTableBenchmark {
+
+  private static final int USER_COUNT = 1_000;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int tableSize;
+
+  private PointHistoryTable pointHistoryTable;
+  private IndexedPointHistoryStore indexedStore;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ReflectiveOperationException {
+    List<PointHistory> histories = new ArrayList<>(tableSize);
+    for (int i = 0; i < tableSize; i++) {
+      histories.add(new PointHistory(i + 1, i % USER_COUNT, 100, TransactionType.CHARGE, i));
+    }
+    pointHistoryTable = new PointHistoryTable();
+    Field table = PointHistoryTable.class.getDeclaredField("table");
+    table.setAccessible(true);
+    @SuppressWarnings("unchecked")
+    List<PointHistory> rows = (List<PointHistory>) table.get(pointHistoryTable);
+    rows.addAll(histories);
+    indexedStore = new IndexedPointHistoryStore();
+    indexedStore.insertAll(histories);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<PointHistory> tableSelectAllByUserId() {
+    return pointHistoryTable.selectAllByUserId(ThreadLocalRandom.current().nextLong(USER_COUNT));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<PointHistory> indexedSelectAllByUserId() {
+    return indexedStore.selectAllByUserId(ThreadLocalRandom.current().nextLong(USER_COUNT));
+  }
+}
@@ -0,0 +1,113 @@
+package io.hhplus.tdd.point;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PointService의 충전/사용 처리량과 조회 지연시간을 측정합니다.
+ * 1. users=hot 은 모든 스레드가 한 유저에 요청하는 경합 상황, users=spread 는 USER_COUNT 명에 고르게 요청하는 상황입니다.
+ * 2. repository=memory 는 지연 없는 저장소로 서비스 로직의 비용만 측정하고,
+ *    repository=table 은 UserPointTable/PointHistoryTable의 지연(throttle)을 포함합니다. (-p repository=table)
+ *    repository=simulated 는 latency 지연 모델을 고정 seed로 씌운 저장소로, 실행마다 같은 지연 순서를 재현합니다.
+ * 3. mode 는 point.write.mode (queue, direct, optimistic) 입니다.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class PointServiceBenchmark {
+
+  private static final int USER_COUNT = 10_000;
+  private static final long LATENCY_SEED = 42L;
+
+  @Param({"memory"})
+  String repository;
+
+  // repository=simulated 에서 잔액 조회/저장, 이력 저장에 쓰는 지연 모델 (LatencyModel 설정 형식)
+  @Param({"lognormal:1:0.5:0.001:50"})
+  String latency;
+
+  @Param({"hot", "spread"})
+  String users;
+
+  @Param({"queue", "direct", "optimistic"})
+  String mode;
+
+  private PointService pointService;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    PointRepository pointRepository = switch (repository) {
+      case "memory" -> SimulatedPointRepository.withoutLatency();
+      case "table" -> new PointRepositoryImpl();
+      case "simulated" -> new SimulatedPointRepository(LATENCY_SEED, latency, latency, "zero", latency);
+      default -> throw new IllegalArgumentException("unknown repository: " + repository);
+    };
+    pointService = new PointService(
+        pointRepository,
+        new UserPointCache(USER_COUNT, 60_000),
+        new IdempotencyCache(1, 60_000),
+        new PointMetrics(new SimpleMeterRegistry()),
+        4, 256, 10_000, 10, "blocking", 5_000, mode, 16);
+    for (long userId = 0; userId < USER_COUNT; userId++) {
+      pointService.addToQueueByCharge(userId, 1_000_000);
+    }
+    pointService.queueOperation();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pointService.shutdown();
+  }
+
+  private long nextUser() {
+    return users.equals("hot") ? 0 : ThreadLocalRandom.current().nextLong(USER_COUNT);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public UserPoint charge() {
+    return pointService.charge(nextUser(), 10);
+  }
+
+  // 잔액이 줄지 않도록 충전과 사용을 번갈아 요청
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public UserPoint chargeThenUse() {
+    long userId = nextUser();
+    pointService.charge(userId, 10);
+    return pointService.use(userId, 10);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public UserPoint point() {
+    return pointService.point(nextUser());
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public PointHistoryPage historyPage() {
+    return pointService.history(nextUser(), 0, 0, Long.MAX_VALUE, 100);
+  }
+}
@@ -0,0 +1,70 @@
+package io.hhplus.tdd.point;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 요청 REQUESTS 건을 레인에 넣고 queueOperation()으로 모두 처리될 때까지의 시간을 측정하여, 요청 1건당 처리 시간(drain rate)을 구합니다.
+ * lanes 와 maxBatchSize 를 바꿔가며 레인 수와 group commit 크기의 영향을 비교합니다.
+ * waitStrategy 로 레인의 워커가 요청을 기다리는 방식(blocking, yielding, busy-spin)에 따른 전달 지연을 비교합니다.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueueDrainBenchmark {
+
+  private static final int REQUESTS = 10_000;
+  private static final int USER_COUNT = 1_000;
+
+  @Param({"1", "4", "16"})
+  int lanes;
+
+  @Param({"1", "256"})
+  int maxBatchSize;
+
+  @Param({"blocking", "yielding", "busy-spin"})
+  String waitStrategy;
+
+  private PointService pointService;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    pointService = new PointService(
+        SimulatedPointRepository.withoutLatency(),
+        new UserPointCache(USER_COUNT, 60_000),
+        new IdempotencyCache(1, 60_000),
+        new PointMetrics(new SimpleMeterRegistry()),
+        lanes, maxBatchSize, REQUESTS, 10, waitStrategy, 60_000, "queue", 16);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pointService.shutdown();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @OperationsPerInvocation(REQUESTS)
+  public void enqueueAndDrain() {
+    for (int i = 0; i < REQUESTS; i++) {
+      pointService.addToQueueByCharge(i % USER_COUNT, 1);
+    }
+    pointService.queueOperation();
+  }
+}
@@ -1,5 +1,8 @@
 package io.hhplus.tdd;
 
+import io.hhplus.tdd.point.PointOverloadedException;
+import io.hhplus.tdd.point.PointTimeoutException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -11,4 +14,20 @@ class ApiControllerAdvice extends ResponseEntityExceptionHandler {
     public ResponseEntity<ErrorResponse> handleException(Exception e) {
         return ResponseEntity.status(500).body(new ErrorResponse("500", "에러가 발생했습니다."));
     }
+
+    // 레인이 가득찬 경우, 클라이언트가 잠시 후 다시 시도하도록 429로 응답
+    @ExceptionHandler(value = PointOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleOverloaded(PointOverloadedException e) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("429", e.getMessage()));
+    }
+
+    // 처리 기한이 지난 경우 503으로 응답
+    @ExceptionHandler(value = PointTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleTimeout(PointTimeoutException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("503", e.getMessage()));
+    }
 }
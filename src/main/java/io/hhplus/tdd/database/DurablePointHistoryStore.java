@@ -0,0 +1,12 @@
+package io.hhplus.tdd.database;
+
+/**
+ * 재시작 후에도 이력이 남아있는 포인트 이력 저장소
+ * - WAL 저장소는 이 저장소의 이력을 스냅샷에 저장하지 않고, 스냅샷마다 flush 한 뒤 재시작시 truncateAfter로 스냅샷 이후의 이력을 지우고 WAL로 다시 채웁니다.
+ */
+public interface DurablePointHistoryStore extends PointHistoryStore {
+  // 지금까지 저장한 이력을 디스크에 반영, WAL 스냅샷을 저장하기 전에 호출
+  void flush();
+  // id가 lastId 보다 큰 이력을 지움, 디스크에 반영되지 않았을 수 있는 이력을 WAL로 다시 채우기 전에 호출
+  void truncateAfter(long lastId);
+}
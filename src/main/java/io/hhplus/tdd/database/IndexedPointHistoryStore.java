@@ -0,0 +1,157 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import io.hhplus.tdd.point.TransactionType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 유저 id별 인덱스를 가진 이력 저장소 (point.history.store=indexed, 기본값)
+ * 1. 유저마다 이력을 별도의 세그먼트에 추가만 하므로, 조회 비용은 전체 이력이 아닌 해당 유저의 이력 수에 비례합니다.
+ * 2. 세그먼트는 이력을 객체 대신 long 배열에 (id, amount, updateMillis, type) 순서로 붙여서 저장합니다.
+ * 3. id는 전역 시퀀스에서 유저 세그먼트의 락을 잡은 상태로 발급하므로, 유저별 이력은 id 오름차순으로 쌓입니다.
+ *  - id가 정해진 이력(WAL 저장소)은 동시에 저장되면 순서가 바뀌어 도착할 수 있으므로, 뒤에서부터 자리를 찾아 끼워 넣습니다.
+ * 4. 따라서 cursor 조회는 이진 탐색으로 cursor 다음 위치를 바로 찾아 그 뒤만 읽습니다.
+ */
+@Component
+@ConditionalOnProperty(name = "point.history.store", havingValue = "indexed", matchIfMissing = true)
+public class IndexedPointHistoryStore implements PointHistoryStore {
+  private static final TransactionType[] TYPES = TransactionType.values();
+
+  private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+  private final AtomicLong cursor = new AtomicLong();
+
+  @Override
+  public void insertAll(List<PointHistory> histories) {
+    for (PointHistory history : histories) {
+      Segment segment = segments.computeIfAbsent(history.userId(), key -> new Segment());
+      synchronized (segment) {
+        long id = history.id() > 0 ? history.id() : cursor.incrementAndGet();
+        if (history.id() > 0) {
+          cursor.accumulateAndGet(id, Math::max);
+        }
+        segment.insert(id, history.amount(), history.updateMillis(), history.type());
+      }
+    }
+  }
+
+  @Override
+  public long lastId() {
+    return cursor.get();
+  }
+
+  // 유저별로 락을 잡고 복사한 뒤 전달하여, 전달받는 쪽의 I/O 동안 저장을 막지 않음
+  @Override
+  public void forEachBetween(long afterId, long lastId, Consumer<PointHistory> consumer) {
+    segments.forEach((userId, segment) -> {
+      List<PointHistory> histories;
+      synchronized (segment) {
+        int start = segment.indexAfter(afterId);
+        int end = segment.indexAfter(lastId);
+        histories = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+          histories.add(segment.read(userId, i));
+        }
+      }
+      histories.forEach(consumer);
+    });
+  }
+
+  @Override
+  public List<PointHistory> selectAllByUserId(long userId) {
+    Segment segment = segments.get(userId);
+    if (segment == null) {
+      return List.of();
+    }
+    synchronized (segment) {
+      List<PointHistory> result = new ArrayList<>(segment.size);
+      for (int i = 0; i < segment.size; i++) {
+        result.add(segment.read(userId, i));
+      }
+      return result;
+    }
+  }
+
+  @Override
+  public PointHistoryPage selectByUserId(long userId, PointHistoryQuery query) {
+    Segment segment = segments.get(userId);
+    if (segment == null) {
+      return new PointHistoryPage(List.of(), null);
+    }
+    synchronized (segment) {
+      int start = segment.indexAfter(query.cursor());
+      int end = (int) Math.min(segment.size, (long) start + query.scanLimit());
+      List<PointHistory> result = new ArrayList<>(Math.min(query.limit(), end - start));
+      int i = start;
+      for (; i < end && result.size() < query.limit(); i++) {
+        PointHistory history = segment.read(userId, i);
+        if (query.matches(history)) {
+          result.add(history);
+        }
+      }
+      // 확인하지 않은 이력이 남았으면 마지막으로 확인한 이력 다음부터 이어서 조회
+      Long nextCursor = i == segment.size ? null : i == start ? query.cursor() : segment.idAt(i - 1);
+      return new PointHistoryPage(result, nextCursor);
+    }
+  }
+
+  // 한 유저의 이력을 long 배열에 붙여서 저장하는 세그먼트
+  private static class Segment {
+    private static final int STRIDE = 4;
+
+    private long[] rows = new long[STRIDE * 4];
+    private int size;
+
+    // id 순서를 유지하도록 저장, 대부분 마지막 이력보다 id가 크므로 끝에 추가됨
+    void insert(long id, long amount, long updateMillis, TransactionType type) {
+      if ((size + 1) * STRIDE > rows.length) {
+        rows = Arrays.copyOf(rows, rows.length * 2);
+      }
+      int index = size;
+      while (index > 0 && rows[(index - 1) * STRIDE] > id) {
+        index--;
+      }
+      int offset = index * STRIDE;
+      System.arraycopy(rows, offset, rows, offset + STRIDE, (size - index) * STRIDE);
+      rows[offset] = id;
+      rows[offset + 1] = amount;
+      rows[offset + 2] = updateMillis;
+      rows[offset + 3] = type.ordinal();
+      size++;
+    }
+
+    // id가 cursor보다 큰 첫번째 이력의 위치를 이진 탐색
+    int indexAfter(long cursor) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (rows[mid * STRIDE] <= cursor) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    long idAt(int index) {
+      return rows[index * STRIDE];
+    }
+
+    PointHistory read(long userId, int index) {
+      int offset = index * STRIDE;
+      return new PointHistory(
+          rows[offset], userId, rows[offset + 1], TYPES[(int) rows[offset + 3]], rows[offset + 2]);
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import io.hhplus.tdd.point.TransactionType;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 메모리 맵 세그먼트 파일에 이력을 저장하는 저장소 (point.history.store=mapped)
+ * 1. 이력은 고정 길이 행(id, userId, amount, updateMillis, type)으로 rowsPerSegment 개씩 세그먼트 파일에 저장하고,
+ *    파일은 메모리 맵으로 열어 힙 밖에 둡니다.
+ * 2. 이력의 id는 행 번호 + 1 이므로, 유저별 인덱스는 행 번호만 long 배열로 들고 있다가 조회시 맵에서 바로 읽습니다.
+ * 3. 행 번호는 유저 인덱스의 락을 잡은 상태로 발급하므로, 유저별 이력은 id 오름차순이고 cursor는 이진 탐색으로 찾습니다.
+ *  - id가 정해진 이력(WAL 저장소)은 그 id의 행에 쓰고, 순서가 바뀌어 도착하면 인덱스의 뒤에서부터 자리를 찾아 끼워 넣습니다.
+ * 4. 시작시 세그먼트를 읽어 유저별 인덱스를 다시 만듭니다. id가 0이거나 행 번호와 맞지 않는 행은 빈 행으로 간주합니다.
+ * 5. 맵에 쓴 행은 flush(force) 해야 디스크에 반영되므로, WAL과 함께 사용할 때는 스냅샷마다 flush 하고,
+ *    재시작시 스냅샷 이후의 행은 truncateAfter로 지운 뒤 WAL로 다시 채웁니다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "point.history.store", havingValue = "mapped")
+public class MappedPointHistoryStore implements DurablePointHistoryStore {
+  private static final int ROW_SIZE = 40;
+  private static final int USER_ID = 8;
+  private static final int AMOUNT = 16;
+  private static final int UPDATE_MILLIS = 24;
+  private static final int TYPE = 32;
+  private static final TransactionType[] TYPES = TransactionType.values();
+
+  private final Path directory;
+  private final int rowsPerSegment;
+  private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+  private final Map<Long, RowIndex> indexes = new ConcurrentHashMap<>();
+  private final AtomicLong nextRow = new AtomicLong();
+
+  public MappedPointHistoryStore(
+      @Value("${point.history.mapped.dir:./data/history}") String directory,
+      @Value("${point.history.mapped.rows-per-segment:1048576}") int rowsPerSegment) {
+    if (rowsPerSegment < 1 || (long) rowsPerSegment * ROW_SIZE > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("rowsPerSegment must be between 1 and " + Integer.MAX_VALUE / ROW_SIZE);
+    }
+    this.directory = Path.of(directory);
+    this.rowsPerSegment = rowsPerSegment;
+    try {
+      Files.createDirectories(this.directory);
+      recover();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void insertAll(List<PointHistory> histories) {
+    for (PointHistory history : histories) {
+      RowIndex index = indexes.computeIfAbsent(history.userId(), key -> new RowIndex());
+      synchronized (index) {
+        long row;
+        if (history.id() > 0) {
+          row = history.id() - 1;
+          nextRow.accumulateAndGet(history.id(), Math::max);
+        } else {
+          row = nextRow.getAndIncrement();
+        }
+        write(row, history);
+        index.insert(row);
+      }
+    }
+  }
+
+  @Override
+  public List<PointHistory> selectAllByUserId(long userId) {
+    return selectByUserId(
+        userId, new PointHistoryQuery(0, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE))
+        .histories();
+  }
+
+  @Override
+  public PointHistoryPage selectByUserId(long userId, PointHistoryQuery query) {
+    RowIndex index = indexes.get(userId);
+    if (index == null) {
+      return new PointHistoryPage(List.of(), null);
+    }
+    synchronized (index) {
+      // id = 행 번호 + 1 이므로 cursor 이후의 첫 행은 cursor 행 번호보다 큰 첫 행
+      int start = index.indexAfter(query.cursor() - 1);
+      int end = (int) Math.min(index.size, (long) start + query.scanLimit());
+      List<PointHistory> result = new ArrayList<>(Math.min(query.limit(), end - start));
+      int i = start;
+      for (; i < end && result.size() < query.limit(); i++) {
+        PointHistory history = read(index.rows[i]);
+        if (query.matches(history)) {
+          result.add(history);
+        }
+      }
+      // 확인하지 않은 행이 남았으면 마지막으로 확인한 행 다음부터 이어서 조회
+      Long nextCursor = i == index.size ? null : i == start ? query.cursor() : index.rows[i - 1] + 1;
+      return new PointHistoryPage(result, nextCursor);
+    }
+  }
+
+  @Override
+  public long lastId() {
+    return nextRow.get();
+  }
+
+  @Override
+  public void forEachBetween(long afterId, long lastId, Consumer<PointHistory> consumer) {
+    long rows = Math.min(lastId, nextRow.get());
+    for (long row = Math.max(0, afterId); row < rows; row++) {
+      if (segments.get((int) (row / rowsPerSegment)).getLong(offsetOf(row)) == row + 1) {
+        consumer.accept(read(row));
+      }
+    }
+  }
+
+  @Override
+  public void flush() {
+    segments.forEach(MappedByteBuffer::force);
+  }
+
+  // id가 lastId 보다 큰 행(행 번호가 lastId 이상인 행)을 빈 행으로 만들고, 다음 행 번호를 lastId로 되돌림
+  @Override
+  public void truncateAfter(long lastId) {
+    long rows = nextRow.get();
+    for (long row = lastId; row < rows; row++) {
+      segments.get((int) (row / rowsPerSegment)).putLong(offsetOf(row), 0);
+    }
+    for (RowIndex index : indexes.values()) {
+      synchronized (index) {
+        index.size = index.indexAfter(lastId - 1);
+      }
+    }
+    nextRow.set(Math.min(rows, lastId));
+    flush();
+    log.info("mapped history store truncated. rows: {} -> {}", rows, nextRow.get());
+  }
+
+  @PreDestroy
+  public void close() {
+    flush();
+  }
+
+  private void write(long row, PointHistory history) {
+    MappedByteBuffer segment = segmentFor(row);
+    int offset = offsetOf(row);
+    segment.putLong(offset + USER_ID, history.userId());
+    segment.putLong(offset + AMOUNT, history.amount());
+    segment.putLong(offset + UPDATE_MILLIS, history.updateMillis());
+    segment.putInt(offset + TYPE, history.type().ordinal());
+    // id를 마지막에 써서, 프로세스가 종료되어도 id가 있는 행은 모든 값이 쓰여진 행이 되도록 합니다.
+    // OS나 전원 장애시에는 페이지 단위로 반영되어 이 순서가 보장되지 않으므로, flush 이후의 행은 WAL로 다시 채웁니다.
+    segment.putLong(offset, row + 1);
+  }
+
+  private PointHistory read(long row) {
+    MappedByteBuffer segment = segments.get((int) (row / rowsPerSegment));
+    int offset = offsetOf(row);
+    return new PointHistory(
+        segment.getLong(offset),
+        segment.getLong(offset + USER_ID),
+        segment.getLong(offset + AMOUNT),
+        TYPES[segment.getInt(offset + TYPE)],
+        segment.getLong(offset + UPDATE_MILLIS));
+  }
+
+  private int offsetOf(long row) {
+    return (int) (row % rowsPerSegment) * ROW_SIZE;
+  }
+
+  // 행이 들어갈 세그먼트를 반환, 없으면 새 세그먼트 파일을 만들어 맵으로 엶
+  private MappedByteBuffer segmentFor(long row) {
+    int segmentIndex = (int) (row / rowsPerSegment);
+    if (segmentIndex < segments.size()) {
+      return segments.get(segmentIndex);
+    }
+    synchronized (segments) {
+      try {
+        while (segments.size() <= segmentIndex) {
+          segments.add(map(segments.size()));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return segments.get(segmentIndex);
+    }
+  }
+
+  private MappedByteBuffer map(int segmentIndex) throws IOException {
+    Path path = directory.resolve(String.format("%010d.history", segmentIndex));
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) rowsPerSegment * ROW_SIZE);
+    }
+  }
+
+  // 기존 세그먼트를 모두 맵으로 열고, 저장된 행으로 유저별 인덱스를 다시 만듦
+  private void recover() throws IOException {
+    int segmentCount = 0;
+    while (Files.exists(directory.resolve(String.format("%010d.history", segmentCount)))) {
+      segmentCount++;
+    }
+    long rows = 0;
+    for (int i = 0; i < segmentCount; i++) {
+      MappedByteBuffer segment = map(i);
+      segments.add(segment);
+      for (int offset = 0; offset < rowsPerSegment * ROW_SIZE; offset += ROW_SIZE) {
+        long id = segment.getLong(offset);
+        // 일부만 디스크에 반영된 행은 id가 행 번호와 맞지 않을 수 있음
+        if (id != (long) i * rowsPerSegment + offset / ROW_SIZE + 1) {
+          continue;
+        }
+        indexes.computeIfAbsent(segment.getLong(offset + USER_ID), key -> new RowIndex()).insert(id - 1);
+        rows = Math.max(rows, id);
+      }
+    }
+    nextRow.set(rows);
+    log.info("mapped history store recovered. rows: {}, users: {}", rows, indexes.size());
+  }
+
+  // 한 유저의 이력 행 번호를 오름차순으로 저장하는 인덱스
+  private static class RowIndex {
+    private long[] rows = new long[4];
+    private int size;
+
+    // 행 번호 순서를 유지하도록 추가, 대부분 마지막 행보다 크므로 끝에 추가됨
+    void insert(long row) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      int index = size;
+      while (index > 0 && rows[index - 1] > row) {
+        index--;
+      }
+      System.arraycopy(rows, index, rows, index + 1, size - index);
+      rows[index] = row;
+      size++;
+    }
+
+    // 행 번호가 row보다 큰 첫번째 위치를 이진 탐색
+    int indexAfter(long row) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (rows[mid] <= row) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 포인트 이력 저장소
+ * - 저장시 PointHistory의 id가 0이면 저장소에서 발급하고, 0보다 크면 그 id를 그대로 사용합니다. (WAL 저장소가 발급한 id를 유지)
+ * - 유저별 이력은 저장 순서와 관계없이 id 오름차순으로 보관합니다.
+ */
+public interface PointHistoryStore {
+  void insertAll(List<PointHistory> histories);
+  List<PointHistory> selectAllByUserId(long userId);
+  // cursor 이후의 이력을 최대 scanLimit 건 확인하여 조건에 맞는 이력을 id 오름차순으로 최대 limit 건 조회
+  PointHistoryPage selectByUserId(long userId, PointHistoryQuery query);
+  // 지금까지 발급한 가장 큰 id, 저장된 이력이 없으면 0
+  long lastId();
+  // id가 afterId 보다 크고 lastId 이하인 이력을 모두 전달, 유저 사이의 순서는 보장하지 않음 (WAL 스냅샷 저장에 사용)
+  void forEachBetween(long afterId, long lastId, Consumer<PointHistory> consumer);
+
+  // 전달한 id를 그대로 저장하는지 여부, id를 직접 발급하는 저장소는 WAL 저장소와 함께 사용할 수 없음
+  default boolean keepsIds() {
+    return true;
+  }
+}
@@ -0,0 +1,135 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * PointHistoryTable을 그대로 사용하는 이력 저장소 (point.history.store=table)
+ * - PointHistoryTable은 ArrayList 기반이라 스레드 안전하지 않으므로 ReadWriteLock으로 접근을 보호합니다.
+ * - 테이블이 반환한 이력을 유저별 리스트로도 들고 있어(같은 객체를 참조), 조회할때 전체 테이블을 순회하지 않습니다.
+ * - cursor 조회는 유저별 리스트에서 이진 탐색으로 cursor 다음 위치를 찾아 그 뒤의 이력을 최대 scanLimit 건만 확인하므로,
+ *   이력 내보내기처럼 cursor로 나눠 읽어도 한번에 한 페이지만 메모리에 만듭니다.
+ * - id는 PointHistoryTable이 발급하므로 전달받은 id를 유지하지 않습니다. (keepsIds = false)
+ */
+@Component
+@ConditionalOnProperty(name = "point.history.store", havingValue = "table")
+public class TablePointHistoryStore implements PointHistoryStore {
+  private final PointHistoryTable pointHistoryTable = new PointHistoryTable();
+  // 테이블에 저장된 이력을 유저별로 id 오름차순으로 보관, lock으로 보호
+  private final Map<Long, List<PointHistory>> historiesByUser = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private long lastId;
+
+  // PointHistoryTable은 단건 저장만 제공하므로, 락을 한번만 잡고 순서대로 저장합니다.
+  @Override
+  public void insertAll(List<PointHistory> histories) {
+    lock.writeLock().lock();
+    try {
+      histories.forEach(history -> {
+        PointHistory stored = pointHistoryTable.insert(
+            history.userId(), history.amount(), history.type(), history.updateMillis());
+        historiesByUser.computeIfAbsent(stored.userId(), key -> new ArrayList<>()).add(stored);
+        lastId = stored.id();
+      });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<PointHistory> selectAllByUserId(long userId) {
+    lock.readLock().lock();
+    try {
+      return List.copyOf(historiesByUser.getOrDefault(userId, List.of()));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public PointHistoryPage selectByUserId(long userId, PointHistoryQuery query) {
+    lock.readLock().lock();
+    try {
+      List<PointHistory> histories = historiesByUser.getOrDefault(userId, List.of());
+      int start = indexAfter(histories, query.cursor());
+      int end = (int) Math.min(histories.size(), (long) start + query.scanLimit());
+      List<PointHistory> result = new ArrayList<>(Math.min(query.limit(), end - start));
+      int i = start;
+      for (; i < end && result.size() < query.limit(); i++) {
+        PointHistory history = histories.get(i);
+        if (query.matches(history)) {
+          result.add(history);
+        }
+      }
+      // 확인하지 않은 이력이 남았으면 마지막으로 확인한 이력 다음부터 이어서 조회
+      Long nextCursor = i == histories.size() ? null : i == start ? query.cursor() : histories.get(i - 1).id();
+      return new PointHistoryPage(result, nextCursor);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long lastId() {
+    lock.readLock().lock();
+    try {
+      return lastId;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean keepsIds() {
+    return false;
+  }
+
+  // 유저별로 락을 잡고 범위의 이력만 복사한 뒤 전달하여, 전달받는 쪽의 I/O 동안 저장을 막지 않음
+  @Override
+  public void forEachBetween(long afterId, long lastId, Consumer<PointHistory> consumer) {
+    List<Long> users;
+    lock.readLock().lock();
+    try {
+      users = List.copyOf(historiesByUser.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+    for (long userId : users) {
+      List<PointHistory> between;
+      lock.readLock().lock();
+      try {
+        List<PointHistory> histories = historiesByUser.get(userId);
+        int start = indexAfter(histories, afterId);
+        between = List.copyOf(histories.subList(start, Math.max(start, indexAfter(histories, lastId))));
+      } finally {
+        lock.readLock().unlock();
+      }
+      between.forEach(consumer);
+    }
+  }
+
+  // id가 cursor보다 큰 첫번째 이력의 위치를 이진 탐색, 테이블은 id 순서로 저장하므로 유저별 이력도 id 오름차순
+  private static int indexAfter(List<PointHistory> histories, long cursor) {
+    int low = 0;
+    int high = histories.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (histories.get(mid).id() <= cursor) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,19 @@
+package io.hhplus.tdd.database;
+
+/**
+ * write-ahead log 레코드
+ * - BALANCE : amount 는 변경 후 잔액, version 은 변경 후 잔액의 version
+ * - CHARGE, USE : amount 는 이력의 충전/사용 금액, version 자리에는 이력 id를 기록
+ */
+public record WalRecord(
+        Kind kind,
+        long userId,
+        long amount,
+        long updateMillis,
+        long version
+) {
+
+    public enum Kind {
+        BALANCE, CHARGE, USE
+    }
+}
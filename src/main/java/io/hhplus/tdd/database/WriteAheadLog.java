@@ -0,0 +1,527 @@
+package io.hhplus.tdd.database;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.TransactionType;
+import io.hhplus.tdd.point.UserPoint;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 포인트 트랜잭션을 세그먼트 파일 끝에 추가만 하는 write-ahead log
+ * 1. 레코드는 고정 길이 바이너리(kind, userId, amount, updateMillis, version, crc32)로 저장하고, 복구시 crc가 맞지 않는 레코드부터는 버립니다.
+ *  - 같은 유저의 잔액 레코드는 version이 가장 큰 레코드로 복원하므로, 추가된 순서가 바뀌어도 최신 잔액이 복원됩니다.
+ * 2. 동기화 정책(SyncPolicy)
+ *  - ALWAYS : append가 끝나기 전에 fsync, 동시에 대기중인 append는 한번의 fsync로 함께 반영합니다.(group fsync)
+ *  - INTERVAL : 백그라운드 스레드가 syncIntervalMillis 마다 fsync 합니다.
+ *  - NONE : fsync 하지 않고 OS에 맡깁니다.
+ * 3. 스냅샷은 새 세그먼트로 넘어간 시점의 잔액과 마지막 이력 id를 저장하므로, 복구는 최신 스냅샷과 그 이후 세그먼트만 읽으면 됩니다.
+ *  - 이력은 스냅샷마다 직전 스냅샷 이후에 추가된 이력만 id 순서대로 이력 세그먼트 파일(.histories)에 저장하고, 이 파일은 지우지 않습니다.
+ *    따라서 스냅샷 비용은 그 사이에 추가된 이력 수에 비례하고, 전체 이력은 재시작시 한번만 읽습니다.
+ *  - 이력 레코드는 WAL 저장소가 발급한 이력 id를 version 자리에 기록하고, 이력 세그먼트도 id를 그대로 저장하므로 재시작 후에도 id가 유지됩니다.
+ *  - 영속 이력 저장소(DurablePointHistoryStore)는 이력 세그먼트를 쓰지 않습니다.
+ * 4. 손상된 최신 스냅샷 대신 사용할 수 있도록 직전 스냅샷까지 남기고, 그보다 오래된 스냅샷과 세그먼트는 지웁니다.
+ *  - 스냅샷이 가리키는 이력 세그먼트가 처음부터 끊기지 않고 이어지지 않으면 그 스냅샷 대신 직전 스냅샷을 사용합니다.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+  public enum SyncPolicy {
+    ALWAYS, INTERVAL, NONE
+  }
+
+  private static final int RECORD_SIZE = 1 + Long.BYTES * 4 + Integer.BYTES;
+  private static final int SNAPSHOT_MAGIC = 0x57414C34;
+  private static final int HISTORY_MAGIC = 0x57414C48;
+  private static final String SEGMENT_SUFFIX = ".wal";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+  private static final String HISTORY_SUFFIX = ".histories";
+  private static final WalRecord.Kind[] KINDS = WalRecord.Kind.values();
+  private static final TransactionType[] TYPES = TransactionType.values();
+  // 남겨두는 스냅샷 수, 최신 스냅샷이 손상되었을때 직전 스냅샷과 그 이후 세그먼트로 복구
+  private static final int RETAINED_SNAPSHOTS = 2;
+
+  private final Path directory;
+  private final SyncPolicy syncPolicy;
+  private final ScheduledExecutorService syncScheduler;
+  // 쓰기와 세그먼트 교체를 보호하는 락
+  private final Object writeLock = new Object();
+  // fsync를 한 스레드만 하도록 보호하는 락, 세그먼트 교체시 writeLock 보다 먼저 잡습니다.
+  private final Object syncLock = new Object();
+  private FileChannel channel;
+  private long segmentIndex;
+  // 지금까지 쓴 바이트 수와 fsync가 끝난 바이트 수
+  private long written;
+  private volatile long synced;
+  // 마지막으로 저장(또는 복구에 사용)한 스냅샷의 세그먼트 번호와 마지막 이력 id, writeSnapshot은 한 스레드만 호출
+  private long snapshotSegmentIndex;
+  private long snapshotHistoryLastId;
+
+  public WriteAheadLog(Path directory, SyncPolicy syncPolicy, long syncIntervalMillis) {
+    this.directory = directory;
+    this.syncPolicy = syncPolicy;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (syncPolicy == SyncPolicy.INTERVAL) {
+      syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "point-wal-sync");
+        thread.setDaemon(true);
+        return thread;
+      });
+      syncScheduler.scheduleWithFixedDelay(
+          this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    } else {
+      syncScheduler = null;
+    }
+  }
+
+  /**
+   * 최신 스냅샷과 그 이후 세그먼트로 잔액을 복원하여 반환하고, 스냅샷 이후 세그먼트의 이력 레코드는 historyConsumer에 순서대로 전달합니다.
+   * 스냅샷까지의 이력은 이력 세그먼트에서 읽어 id 순서대로 Recovery에 담아 반환합니다. 스냅샷 이전 세그먼트는 읽지 않습니다.
+   * 복구가 끝나면 새 세그먼트를 열어 이후의 append를 받습니다.
+   */
+  public Recovery recover(Consumer<WalRecord> historyConsumer) {
+    try {
+      Snapshot snapshot = readLatestSnapshot();
+      snapshotSegmentIndex = snapshot.segmentIndex();
+      snapshotHistoryLastId = snapshot.historyLastId();
+      Map<Long, UserPoint> balances = new HashMap<>();
+      snapshot.balances().forEach(userPoint -> balances.put(userPoint.id(), userPoint));
+      long lastSegment = 0;
+      for (Path segment : list(SEGMENT_SUFFIX)) {
+        long index = indexOf(segment);
+        lastSegment = Math.max(lastSegment, index);
+        if (index < snapshot.segmentIndex()) {
+          continue;
+        }
+        readSegment(segment, record -> {
+          if (record.kind() == WalRecord.Kind.BALANCE) {
+            balances.merge(record.userId(),
+                new UserPoint(record.userId(), record.amount(), record.updateMillis(), record.version()),
+                (current, recovered) -> recovered.version() >= current.version() ? recovered : current);
+          } else {
+            historyConsumer.accept(record);
+          }
+        });
+      }
+      synchronized (syncLock) {
+        synchronized (writeLock) {
+          openSegment(lastSegment + 1);
+        }
+      }
+      log.info("write-ahead log recovered. balances: {}, snapshot segment: {}",
+          balances.size(), snapshot.segmentIndex());
+      return new Recovery(balances, snapshot.historyLastId(), snapshot.histories());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // 레코드를 현재 세그먼트 끝에 추가하고, 동기화 정책이 ALWAYS면 fsync 될 때까지 대기
+  public void append(List<WalRecord> records) {
+    ByteBuffer buffer = encode(records);
+    long end;
+    try {
+      synchronized (writeLock) {
+        if (channel == null) {
+          throw new IllegalStateException("recover must be called before append");
+        }
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        written += buffer.capacity();
+        end = written;
+      }
+      if (syncPolicy == SyncPolicy.ALWAYS) {
+        syncTo(end);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * 새 세그먼트로 넘어가고, 넘어간 세그먼트 번호를 반환합니다.
+   * 호출자는 반환된 번호 이전의 레코드가 모두 반영된 잔액으로 writeSnapshot을 호출해야 합니다.
+   */
+  public long roll() {
+    try {
+      synchronized (syncLock) {
+        synchronized (writeLock) {
+          channel.force(false);
+          synced = written;
+          channel.close();
+          openSegment(segmentIndex + 1);
+          return segmentIndex;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * segmentIndex 이전의 레코드가 반영된 잔액을 스냅샷 파일로 저장하고, 직전 스냅샷보다 오래된 스냅샷과 세그먼트를 삭제합니다.
+   * historyLastId는 segmentIndex 이전의 이력이 모두 저장된 시점의 마지막 이력 id 이며,
+   * 영속 저장소가 아니면 직전 스냅샷 이후 historyLastId 까지의 이력을 이력 세그먼트로 먼저 저장합니다.
+   */
+  public void writeSnapshot(
+      long segmentIndex, Collection<UserPoint> balances, long historyLastId, PointHistoryStore historyStore) {
+    boolean historySegmented = !(historyStore instanceof DurablePointHistoryStore);
+    try {
+      if (historySegmented) {
+        writeHistorySegment(segmentIndex, historyLastId, historyStore);
+      }
+      writeAtomically(segmentIndex, SNAPSHOT_SUFFIX, output -> {
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeLong(segmentIndex);
+        output.writeLong(historyLastId);
+        output.writeBoolean(historySegmented);
+        output.writeInt(balances.size());
+        for (UserPoint userPoint : balances) {
+          output.writeLong(userPoint.id());
+          output.writeLong(userPoint.point());
+          output.writeLong(userPoint.updateMillis());
+          output.writeLong(userPoint.version());
+        }
+      });
+      snapshotSegmentIndex = segmentIndex;
+      snapshotHistoryLastId = historyLastId;
+      List<Path> snapshots = list(SNAPSHOT_SUFFIX);
+      if (snapshots.size() < RETAINED_SNAPSHOTS) {
+        return;
+      }
+      long retainedFrom = indexOf(snapshots.get(snapshots.size() - RETAINED_SNAPSHOTS));
+      for (Path snapshot : snapshots) {
+        if (indexOf(snapshot) < retainedFrom) {
+          Files.deleteIfExists(snapshot);
+        }
+      }
+      for (Path segment : list(SEGMENT_SUFFIX)) {
+        if (indexOf(segment) < retainedFrom) {
+          Files.deleteIfExists(segment);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // 직전 스냅샷 이후 historyLastId 까지의 이력을 id 순서대로 이력 세그먼트 파일로 저장, 추가된 이력이 없으면 쓰지 않음
+  private void writeHistorySegment(long segmentIndex, long historyLastId, PointHistoryStore historyStore)
+      throws IOException {
+    // 저장했지만 스냅샷은 저장하지 못한 이력 세그먼트는 이번 세그먼트와 범위가 겹치므로 지움
+    for (Path path : list(HISTORY_SUFFIX)) {
+      if (indexOf(path) > snapshotSegmentIndex) {
+        Files.deleteIfExists(path);
+      }
+    }
+    long fromId = snapshotHistoryLastId;
+    if (historyLastId <= fromId) {
+      return;
+    }
+    List<PointHistory> histories = new ArrayList<>();
+    historyStore.forEachBetween(fromId, historyLastId, histories::add);
+    histories.sort(Comparator.comparingLong(PointHistory::id));
+    writeAtomically(segmentIndex, HISTORY_SUFFIX, output -> {
+      output.writeInt(HISTORY_MAGIC);
+      output.writeLong(fromId);
+      output.writeLong(historyLastId);
+      output.writeInt(histories.size());
+      for (PointHistory history : histories) {
+        output.writeLong(history.id());
+        output.writeLong(history.userId());
+        output.writeLong(history.amount());
+        output.writeLong(history.updateMillis());
+        output.writeByte(history.type().ordinal());
+      }
+    });
+  }
+
+  // 임시 파일에 쓰고 crc를 덧붙여 fsync 한 뒤 이름을 바꿔, 파일이 있으면 모두 쓰여진 파일이 되도록 함
+  private void writeAtomically(long index, String suffix, ContentWriter writer) throws IOException {
+    Path target = directory.resolve(fileName(index, suffix));
+    Path temp = directory.resolve(fileName(index, suffix + ".tmp"));
+    try (FileChannel fileChannel = FileChannel.open(temp,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      CheckedOutputStream checked = new CheckedOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(fileChannel)), new CRC32());
+      DataOutputStream output = new DataOutputStream(checked);
+      writer.write(output);
+      output.writeLong(checked.getChecksum().getValue());
+      output.flush();
+      fileChannel.force(true);
+    }
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @Override
+  public void close() {
+    if (syncScheduler != null) {
+      syncScheduler.shutdownNow();
+    }
+    try {
+      synchronized (syncLock) {
+        synchronized (writeLock) {
+          if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // end 위치까지 fsync, 다른 스레드가 이미 그 위치 이상 fsync 했다면 바로 반환
+  private void syncTo(long end) throws IOException {
+    synchronized (syncLock) {
+      if (synced >= end) {
+        return;
+      }
+      long target;
+      synchronized (writeLock) {
+        target = written;
+      }
+      channel.force(false);
+      synced = target;
+    }
+  }
+
+  private void syncQuietly() {
+    try {
+      long target;
+      synchronized (writeLock) {
+        target = written;
+      }
+      syncTo(target);
+    } catch (IOException e) {
+      log.error("write-ahead log fsync에 실패했습니다.", e);
+    }
+  }
+
+  private void openSegment(long index) throws IOException {
+    segmentIndex = index;
+    channel = FileChannel.open(directory.resolve(fileName(index, SEGMENT_SUFFIX)),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private static ByteBuffer encode(List<WalRecord> records) {
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * records.size());
+    CRC32 crc = new CRC32();
+    for (WalRecord record : records) {
+      int start = buffer.position();
+      buffer.put((byte) record.kind().ordinal());
+      buffer.putLong(record.userId());
+      buffer.putLong(record.amount());
+      buffer.putLong(record.updateMillis());
+      buffer.putLong(record.version());
+      crc.reset();
+      crc.update(buffer.array(), start, RECORD_SIZE - Integer.BYTES);
+      buffer.putInt((int) crc.getValue());
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  // 세그먼트를 처음부터 읽어 전달, 잘린 레코드나 crc가 맞지 않는 레코드를 만나면 중단
+  private static void readSegment(Path segment, Consumer<WalRecord> consumer) throws IOException {
+    byte[] bytes = new byte[RECORD_SIZE];
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    CRC32 crc = new CRC32();
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(segment), 1 << 16)) {
+      while (input.readNBytes(bytes, 0, RECORD_SIZE) == RECORD_SIZE) {
+        crc.reset();
+        crc.update(bytes, 0, RECORD_SIZE - Integer.BYTES);
+        buffer.clear();
+        int kind = buffer.get();
+        long userId = buffer.getLong();
+        long amount = buffer.getLong();
+        long updateMillis = buffer.getLong();
+        long version = buffer.getLong();
+        if (buffer.getInt() != (int) crc.getValue() || kind < 0 || kind >= KINDS.length) {
+          log.warn("write-ahead log 손상 레코드 이후를 무시합니다. segment: {}", segment);
+          return;
+        }
+        consumer.accept(new WalRecord(KINDS[kind], userId, amount, updateMillis, version));
+      }
+    }
+  }
+
+  // 가장 최근의 정상 스냅샷을 이력과 함께 읽음, 없으면 빈 스냅샷
+  private Snapshot readLatestSnapshot() throws IOException {
+    List<Path> snapshots = list(SNAPSHOT_SUFFIX);
+    for (int i = snapshots.size() - 1; i >= 0; i--) {
+      Snapshot snapshot = readSnapshot(snapshots.get(i));
+      if (snapshot == null) {
+        continue;
+      }
+      if (!snapshot.historySegmented()) {
+        return snapshot;
+      }
+      List<PointHistory> histories = readHistories(snapshot);
+      if (histories != null) {
+        return new Snapshot(snapshot.segmentIndex(), snapshot.historyLastId(), true, snapshot.balances(), histories);
+      }
+    }
+    return new Snapshot(0, 0, false, List.of(), List.of());
+  }
+
+  private static Snapshot readSnapshot(Path path) throws IOException {
+    try (CheckedInputStream checked = new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(path)), new CRC32())) {
+      DataInputStream input = new DataInputStream(checked);
+      if (input.readInt() != SNAPSHOT_MAGIC) {
+        return null;
+      }
+      long segmentIndex = input.readLong();
+      long historyLastId = input.readLong();
+      boolean historySegmented = input.readBoolean();
+      int count = input.readInt();
+      if (count < 0) {
+        return null;
+      }
+      List<UserPoint> balances = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        balances.add(new UserPoint(input.readLong(), input.readLong(), input.readLong(), input.readLong()));
+      }
+      long expected = checked.getChecksum().getValue();
+      if (input.readLong() != expected) {
+        log.warn("손상된 스냅샷을 무시합니다. snapshot: {}", path);
+        return null;
+      }
+      return new Snapshot(segmentIndex, historyLastId, historySegmented, balances, List.of());
+    } catch (EOFException e) {
+      log.warn("잘린 스냅샷을 무시합니다. snapshot: {}", path);
+      return null;
+    }
+  }
+
+  // 스냅샷까지의 이력 세그먼트를 순서대로 읽음, 범위가 처음부터 스냅샷의 마지막 이력 id 까지 이어지지 않으면 null
+  private List<PointHistory> readHistories(Snapshot snapshot) throws IOException {
+    List<PointHistory> histories = new ArrayList<>();
+    long lastId = 0;
+    for (Path path : list(HISTORY_SUFFIX)) {
+      if (indexOf(path) > snapshot.segmentIndex()) {
+        break;
+      }
+      HistorySegment segment = readHistorySegment(path);
+      if (segment == null || segment.fromId() != lastId) {
+        break;
+      }
+      histories.addAll(segment.histories());
+      lastId = segment.toId();
+    }
+    if (lastId != snapshot.historyLastId()) {
+      log.warn("이력 세그먼트가 스냅샷까지 이어지지 않아 직전 스냅샷을 사용합니다. snapshot segment: {}",
+          snapshot.segmentIndex());
+      return null;
+    }
+    return histories;
+  }
+
+  private static HistorySegment readHistorySegment(Path path) throws IOException {
+    try (CheckedInputStream checked = new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(path)), new CRC32())) {
+      DataInputStream input = new DataInputStream(checked);
+      if (input.readInt() != HISTORY_MAGIC) {
+        return null;
+      }
+      long fromId = input.readLong();
+      long toId = input.readLong();
+      int count = input.readInt();
+      if (count < 0) {
+        return null;
+      }
+      List<PointHistory> histories = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        long id = input.readLong();
+        long userId = input.readLong();
+        long amount = input.readLong();
+        long updateMillis = input.readLong();
+        int type = input.readByte();
+        if (type < 0 || type >= TYPES.length) {
+          log.warn("손상된 이력 세그먼트를 무시합니다. history segment: {}", path);
+          return null;
+        }
+        histories.add(new PointHistory(id, userId, amount, TYPES[type], updateMillis));
+      }
+      long expected = checked.getChecksum().getValue();
+      if (input.readLong() != expected) {
+        log.warn("손상된 이력 세그먼트를 무시합니다. history segment: {}", path);
+        return null;
+      }
+      return new HistorySegment(fromId, toId, histories);
+    } catch (EOFException e) {
+      log.warn("잘린 이력 세그먼트를 무시합니다. history segment: {}", path);
+      return null;
+    }
+  }
+
+  private List<Path> list(String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.getFileName().toString().endsWith(suffix)).sorted().toList();
+    }
+  }
+
+  private static long indexOf(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.indexOf('.')));
+  }
+
+  private static String fileName(long index, String suffix) {
+    return String.format("%020d%s", index, suffix);
+  }
+
+  /**
+   * 복구한 잔액과, 복구에 사용한 스냅샷의 마지막 이력 id (스냅샷이 없으면 0), 스냅샷까지의 이력 세그먼트에 저장된 이력 (id 오름차순)
+   */
+  public record Recovery(Map<Long, UserPoint> balances, long historyLastId, List<PointHistory> histories) {
+  }
+
+  // historySegmented : 이력을 이력 세그먼트에 저장한 스냅샷인지 여부 (영속 이력 저장소면 false)
+  private record Snapshot(long segmentIndex, long historyLastId, boolean historySegmented,
+      List<UserPoint> balances, List<PointHistory> histories) {
+  }
+
+  // id가 fromId 보다 크고 toId 이하인 이력을 id 순서대로 저장한 이력 세그먼트
+  private record HistorySegment(long fromId, long toId, List<PointHistory> histories) {
+  }
+
+  // 파일 내용을 쓰는 함수, 끝의 crc는 writeAtomically가 덧붙임
+  private interface ContentWriter {
+    void write(DataOutputStream output) throws IOException;
+  }
+}
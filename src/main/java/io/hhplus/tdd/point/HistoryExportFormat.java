@@ -0,0 +1,55 @@
+package io.hhplus.tdd.point;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Locale;
+
+/**
+ * 이력 내보내기 형식
+ * - JSONL : 한 줄에 이력 하나를 JSON 객체로 출력, 이력 조회 응답과 같은 ObjectMapper로 직렬화
+ * - CSV : 헤더 한 줄 후 한 줄에 이력 하나를 출력
+ */
+public enum HistoryExportFormat {
+    JSONL("application/x-ndjson") {
+        @Override
+        public String format(ObjectMapper objectMapper, PointHistory history) throws JsonProcessingException {
+            return objectMapper.writeValueAsString(history) + "\n";
+        }
+    },
+    CSV("text/csv") {
+        @Override
+        public String header() {
+            return "id,userId,amount,type,updateMillis\n";
+        }
+
+        @Override
+        public String format(ObjectMapper objectMapper, PointHistory history) {
+            return history.id() + "," + history.userId() + "," + history.amount() + ","
+                    + history.type().name() + "," + history.updateMillis() + "\n";
+        }
+    };
+
+    private final String contentType;
+
+    HistoryExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String header() {
+        return "";
+    }
+
+    public abstract String format(ObjectMapper objectMapper, PointHistory history) throws JsonProcessingException;
+
+    public static HistoryExportFormat from(String format) {
+        try {
+            return valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unsupported format: " + format);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.hhplus.tdd.point;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * 유저별 전체 이력 응답을 직렬화한 바이트와 ETag로 보관하는 캐시, 응답 형식(JSON, 바이너리)별로 따로 보관합니다.
+ * 1. 항목은 읽기 전에 확인한 유저의 이력 version(PointService.historyVersion)과 함께 저장하고,
+ *    조회시 version이 바뀌었으면(이력이 저장되었으면) 없는 것으로 간주하여 다시 읽도록 합니다.
+ * 2. 세그먼트별로 보관중인 응답 본문의 바이트 수를 세어, 항목 수(maxSize)나 바이트 수(maxBytes)의 세그먼트 몫을 넘으면
+ *    가장 오래 사용되지 않은 항목부터 제거(LRU)합니다. 따라서 이력이 긴 유저의 응답이 많아도 캐시 전체 크기는 maxBytes를 넘지 않습니다.
+ * 3. maxEntryBytes 보다 큰 응답은 보관하지 않습니다.
+ */
+@Component
+public class HistoryResponseCache {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+  private final int maxEntryBytes;
+
+  public HistoryResponseCache(
+      @Value("${point.history.response-cache.max-size:10000}") int maxSize,
+      @Value("${point.history.response-cache.max-bytes:67108864}") long maxBytes,
+      @Value("${point.history.response-cache.max-entry-bytes:1048576}") int maxEntryBytes) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes must be positive");
+    }
+    int segmentCapacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+    long segmentByteCapacity = (maxBytes + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(segmentCapacity, segmentByteCapacity);
+    }
+    this.maxEntryBytes = maxEntryBytes;
+  }
+
+  // version에 해당하는 응답을 반환, 없거나 이후에 이력이 저장되었으면 null
+  public Response get(long id, MediaType mediaType, long version) {
+    Key key = new Key(id, mediaType);
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.version() != version) {
+        segment.remove(key);
+        return null;
+      }
+      return entry.response();
+    }
+  }
+
+  // version을 확인한 뒤 읽은 응답을 보관, 더 최신 version의 항목이 있으면 덮어쓰지 않음
+  public void put(long id, MediaType mediaType, long version, Response response) {
+    if (response.body().length > maxEntryBytes) {
+      return;
+    }
+    Key key = new Key(id, mediaType);
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry == null || entry.version() <= version) {
+        segment.put(key, new Entry(version, response));
+      }
+    }
+  }
+
+  private Segment segmentOf(long id) {
+    return segments[Math.floorMod(Long.hashCode(id), SEGMENT_COUNT)];
+  }
+
+  /**
+   * 직렬화된 응답 본문과 ETag
+   */
+  public record Response(String eTag, byte[] body) {
+  }
+
+  private record Key(long id, MediaType mediaType) {
+  }
+
+  private record Entry(long version, Response response) {
+  }
+
+  // 접근 순서를 유지하는 LinkedHashMap으로 LRU 제거를 구현하고, 보관중인 본문의 바이트 수를 함께 셈, 세그먼트의 락으로 보호
+  private static class Segment {
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+    private final long byteCapacity;
+    private long bytes;
+
+    Segment(int capacity, long byteCapacity) {
+      this.capacity = capacity;
+      this.byteCapacity = byteCapacity;
+    }
+
+    Entry get(Key key) {
+      return entries.get(key);
+    }
+
+    void put(Key key, Entry entry) {
+      remove(key);
+      if (entry.response().body().length > byteCapacity) {
+        return;
+      }
+      entries.put(key, entry);
+      bytes += entry.response().body().length;
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > capacity || bytes > byteCapacity) {
+        bytes -= eldest.next().response().body().length;
+        eldest.remove();
+      }
+    }
+
+    void remove(Key key) {
+      Entry removed = entries.remove(key);
+      if (removed != null) {
+        bytes -= removed.response().body().length;
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package io.hhplus.tdd.point;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 멱등키(Idempotency-Key)로 중복 요청을 걸러내기 위한 캐시
+ * 1. 유저 id와 멱등키로 처음 받은 요청(QueueEntity)을 저장하고, 같은 키로 다시 들어온 요청에는 처음 요청을 그대로 돌려줍니다.
+ *  - 처리 중인 요청이면 같은 CompletableFuture를 기다리고, 처리된 요청이면 처음 결과를 바로 받습니다.
+ * 2. 세그먼트별 최대 크기를 넘으면 가장 오래 사용되지 않은 키부터 제거(LRU)하고, TTL이 지난 키는 조회시 제거됩니다.
+ */
+@Component
+public class IdempotencyCache {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+  private final long ttlNanos;
+
+  public IdempotencyCache(
+      @Value("${point.idempotency.max-size:100000}") int maxSize,
+      @Value("${point.idempotency.ttl-millis:86400000}") long ttlMillis) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    int segmentCapacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+    this.ttlNanos = ttlMillis * 1_000_000L;
+  }
+
+  // 키에 요청을 저장하고 null을 반환, 이미 저장된 요청이 있으면 저장하지 않고 저장된 요청을 반환
+  public QueueEntity putIfAbsent(long userId, String idempotencyKey, QueueEntity request) {
+    Key key = new Key(userId, idempotencyKey);
+    Segment segment = segmentOf(key);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry != null && entry.expiresAt() - System.nanoTime() >= 0) {
+        return entry.request();
+      }
+      segment.put(key, new Entry(request, System.nanoTime() + ttlNanos));
+      return null;
+    }
+  }
+
+  // 키에 저장된 요청이 request일 때만 제거, 반영되지 않은 요청을 다시 시도할 수 있도록 함
+  public void remove(long userId, String idempotencyKey, QueueEntity request) {
+    Key key = new Key(userId, idempotencyKey);
+    Segment segment = segmentOf(key);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry != null && entry.request() == request) {
+        segment.remove(key);
+      }
+    }
+  }
+
+  // userIds에 속한 유저의 키 중 처리가 끝난 요청을 유저별, 키별로 반환, 재분배시 새 소유 노드로 옮기는데 사용
+  public Map<Long, Map<String, QueueEntity>> completedRequests(Set<Long> userIds) {
+    Map<Long, Map<String, QueueEntity>> requests = new HashMap<>();
+    long now = System.nanoTime();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.forEach((key, entry) -> {
+          if (userIds.contains(key.userId()) && entry.expiresAt() - now >= 0 && entry.request().future.isDone()) {
+            requests.computeIfAbsent(key.userId(), id -> new HashMap<>()).put(key.idempotencyKey(), entry.request());
+          }
+        });
+      }
+    }
+    return requests;
+  }
+
+  private Segment segmentOf(Key key) {
+    return segments[Math.floorMod(key.hashCode(), SEGMENT_COUNT)];
+  }
+
+  private record Key(long userId, String idempotencyKey) {
+  }
+
+  private record Entry(QueueEntity request, long expiresAt) {
+  }
+
+  // 접근 순서를 유지하는 LinkedHashMap으로 LRU 제거를 구현
+  private static class Segment extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+}
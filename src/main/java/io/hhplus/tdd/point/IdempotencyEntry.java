@@ -0,0 +1,15 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 멱등키로 처리된 요청과 그 결과, 재분배시 유저와 함께 새 소유 노드로 옮깁니다.
+ * - userPoint : 처리 직후 잔액, 거절되었으면 null
+ * - error : 거절 사유(잔액 부족 등), 처리되었으면 null
+ */
+public record IdempotencyEntry(
+        String idempotencyKey,
+        long amount,
+        TransactionType type,
+        UserPoint userPoint,
+        String error
+) {
+}
@@ -0,0 +1,139 @@
+package io.hhplus.tdd.point;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 저장소 호출 한번의 지연시간을 만드는 모델, 설정 문자열로 만듭니다. (단위는 모두 밀리초)
+ * 1. zero : 지연 없음
+ * 2. fixed:{millis} : 항상 같은 지연
+ * 3. uniform:{min}:{max} : [min, max) 균등 분포, UserPointTable/PointHistoryTable의 throttle은 uniform:0:{millis}와 같습니다.
+ * 4. lognormal:{median}:{sigma}[:{spikeProbability}:{spikeMillis}] : 로그정규 분포, spikeProbability 확률로 spikeMillis 만큼 더 지연
+ * n번째 호출의 지연은 seed와 n으로만 정해지므로, 같은 seed면 스레드 수와 관계없이 같은 지연 순서가 재현됩니다.
+ */
+final class LatencyModel {
+
+  static final LatencyModel ZERO = new LatencyModel(Kind.ZERO, 0, 0, 0, 0, 0);
+
+  private final Kind kind;
+  private final double first;
+  private final double second;
+  private final double spikeProbability;
+  private final double spikeMillis;
+  private final long seed;
+  private final AtomicLong sequence = new AtomicLong();
+
+  private LatencyModel(Kind kind, double first, double second, double spikeProbability, double spikeMillis, long seed) {
+    this.kind = kind;
+    this.first = first;
+    this.second = second;
+    this.spikeProbability = spikeProbability;
+    this.spikeMillis = spikeMillis;
+    this.seed = seed;
+  }
+
+  static LatencyModel parse(String spec, long seed) {
+    String[] parts = spec.trim().split(":");
+    Kind kind;
+    try {
+      kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("unknown latency model: " + spec);
+    }
+    double[] values = new double[parts.length - 1];
+    for (int i = 1; i < parts.length; i++) {
+      try {
+        values[i - 1] = Double.parseDouble(parts[i]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("invalid latency model: " + spec);
+      }
+      if (values[i - 1] < 0) {
+        throw new IllegalArgumentException("latency must be positive: " + spec);
+      }
+    }
+    return switch (kind) {
+      case ZERO -> {
+        requireArguments(spec, values, 0);
+        yield new LatencyModel(kind, 0, 0, 0, 0, seed);
+      }
+      case FIXED -> {
+        requireArguments(spec, values, 1);
+        yield new LatencyModel(kind, values[0], 0, 0, 0, seed);
+      }
+      case UNIFORM -> {
+        requireArguments(spec, values, 2);
+        if (values[1] < values[0]) {
+          throw new IllegalArgumentException("max must be greater than min: " + spec);
+        }
+        yield new LatencyModel(kind, values[0], values[1], 0, 0, seed);
+      }
+      case LOGNORMAL -> {
+        if (values.length != 2 && values.length != 4) {
+          throw new IllegalArgumentException("lognormal needs median:sigma[:spikeProbability:spikeMillis]: " + spec);
+        }
+        if (values.length == 4 && values[2] > 1) {
+          throw new IllegalArgumentException("spikeProbability must be at most 1: " + spec);
+        }
+        yield values.length == 2
+            ? new LatencyModel(kind, values[0], values[1], 0, 0, seed)
+            : new LatencyModel(kind, values[0], values[1], values[2], values[3], seed);
+      }
+    };
+  }
+
+  private static void requireArguments(String spec, double[] values, int count) {
+    if (values.length != count) {
+      throw new IllegalArgumentException("latency model needs " + count + " arguments: " + spec);
+    }
+  }
+
+  // 다음 호출의 지연시간
+  long nextDelayNanos() {
+    if (kind == Kind.ZERO) {
+      return 0;
+    }
+    long n = sequence.getAndIncrement();
+    double millis = switch (kind) {
+      case FIXED -> first;
+      case UNIFORM -> first + (second - first) * uniform(n, 0);
+      case LOGNORMAL -> {
+        // Box-Muller 변환으로 표준정규 분포 값을 만들고, median * e^(sigma * z)
+        double z = Math.sqrt(-2 * Math.log(1 - uniform(n, 0))) * Math.cos(2 * Math.PI * uniform(n, 1));
+        double delay = first * Math.exp(second * z);
+        yield uniform(n, 2) < spikeProbability ? delay + spikeMillis : delay;
+      }
+      default -> 0;
+    };
+    return (long) (millis * 1_000_000);
+  }
+
+  // 다음 호출의 지연시간만큼 대기
+  void pause() {
+    long nanos = nextDelayNanos();
+    if (nanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // seed, 호출 순번, 용도로 정해지는 [0, 1) 값 (SplitMix64)
+  private double uniform(long n, int stream) {
+    long z = seed + (n * 3 + stream + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (z >>> 11) * 0x1.0p-53;
+  }
+
+  enum Kind {
+    ZERO,
+    FIXED,
+    UNIFORM,
+    LOGNORMAL
+  }
+}
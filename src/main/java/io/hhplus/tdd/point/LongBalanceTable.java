@@ -0,0 +1,175 @@
+package io.hhplus.tdd.point;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 유저 id → 잔액을 저장하는 long 전용 오픈 어드레싱 해시 테이블
+ * 1. 키와 값을 long 배열에 그대로 저장하므로, Map<Long, AtomicLong> 처럼 유저마다 Long, AtomicLong, 노드 객체를 만들지 않습니다.
+ * 2. 테이블은 세그먼트로 나누고, 세그먼트 안에서는 선형 탐사(linear probing)로 키를 찾습니다.
+ * 3. 이미 있는 키의 값 갱신은 세그먼트의 읽기 락만 잡고 VarHandle CAS로 처리하므로, 서로 다른 유저의 갱신은 막히지 않습니다.
+ * 4. 새 키 추가와 배열 확장은 세그먼트의 쓰기 락을 잡고 처리합니다. 유저마다 한번만 일어나는 작업입니다.
+ * 5. updateAndGet은 CAS 루프로 갱신하므로, 갱신 함수가 예외를 던지면 값은 바뀌지 않습니다.(잔액 부족 거절 등)
+ */
+class LongBalanceTable {
+
+  private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final int SEGMENT_COUNT = 64;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+  LongBalanceTable() {
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * 키의 값에 delta를 더한 값을 반환합니다.
+   * 키가 없으면 initialValue로 초기값을 읽어 추가한 뒤 더합니다. initialValue는 락 밖에서 호출됩니다.
+   */
+  long addAndGet(long key, long delta, LongUnaryOperator initialValue) {
+    long hash = mix(key);
+    Segment segment = segments[(int) (hash >>> 58)];
+    while (true) {
+      segment.lock.readLock().lock();
+      try {
+        int index = segment.indexOf(key, hash);
+        if (index >= 0) {
+          return (long) LONGS.getAndAdd(segment.values, index, delta) + delta;
+        }
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+      segment.putIfAbsent(key, hash, initialValue.applyAsLong(key));
+    }
+  }
+
+  /**
+   * 키의 값을 update 결과로 바꾸고 바뀐 값을 반환합니다.
+   * update가 예외를 던지면 값을 바꾸지 않고 예외를 그대로 던집니다. 키가 없으면 initialValue로 초기값을 읽어 추가합니다.
+   */
+  long updateAndGet(long key, LongUnaryOperator initialValue, LongUnaryOperator update) {
+    long hash = mix(key);
+    Segment segment = segments[(int) (hash >>> 58)];
+    while (true) {
+      segment.lock.readLock().lock();
+      try {
+        int index = segment.indexOf(key, hash);
+        if (index >= 0) {
+          long[] values = segment.values;
+          while (true) {
+            long current = (long) LONGS.getVolatile(values, index);
+            long next = update.applyAsLong(current);
+            if (LONGS.compareAndSet(values, index, current, next)) {
+              return next;
+            }
+          }
+        }
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+      segment.putIfAbsent(key, hash, initialValue.applyAsLong(key));
+    }
+  }
+
+  // 키의 값을 value로 바꿈, 없으면 추가
+  void put(long key, long value) {
+    long hash = mix(key);
+    Segment segment = segments[(int) (hash >>> 58)];
+    while (true) {
+      segment.lock.readLock().lock();
+      try {
+        int index = segment.indexOf(key, hash);
+        if (index >= 0) {
+          LONGS.setVolatile(segment.values, index, value);
+          return;
+        }
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+      segment.putIfAbsent(key, hash, value);
+    }
+  }
+
+  // 키의 값을 반환, 없으면 defaultValue
+  long get(long key, long defaultValue) {
+    long hash = mix(key);
+    Segment segment = segments[(int) (hash >>> 58)];
+    segment.lock.readLock().lock();
+    try {
+      int index = segment.indexOf(key, hash);
+      return index >= 0 ? (long) LONGS.getVolatile(segment.values, index) : defaultValue;
+    } finally {
+      segment.lock.readLock().unlock();
+    }
+  }
+
+  private static long mix(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return hash ^ (hash >>> 32);
+  }
+
+  private static final class Segment {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    // 키의 위치를 반환, 없으면 -1 (락을 잡은 상태에서 호출)
+    int indexOf(long key, long hash) {
+      int mask = keys.length - 1;
+      for (int index = (int) hash & mask; used[index]; index = (index + 1) & mask) {
+        if (keys[index] == key) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    void putIfAbsent(long key, long hash, long value) {
+      lock.writeLock().lock();
+      try {
+        if (indexOf(key, hash) >= 0) {
+          return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+          resize();
+        }
+        insert(key, hash, value);
+        size++;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private void insert(long key, long hash, long value) {
+      int mask = keys.length - 1;
+      int index = (int) hash & mask;
+      while (used[index]) {
+        index = (index + 1) & mask;
+      }
+      used[index] = true;
+      keys[index] = key;
+      values[index] = value;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      boolean[] oldUsed = used;
+      keys = new long[oldKeys.length * 2];
+      values = new long[oldKeys.length * 2];
+      used = new boolean[oldKeys.length * 2];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldUsed[i]) {
+          insert(oldKeys[i], mix(oldKeys[i]), oldValues[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package io.hhplus.tdd.point;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.http.MediaType;
+
+/**
+ * 잔액과 이력을 주고받는 내부 서비스용 바이너리 형식 (application/x-point-binary)
+ * 1. 첫 바이트는 형식 버전, 두번째 바이트는 본문 종류(U: UserPoint, H: 이력 목록, P: 이력 페이지)입니다.
+ * 2. 정수는 모두 zigzag varint로 쓰므로 작은 값은 1~2 바이트만 사용합니다.
+ * 3. 이력은 건수 뒤에 한 건씩 id, userId, updateMillis를 이전 이력과의 차이로 씁니다.
+ *  - 한 유저의 이력은 id와 시간이 오름차순이고 userId가 같으므로, 대부분 한 건이 7~10 바이트입니다.
+ *  - type은 TransactionType의 순서(ordinal) 1 바이트입니다.
+ * 4. 이력 페이지는 이력 목록 뒤에 다음 페이지 여부 1 바이트와, 있으면 nextCursor를 씁니다.
+ */
+public final class PointBinaryCodec {
+
+  public static final String MEDIA_TYPE_VALUE = "application/x-point-binary";
+  public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int USER_POINT = 'U';
+  private static final int HISTORIES = 'H';
+  private static final int HISTORY_PAGE = 'P';
+  private static final TransactionType[] TYPES = TransactionType.values();
+
+  private PointBinaryCodec() {
+  }
+
+  public static void writeUserPoint(UserPoint userPoint, OutputStream out) throws IOException {
+    writeHeader(out, USER_POINT);
+    writeLong(out, userPoint.id());
+    writeLong(out, userPoint.point());
+    writeLong(out, userPoint.updateMillis());
+    writeLong(out, userPoint.version());
+  }
+
+  public static void writeHistories(List<PointHistory> histories, OutputStream out) throws IOException {
+    writeHeader(out, HISTORIES);
+    writeHistoryList(histories, out);
+  }
+
+  public static void writeHistoryPage(PointHistoryPage page, OutputStream out) throws IOException {
+    writeHeader(out, HISTORY_PAGE);
+    writeHistoryList(page.histories(), out);
+    out.write(page.nextCursor() == null ? 0 : 1);
+    if (page.nextCursor() != null) {
+      writeLong(out, page.nextCursor());
+    }
+  }
+
+  public static UserPoint readUserPoint(InputStream in) throws IOException {
+    readHeader(in, USER_POINT);
+    return new UserPoint(readLong(in), readLong(in), readLong(in), readLong(in));
+  }
+
+  public static List<PointHistory> readHistories(InputStream in) throws IOException {
+    readHeader(in, HISTORIES);
+    return readHistoryList(in);
+  }
+
+  public static PointHistoryPage readHistoryPage(InputStream in) throws IOException {
+    readHeader(in, HISTORY_PAGE);
+    List<PointHistory> histories = readHistoryList(in);
+    return new PointHistoryPage(histories, readByte(in) == 0 ? null : readLong(in));
+  }
+
+  private static void writeHistoryList(List<PointHistory> histories, OutputStream out) throws IOException {
+    writeLong(out, histories.size());
+    long id = 0;
+    long userId = 0;
+    long updateMillis = 0;
+    for (PointHistory history : histories) {
+      writeLong(out, history.id() - id);
+      writeLong(out, history.userId() - userId);
+      writeLong(out, history.amount());
+      out.write(history.type().ordinal());
+      writeLong(out, history.updateMillis() - updateMillis);
+      id = history.id();
+      userId = history.userId();
+      updateMillis = history.updateMillis();
+    }
+  }
+
+  private static List<PointHistory> readHistoryList(InputStream in) throws IOException {
+    long count = readLong(in);
+    if (count < 0 || count > Integer.MAX_VALUE) {
+      throw new IOException("invalid history count: " + count);
+    }
+    List<PointHistory> histories = new ArrayList<>((int) Math.min(count, 1024));
+    long id = 0;
+    long userId = 0;
+    long updateMillis = 0;
+    for (long i = 0; i < count; i++) {
+      id += readLong(in);
+      userId += readLong(in);
+      long amount = readLong(in);
+      int type = readByte(in);
+      if (type >= TYPES.length) {
+        throw new IOException("invalid transaction type: " + type);
+      }
+      updateMillis += readLong(in);
+      histories.add(new PointHistory(id, userId, amount, TYPES[type], updateMillis));
+    }
+    return histories;
+  }
+
+  private static void writeHeader(OutputStream out, int kind) throws IOException {
+    out.write(FORMAT_VERSION);
+    out.write(kind);
+  }
+
+  private static void readHeader(InputStream in, int kind) throws IOException {
+    int version = readByte(in);
+    if (version != FORMAT_VERSION) {
+      throw new IOException("unsupported format version: " + version);
+    }
+    int actual = readByte(in);
+    if (actual != kind) {
+      throw new IOException("expected " + (char) kind + " but was " + (char) actual);
+    }
+  }
+
+  // zigzag 변환 후 7비트씩 나눠 쓰고, 이어지는 바이트가 있으면 최상위 비트를 1로 씀
+  private static void writeLong(OutputStream out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.write((int) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.write((int) zigzag);
+  }
+
+  private static long readLong(InputStream in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte(in);
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IOException("varint is too long");
+  }
+
+  private static int readByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException();
+    }
+    return b;
+  }
+}
@@ -0,0 +1,94 @@
+package io.hhplus.tdd.point;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Accept가 application/x-point-binary인 요청에 UserPoint, PointHistoryPage, List<PointHistory>를 PointBinaryCodec으로 응답합니다.
+ * 본문을 따로 만들지 않고 응답 스트림에 바로 씁니다. 같은 타입의 요청 본문도 PointBinaryCodec으로 읽습니다.
+ */
+class PointBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  PointBinaryHttpMessageConverter() {
+    super(PointBinaryCodec.MEDIA_TYPE);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == UserPoint.class || clazz == PointHistoryPage.class || List.class.isAssignableFrom(clazz);
+  }
+
+  // List는 선언된 원소 타입이 PointHistory일 때만 읽음
+  @Override
+  public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+    return canRead(mediaType) && (type == UserPoint.class || type == PointHistoryPage.class || isHistoryList(type));
+  }
+
+  // List는 선언된 원소 타입이 PointHistory일 때만 씀
+  @Override
+  public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+    if (!canWrite(mediaType)) {
+      return false;
+    }
+    if (clazz == UserPoint.class || clazz == PointHistoryPage.class) {
+      return true;
+    }
+    return List.class.isAssignableFrom(clazz) && isHistoryList(type);
+  }
+
+  private static boolean isHistoryList(Type type) {
+    return type instanceof ParameterizedType parameterized
+        && parameterized.getRawType() instanceof Class<?> raw
+        && List.class.isAssignableFrom(raw)
+        && parameterized.getActualTypeArguments()[0] == PointHistory.class;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+    OutputStream out = new BufferedOutputStream(outputMessage.getBody(), BUFFER_SIZE);
+    if (value instanceof UserPoint userPoint) {
+      PointBinaryCodec.writeUserPoint(userPoint, out);
+    } else if (value instanceof PointHistoryPage page) {
+      PointBinaryCodec.writeHistoryPage(page, out);
+    } else {
+      PointBinaryCodec.writeHistories((List<PointHistory>) value, out);
+    }
+    out.flush();
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    return read(clazz, null, inputMessage);
+  }
+
+  // 형식이 맞지 않는 본문은 잘못된 요청으로 응답하도록 HttpMessageNotReadableException으로 바꿈
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+    InputStream in = new BufferedInputStream(inputMessage.getBody(), BUFFER_SIZE);
+    try {
+      if (type == UserPoint.class) {
+        return PointBinaryCodec.readUserPoint(in);
+      }
+      if (type == PointHistoryPage.class) {
+        return PointBinaryCodec.readHistoryPage(in);
+      }
+      return PointBinaryCodec.readHistories(in);
+    } catch (IOException e) {
+      throw new HttpMessageNotReadableException("invalid point binary body: " + e.getMessage(), e, inputMessage);
+    }
+  }
+}
@@ -1,21 +1,41 @@
 package io.hhplus.tdd.point;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/point")
 public class PointController {
 
     private static final Logger log = LoggerFactory.getLogger(PointController.class);
+    // 재시도한 충전/사용 요청이 중복 반영되지 않도록 클라이언트가 요청마다 붙이는 키
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final PointService pointService;
+    private final HistoryResponseCache historyResponseCache;
+    private final ObjectMapper objectMapper;
 
-  public PointController(PointService pointService) {
+  public PointController(PointService pointService, HistoryResponseCache historyResponseCache, ObjectMapper objectMapper) {
     this.pointService = pointService;
+    this.historyResponseCache = historyResponseCache;
+    this.objectMapper = objectMapper;
   }
 
 
@@ -30,34 +50,160 @@ public class PointController {
     }
 
 
+    /**
+     * 마지막 이력의 id를 ETag로 응답하고, If-None-Match가 같으면 본문 없이 304로 응답합니다.
+     * 직렬화한 응답은 캐시해 두고, 이력이 저장되기 전까지는 다시 조회하거나 직렬화하지 않습니다.
+     * Accept가 application/x-point-binary 이면 바이너리 형식으로 응답합니다.
+     */
     @GetMapping("{id}/histories")
-    public ResponseEntity<List<PointHistory>> history(
-            @PathVariable long id
-    ) {
+    public ResponseEntity<byte[]> history(
+            @PathVariable long id,
+            WebRequest request
+    ) throws IOException {
       log.info("history id: {}", id);
-      List<PointHistory> history = pointService.history(id);
-        return ResponseEntity.ok(history);
+      MediaType mediaType = prefersBinary(request.getHeader(HttpHeaders.ACCEPT))
+          ? PointBinaryCodec.MEDIA_TYPE
+          : MediaType.APPLICATION_JSON;
+      // 캐시는 지금의 version으로 확인하고, 새로 읽은 응답은 조회가 이력을 읽기 전에 확인한 version으로 저장
+      // 진행중인 조회를 함께 받으면 그 조회가 읽은 version이 더 낮을 수 있어, 다음 조회에서 다시 읽도록 함
+      long version = pointService.historyVersion(id);
+      HistoryResponseCache.Response response = historyResponseCache.get(id, mediaType, version);
+      if (response == null) {
+        VersionedHistory loaded = pointService.versionedHistory(id);
+        List<PointHistory> history = loaded.histories();
+        long lastId = history.isEmpty() ? 0 : history.get(history.size() - 1).id();
+        response = mediaType == PointBinaryCodec.MEDIA_TYPE
+            ? new HistoryResponseCache.Response("\"" + lastId + "-bin\"", binaryOf(history))
+            : new HistoryResponseCache.Response("\"" + lastId + "\"", objectMapper.writeValueAsBytes(history));
+        historyResponseCache.put(id, mediaType, loaded.version(), response);
+      }
+      if (request.checkNotModified(response.eTag())) {
+        return null;
+      }
+      return ResponseEntity.ok()
+          .eTag(response.eTag())
+          .varyBy(HttpHeaders.ACCEPT)
+          .contentType(mediaType)
+          .body(response.body());
     }
 
+    // Accept에서 JSON보다 바이너리 형식을 먼저 명시했는지 확인, 와일드카드는 JSON으로 응답
+    private static boolean prefersBinary(String accept) {
+      if (accept == null || accept.isBlank()) {
+        return false;
+      }
+      List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+      MimeTypeUtils.sortBySpecificity(mediaTypes);
+      for (MediaType mediaType : mediaTypes) {
+        if (mediaType.getQualityValue() == 0) {
+          continue;
+        }
+        if (mediaType.equalsTypeAndSubtype(PointBinaryCodec.MEDIA_TYPE)) {
+          return true;
+        }
+        if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+          return false;
+        }
+      }
+      return false;
+    }
+
+    private static byte[] binaryOf(List<PointHistory> history) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(16 + history.size() * 12);
+      PointBinaryCodec.writeHistories(history, out);
+      return out.toByteArray();
+    }
+
+
+    /**
+     * cursor(PointHistory.id) 이후의 이력을 updateMillis 범위 [from, to) 안에서 size 건씩 조회합니다.
+     */
+    @GetMapping("{id}/histories/page")
+    public ResponseEntity<PointHistoryPage> historyPage(
+            @PathVariable long id,
+            @RequestParam(defaultValue = "0") long cursor,
+            @RequestParam(defaultValue = "0") long from,
+            @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+      log.info("history page id: {}, cursor: {}, size: {}", id, cursor, size);
+      PointHistoryPage page = pointService.history(id, cursor, from, to, size);
+      return ResponseEntity.ok(page);
+    }
 
+
+    /**
+     * 전체 이력을 JSON lines 또는 CSV로 읽는 즉시 응답 스트림에 써서, 이력 크기와 무관하게 일정한 메모리로 내보냅니다.
+     */
+    @GetMapping("{id}/histories/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @PathVariable long id,
+            @RequestParam(defaultValue = "jsonl") String format
+    ) {
+      log.info("history export id: {}, format: {}", id, format);
+      HistoryExportFormat exportFormat = HistoryExportFormat.from(format);
+      StreamingResponseBody body = outputStream -> {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(exportFormat.header());
+        pointService.exportHistory(id, history -> {
+          try {
+            writer.write(exportFormat.format(objectMapper, history));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        writer.flush();
+      };
+      return ResponseEntity.ok()
+          .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+          .body(body);
+    }
+
+
+    /**
+     * 처리 결과를 기다리는 동안 요청 스레드를 점유하지 않도록 CompletableFuture로 응답합니다.
+     * Idempotency-Key 헤더가 있으면 같은 키로 재시도한 요청은 다시 실행하지 않고 처음 결과로 응답합니다.
+     */
     @PatchMapping("{id}/charge")
-    public ResponseEntity<UserPoint> charge(
+    public CompletableFuture<ResponseEntity<UserPoint>> charge(
             @PathVariable long id,
-            @RequestBody long amount
+            @RequestBody long amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
     ) {
       log.info("charge id: {}, amount: {}", id, amount);
-      UserPoint charged = pointService.charge(id, amount);
-      return ResponseEntity.ok(charged);
+      CompletableFuture<UserPoint> result = idempotencyKey == null
+          ? pointService.chargeAsync(id, amount)
+          : pointService.chargeAsync(id, amount, idempotencyKey);
+      return result.thenApply(ResponseEntity::ok);
+    }
+
+
+    /**
+     * 여러 유저의 충전/사용을 한번에 요청하고, 요청 순서대로 항목별 결과(성공시 잔액, 실패시 사유)를 응답합니다.
+     */
+    @PostMapping("batch")
+    public CompletableFuture<ResponseEntity<List<PointOperationResult>>> batch(
+            @RequestBody List<PointOperation> operations
+    ) {
+      log.info("batch size: {}", operations.size());
+      return pointService.batch(operations).thenApply(ResponseEntity::ok);
     }
 
 
+    /**
+     * 처리 결과를 기다리는 동안 요청 스레드를 점유하지 않도록 CompletableFuture로 응답합니다.
+     * Idempotency-Key 헤더가 있으면 같은 키로 재시도한 요청은 다시 실행하지 않고 처음 결과로 응답합니다.
+     */
     @PatchMapping("{id}/use")
-    public ResponseEntity<UserPoint> use(
+    public CompletableFuture<ResponseEntity<UserPoint>> use(
             @PathVariable long id,
-            @RequestBody long amount
+            @RequestBody long amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
     ) {
       log.info("use id: {}, amount: {}", id, amount);
-      UserPoint use = pointService.use(id, amount);
-      return ResponseEntity.ok(use);
+      CompletableFuture<UserPoint> result = idempotencyKey == null
+          ? pointService.useAsync(id, amount)
+          : pointService.useAsync(id, amount, idempotencyKey);
+      return result.thenApply(ResponseEntity::ok);
     }
 }
\ No newline at end of file
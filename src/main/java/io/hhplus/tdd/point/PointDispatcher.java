@@ -0,0 +1,200 @@
+package io.hhplus.tdd.point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 포인트 요청을 유저 id 기준으로 레인에 분배하여 처리하는 디스패처
+ * 1. 유저 id를 해시하여 레인을 고르므로 같은 유저의 요청은 항상 같은 레인에서 들어온 순서대로 처리됩니다.
+ * 2. 레인은 미리 할당된 링 버퍼(RequestRingBuffer)이고, 레인마다 전용 워커 스레드가 waitStrategy 방식으로 기다리다 요청이 발행되는 즉시 꺼냅니다.
+ *  - 요청 값은 레인의 슬롯에 복사되므로, 호출하는 쪽은 결과를 받을 CompletableFuture만 만들면 됩니다.
+ *  - 워커는 꺼낸 슬롯을 handler가 반환한 뒤에 레인에 돌려주므로, handler는 반환 후에 슬롯을 참조하면 안 됩니다.
+ * 3. 서로 다른 레인에 배정된 유저의 요청은 병렬로 처리됩니다.
+ * 4. 워커는 깨어날 때 레인에 쌓인 요청을 최대 maxBatchSize개까지 한번에 꺼내 배치로 넘깁니다.
+ * 5. 레인은 queueCapacity 개까지만 쌓이며, 가득차면 enqueueTimeout 동안 기다렸다가 자리가 나지 않으면 요청을 거절합니다.
+ *  - 기다리지 않도록 요청하면 자리가 없을때 바로 거절합니다.
+ */
+@Slf4j
+class PointDispatcher {
+
+  private final List<RequestRingBuffer> lanes = new ArrayList<>();
+  private final List<Thread> workers = new ArrayList<>();
+  private final Consumer<List<QueueEntity>> handler;
+  private final int maxBatchSize;
+  private final long enqueueTimeoutNanos;
+  // 레인에 대기중이거나 처리중인 요청 수
+  private final AtomicLong pending = new AtomicLong();
+  private final Object idleMonitor = new Object();
+  private volatile boolean running = true;
+
+  PointDispatcher(
+      int laneCount,
+      int maxBatchSize,
+      int queueCapacity,
+      long enqueueTimeoutMillis,
+      RequestRingBuffer.WaitStrategy waitStrategy,
+      Consumer<List<QueueEntity>> handler) {
+    if (laneCount < 1) {
+      throw new IllegalArgumentException("laneCount must be positive");
+    }
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("maxBatchSize must be positive");
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be positive");
+    }
+    this.handler = handler;
+    this.maxBatchSize = maxBatchSize;
+    this.enqueueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMillis);
+    for (int i = 0; i < laneCount; i++) {
+      RequestRingBuffer lane = new RequestRingBuffer(queueCapacity, maxBatchSize, waitStrategy);
+      Thread worker = new Thread(() -> work(lane), "point-lane-" + i);
+      worker.setDaemon(true);
+      lanes.add(lane);
+      workers.add(worker);
+    }
+    workers.forEach(Thread::start);
+  }
+
+  // 요청을 유저 id에 해당하는 레인에 추가, 레인이 가득차서 enqueueTimeout 안에 추가하지 못하면 false
+  boolean dispatch(QueueEntity request) {
+    return dispatch(request, true);
+  }
+
+  // wait가 false이면 레인이 가득찼을때 기다리지 않고 바로 false
+  boolean dispatch(QueueEntity request, boolean wait) {
+    return dispatch(request.sequence, request.id, request.amount, request.transactionType, request.deadlineNanos,
+        request.future, wait ? enqueueTimeoutNanos : 0);
+  }
+
+  // 요청 객체 없이 값과 결과를 받을 CompletableFuture만으로 레인에 추가
+  boolean dispatch(long sequence, long id, long amount, TransactionType transactionType, long deadlineNanos,
+      CompletableFuture<UserPoint> future) {
+    return dispatch(sequence, id, amount, transactionType, deadlineNanos, future, enqueueTimeoutNanos);
+  }
+
+  private boolean dispatch(long sequence, long id, long amount, TransactionType transactionType, long deadlineNanos,
+      CompletableFuture<UserPoint> future, long timeoutNanos) {
+    pending.incrementAndGet();
+    boolean offered = lanes.get(laneOf(id))
+        .offer(sequence, id, amount, transactionType, deadlineNanos, future, timeoutNanos);
+    if (!offered) {
+      release(1);
+    }
+    return offered;
+  }
+
+  // 유저 id로 레인 번호를 계산
+  int laneOf(long id) {
+    return Math.floorMod(Long.hashCode(id), lanes.size());
+  }
+
+  int laneCount() {
+    return lanes.size();
+  }
+
+  // 레인에 대기중인 요청 수
+  int depth(int lane) {
+    return lanes.get(lane).size();
+  }
+
+  // 지금까지 전달된 요청이 모두 처리될 때까지 대기
+  void awaitIdle() {
+    synchronized (idleMonitor) {
+      while (pending.get() > 0) {
+        try {
+          idleMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * 지금까지 레인에 전달된 요청이 모두 처리될 때까지 기다립니다. 기다리는 동안 새로 들어온 요청은 기다리지 않으므로,
+   * 다른 요청이 계속 들어와도 끝납니다. deadline(System.nanoTime 기준)까지 끝나지 않으면 false를 반환합니다.
+   */
+  boolean awaitDispatched(long deadline) throws InterruptedException {
+    long[] sequences = new long[lanes.size()];
+    for (int i = 0; i < lanes.size(); i++) {
+      sequences[i] = lanes.get(i).claimedSequence();
+    }
+    for (int i = 0; i < lanes.size(); i++) {
+      if (!lanes.get(i).awaitReleased(sequences[i], deadline)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 레인에 남은 요청을 timeout 동안 처리한 뒤 워커를 멈추고 종료될 때까지 기다립니다.
+   * 처리중인 워커를 interrupt 하면 저장소 호출이 중간에 실패하므로, 남은 요청을 다 처리하거나 timeout이 지난 뒤에만 interrupt 합니다.
+   */
+  void shutdown(long timeoutMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    if (!awaitIdle(deadline)) {
+      log.warn("처리되지 않은 요청이 남은 채로 레인을 종료합니다. pending: {}", pending.get());
+    }
+    running = false;
+    workers.forEach(Thread::interrupt);
+    for (Thread worker : workers) {
+      worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+  }
+
+  // deadline(System.nanoTime 기준)까지 남은 요청이 모두 처리되길 기다림, 다 처리되면 true
+  private boolean awaitIdle(long deadline) throws InterruptedException {
+    synchronized (idleMonitor) {
+      while (pending.get() > 0) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(idleMonitor, remaining);
+      }
+    }
+    return true;
+  }
+
+  private void work(RequestRingBuffer lane) {
+    List<QueueEntity> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      // 대기중인 요청을 함께 꺼내 한번에 처리
+      try {
+        lane.drainTo(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      handle(batch);
+      batch.clear();
+      lane.release();
+    }
+  }
+
+  private void handle(List<QueueEntity> batch) {
+    try {
+      handler.accept(batch);
+    } catch (RuntimeException e) {
+      log.error("요청 처리 중 오류가 발생했습니다. size: {}", batch.size(), e);
+    } finally {
+      release(batch.size());
+    }
+  }
+
+  private void release(int count) {
+    if (pending.addAndGet(-count) == 0) {
+      synchronized (idleMonitor) {
+        idleMonitor.notifyAll();
+      }
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package io.hhplus.tdd.point;
+
+import java.util.List;
+
+/**
+ * 이력 페이지 조회 결과
+ * - nextCursor : 다음 페이지 조회시 사용할 cursor, 더 읽을 이력이 없으면 null
+ *   한번에 확인하는 이력 수(scanLimit)를 넘으면 조건에 맞는 이력이 limit 건보다 적어도 마지막으로 확인한 이력의 id를 반환합니다.
+ */
+public record PointHistoryPage(
+        List<PointHistory> histories,
+        Long nextCursor
+) {
+}
@@ -0,0 +1,27 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 이력 페이지 조회 조건
+ * - cursor : 이 id 보다 큰 이력부터 조회 (0이면 처음부터)
+ * - fromMillis, toMillis : updateMillis 가 [fromMillis, toMillis) 범위인 이력만 조회
+ * - limit : 최대 조회 건수
+ * - scanLimit : 한번에 확인하는 최대 이력 수, 시간 범위에 맞지 않는 이력이 많아도 이만큼만 읽고 nextCursor로 이어서 조회
+ */
+public record PointHistoryQuery(
+        long cursor,
+        long fromMillis,
+        long toMillis,
+        int limit,
+        int scanLimit
+) {
+
+    public static final int DEFAULT_SCAN_LIMIT = 10_000;
+
+    public PointHistoryQuery(long cursor, long fromMillis, long toMillis, int limit) {
+        this(cursor, fromMillis, toMillis, limit, DEFAULT_SCAN_LIMIT);
+    }
+
+    public boolean matches(PointHistory pointHistory) {
+        return pointHistory.updateMillis() >= fromMillis && pointHistory.updateMillis() < toMillis;
+    }
+}
@@ -0,0 +1,315 @@
+package io.hhplus.tdd.point;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 포인트 처리 과정의 지표를 Micrometer로 기록합니다.
+ * 1. point.requests : 전달된 충전/사용 요청 수 (type)
+ * 2. point.rejected : 반영되지 않은 요청 수 (reason = overloaded | expired | invalid | failed)
+ * 3. point.queue.depth : 레인별 대기중인 요청 수 (lane)
+ * 4. point.queue.wait : 요청이 만들어진 뒤 레인의 워커가 꺼낼 때까지 걸린 시간
+ * 5. point.process : 요청을 꺼낸 뒤 결과가 나올 때까지 걸린 시간 (type), direct/optimistic 방식은 락 대기와 재시도를 포함
+ * 6. point.batch.size : 레인의 워커가 한번에 꺼낸 요청 수
+ * 7. point.repository : 저장소 메서드별 호출 시간 (repository, method)
+ * 8. point.reads.coalesced : 진행중인 같은 조회에 합류하여 저장소를 조회하지 않은 요청 수 (read = point | history)
+ * 9. point.http.requests : 컨트롤러 엔드포인트의 응답 시간 (method, uri = URI 패턴, status)
+ * 미터는 미리 만들어 두어 요청마다 레지스트리를 조회하지 않습니다. 엔드포인트 타이머는 처음 기록할때 만들어 둡니다.
+ * 지연시간 타이머는 설정과 관계없이 백분위수(p50, p99, p999)와 히스토그램 버킷을 함께 기록하므로, 어떤 레지스트리에서도 꼬리 지연시간을 볼 수 있습니다.
+ * 레지스트리 빈이 없으면(actuator가 클래스패스에 없으면) SimpleMeterRegistry에 기록하고, 기록한 값은 scrape()로 Prometheus 형식으로 조회합니다.
+ */
+@Component
+public class PointMetrics {
+
+  private final MeterRegistry registry;
+  private final Map<TransactionType, Counter> requests = new EnumMap<>(TransactionType.class);
+  private final Map<TransactionType, Timer> processTimers = new EnumMap<>(TransactionType.class);
+  private final Map<Rejection, Counter> rejections = new EnumMap<>(Rejection.class);
+  private final Timer queueWait;
+  private final DistributionSummary batchSize;
+  private final Counter coalescedPointReads;
+  private final Counter coalescedHistoryReads;
+  private final Map<HttpKey, Timer> httpTimers = new ConcurrentHashMap<>();
+
+  // 지연시간 타이머가 기록하는 백분위수
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  @Autowired
+  public PointMetrics(ObjectProvider<MeterRegistry> registry) {
+    this(registry.getIfAvailable(SimpleMeterRegistry::new));
+  }
+
+  public PointMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    for (TransactionType type : TransactionType.values()) {
+      String tag = type.name().toLowerCase(Locale.ROOT);
+      requests.put(type, Counter.builder("point.requests")
+          .description("전달된 충전/사용 요청 수")
+          .tag("type", tag)
+          .register(registry));
+      processTimers.put(type, latencyTimer("point.process")
+          .description("요청을 꺼낸 뒤 결과가 나올 때까지 걸린 시간")
+          .tag("type", tag)
+          .register(registry));
+    }
+    for (Rejection rejection : Rejection.values()) {
+      rejections.put(rejection, Counter.builder("point.rejected")
+          .description("반영되지 않은 요청 수")
+          .tag("reason", rejection.name().toLowerCase(Locale.ROOT))
+          .register(registry));
+    }
+    this.queueWait = latencyTimer("point.queue.wait")
+        .description("요청이 만들어진 뒤 레인의 워커가 꺼낼 때까지 걸린 시간")
+        .register(registry);
+    this.batchSize = DistributionSummary.builder("point.batch.size")
+        .description("레인의 워커가 한번에 꺼낸 요청 수")
+        .register(registry);
+    this.coalescedPointReads = coalescedReads(registry, "point");
+    this.coalescedHistoryReads = coalescedReads(registry, "history");
+  }
+
+  // 백분위수와 히스토그램 버킷(1us ~ 10s)을 함께 기록하는 지연시간 타이머
+  static Timer.Builder latencyTimer(String name) {
+    return Timer.builder(name)
+        .publishPercentiles(PERCENTILES)
+        .publishPercentileHistogram()
+        .minimumExpectedValue(Duration.ofNanos(1_000))
+        .maximumExpectedValue(Duration.ofSeconds(10));
+  }
+
+  private static Counter coalescedReads(MeterRegistry registry, String read) {
+    return Counter.builder("point.reads.coalesced")
+        .description("진행중인 같은 조회에 합류한 요청 수")
+        .tag("read", read)
+        .register(registry);
+  }
+
+  // 디스패처의 레인마다 대기중인 요청 수를 게이지로 등록
+  void registerLanes(PointDispatcher dispatcher) {
+    for (int lane = 0; lane < dispatcher.laneCount(); lane++) {
+      int index = lane;
+      Gauge.builder("point.queue.depth", dispatcher, d -> d.depth(index))
+          .description("레인에 대기중인 요청 수")
+          .tag("lane", String.valueOf(lane))
+          .register(registry);
+    }
+  }
+
+  /**
+   * 기록중인 포인트 지표(point.*)를 Prometheus 텍스트 형식(0.0.4)으로 반환합니다.
+   * 1. 카운터는 {이름}_total, 게이지는 {이름} 으로 씁니다.
+   * 2. 타이머는 초 단위 히스토그램({이름}_seconds_bucket, _sum, _count)으로 쓰므로, histogram_quantile로 백분위수를 계산합니다.
+   * 3. 타이머가 직접 계산한 백분위수(p50, p99, p999)는 {이름}_seconds_percentile{quantile=...} 게이지로 함께 씁니다.
+   * 4. 분포(point.batch.size)는 summary({이름}_sum, _count)로 쓰고, 타이머와 분포의 최대값은 {이름}_max 게이지로 씁니다.
+   */
+  public String scrape() {
+    Map<String, List<Meter>> families = new TreeMap<>();
+    for (Meter meter : registry.getMeters()) {
+      if (meter.getId().getName().startsWith("point.")) {
+        families.computeIfAbsent(meter.getId().getName(), name -> new ArrayList<>()).add(meter);
+      }
+    }
+    StringBuilder out = new StringBuilder();
+    families.forEach((name, meters) -> writeFamily(out, name, meters));
+    return out.toString();
+  }
+
+  private static void writeFamily(StringBuilder out, String name, List<Meter> meters) {
+    String base = name.replace('.', '_');
+    String description = meters.get(0).getId().getDescription();
+    if (meters.get(0) instanceof Timer) {
+      String family = base + "_seconds";
+      List<HistogramSnapshot> snapshots = meters.stream().map(meter -> ((Timer) meter).takeSnapshot()).toList();
+      writeHeader(out, family, "histogram", description);
+      for (int i = 0; i < meters.size(); i++) {
+        HistogramSnapshot snapshot = snapshots.get(i);
+        for (CountAtBucket bucket : snapshot.histogramCounts()) {
+          writeSample(out, family + "_bucket", meters.get(i), "le", formatValue(bucket.bucket(TimeUnit.SECONDS)),
+              bucket.count());
+        }
+        writeSample(out, family + "_bucket", meters.get(i), "le", "+Inf", snapshot.count());
+        writeSample(out, family + "_sum", meters.get(i), null, null, snapshot.total(TimeUnit.SECONDS));
+        writeSample(out, family + "_count", meters.get(i), null, null, snapshot.count());
+      }
+      writeHeader(out, family + "_max", "gauge", description);
+      for (int i = 0; i < meters.size(); i++) {
+        writeSample(out, family + "_max", meters.get(i), null, null, snapshots.get(i).max(TimeUnit.SECONDS));
+      }
+      writeHeader(out, family + "_percentile", "gauge", description);
+      for (int i = 0; i < meters.size(); i++) {
+        for (ValueAtPercentile percentile : snapshots.get(i).percentileValues()) {
+          writeSample(out, family + "_percentile", meters.get(i), "quantile", formatValue(percentile.percentile()),
+              percentile.value(TimeUnit.SECONDS));
+        }
+      }
+      return;
+    }
+    if (meters.get(0) instanceof DistributionSummary) {
+      List<HistogramSnapshot> snapshots = meters.stream()
+          .map(meter -> ((DistributionSummary) meter).takeSnapshot())
+          .toList();
+      writeHeader(out, base, "summary", description);
+      for (int i = 0; i < meters.size(); i++) {
+        writeSample(out, base + "_sum", meters.get(i), null, null, snapshots.get(i).total());
+        writeSample(out, base + "_count", meters.get(i), null, null, snapshots.get(i).count());
+      }
+      writeHeader(out, base + "_max", "gauge", description);
+      for (int i = 0; i < meters.size(); i++) {
+        writeSample(out, base + "_max", meters.get(i), null, null, snapshots.get(i).max());
+      }
+      return;
+    }
+    if (meters.get(0) instanceof Counter) {
+      writeHeader(out, base + "_total", "counter", description);
+      meters.forEach(meter -> writeSample(out, base + "_total", meter, null, null, ((Counter) meter).count()));
+      return;
+    }
+    if (meters.get(0) instanceof Gauge) {
+      writeHeader(out, base, "gauge", description);
+      meters.forEach(meter -> writeSample(out, base, meter, null, null, ((Gauge) meter).value()));
+      return;
+    }
+    writeHeader(out, base, "untyped", description);
+    meters.forEach(meter -> meter.measure().forEach(measurement ->
+        writeSample(out, base, meter, "statistic", measurement.getStatistic().getTagValueRepresentation(),
+            measurement.getValue())));
+  }
+
+  private static void writeHeader(StringBuilder out, String family, String type, String description) {
+    if (description != null) {
+      out.append("# HELP ").append(family).append(' ')
+          .append(description.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+    }
+    out.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+  }
+
+  // 미터의 태그와 추가 라벨(extraKey)을 라벨로 써서 한 줄을 씀
+  private static void writeSample(StringBuilder out, String name, Meter meter, String extraKey, String extraValue,
+      double value) {
+    out.append(name);
+    List<Tag> tags = meter.getId().getTags();
+    if (!tags.isEmpty() || extraKey != null) {
+      out.append('{');
+      String separator = "";
+      for (Tag tag : tags) {
+        out.append(separator).append(tag.getKey().replace('.', '_')).append("=\"")
+            .append(escapeLabel(tag.getValue())).append('"');
+        separator = ",";
+      }
+      if (extraKey != null) {
+        out.append(separator).append(extraKey).append("=\"").append(extraValue).append('"');
+      }
+      out.append('}');
+    }
+    out.append(' ').append(formatValue(value)).append('\n');
+  }
+
+  private static String escapeLabel(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  // 정수는 소수점 없이, 그 외는 Double.toString 형식으로 씀
+  private static String formatValue(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+
+  // 컨트롤러 엔드포인트의 응답 시간을 메서드, URI 패턴, 상태 코드별로 기록
+  void requestHandled(String method, String uri, int status, long elapsedNanos) {
+    httpTimers.computeIfAbsent(new HttpKey(method, uri, status), key -> latencyTimer("point.http.requests")
+            .description("컨트롤러 엔드포인트의 응답 시간")
+            .tag("method", key.method())
+            .tag("uri", key.uri())
+            .tag("status", String.valueOf(key.status()))
+            .register(registry))
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  // 저장소 메서드별 호출 시간을 기록하는 저장소로 감쌈
+  PointRepository timed(PointRepository pointRepository) {
+    return new TimedPointRepository(pointRepository, registry);
+  }
+
+  void requested(TransactionType type) {
+    requests.get(type).increment();
+  }
+
+  void pointReadCoalesced() {
+    coalescedPointReads.increment();
+  }
+
+  void historyReadCoalesced() {
+    coalescedHistoryReads.increment();
+  }
+
+  void rejected(Rejection rejection) {
+    rejections.get(rejection).increment();
+  }
+
+  void rejected(Rejection rejection, int count) {
+    rejections.get(rejection).increment(count);
+  }
+
+  // 워커가 꺼낸 요청의 개수와, 요청마다 꺼내기까지 기다린 시간을 기록
+  void dequeued(List<QueueEntity> batch, long nowNanos) {
+    batchSize.record(batch.size());
+    for (QueueEntity request : batch) {
+      queueWait.record(nowNanos - request.createdNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  // startNanos 부터 지금까지를 요청마다의 처리 시간으로 기록
+  void processed(List<QueueEntity> requests, long startNanos) {
+    long elapsed = System.nanoTime() - startNanos;
+    for (QueueEntity request : requests) {
+      processTimers.get(request.transactionType).record(elapsed, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  void processed(QueueEntity request, long startNanos) {
+    processTimers.get(request.transactionType).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private record HttpKey(String method, String uri, int status) {
+  }
+
+  enum Rejection {
+    // 레인이 가득차서 거절
+    OVERLOADED,
+    // 처리 기한이 지나서 버려짐
+    EXPIRED,
+    // 잔액 부족 등 요청 자체가 잘못됨
+    INVALID,
+    // 저장소 저장에 실패
+    FAILED
+  }
+}
@@ -0,0 +1,30 @@
+package io.hhplus.tdd.point;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 포인트 지표 조회 API
+ * actuator 없이도 기록중인 point.* 지표와 지연시간 히스토그램을 Prometheus 텍스트 형식으로 조회합니다.
+ */
+@RestController
+@RequestMapping("/metrics")
+public class PointMetricsController {
+
+    // Prometheus 텍스트 형식 0.0.4
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    private final PointMetrics pointMetrics;
+
+    public PointMetricsController(PointMetrics pointMetrics) {
+        this.pointMetrics = pointMetrics;
+    }
+
+    @GetMapping
+    public ResponseEntity<String> metrics() {
+        return ResponseEntity.ok()
+            .contentType(PROMETHEUS_TEXT)
+            .body(pointMetrics.scrape());
+    }
+}
@@ -0,0 +1,23 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 일괄 처리 요청 항목의 처리 결과
+ * - userPoint : 처리 직후 잔액, 실패했으면 null
+ * - error : 실패 사유, 성공했으면 null
+ */
+public record PointOperationResult(
+        long userId,
+        long amount,
+        TransactionType type,
+        UserPoint userPoint,
+        String error
+) {
+
+    public static PointOperationResult success(PointOperation operation, UserPoint userPoint) {
+        return new PointOperationResult(operation.userId(), operation.amount(), operation.type(), userPoint, null);
+    }
+
+    public static PointOperationResult failure(PointOperation operation, String error) {
+        return new PointOperationResult(operation.userId(), operation.amount(), operation.type(), null, error);
+    }
+}
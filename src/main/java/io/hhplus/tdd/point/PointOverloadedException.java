@@ -0,0 +1,12 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 레인이 가득차서 정해진 시간 안에 요청을 추가하지 못했을때 발생합니다. (429 Too Many Requests)
+ */
+public class PointOverloadedException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public PointOverloadedException(String message) {
+    super(message);
+  }
+}
@@ -1,11 +1,27 @@
 package io.hhplus.tdd.point;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 
 public interface PointRepository {
-  void insertOrUpdate(long id, long amount);
+  // 잔액을 저장하고 version을 1 올린 UserPoint를 반환합니다.
+  UserPoint insertOrUpdate(long id, long amount);
+  // 저장된 version이 expectedVersion과 같을때만 잔액을 저장합니다. 다른 쓰기가 먼저 반영되었으면 empty를 반환합니다.
+  Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount);
   void insertHistory(long id, long amount, TransactionType type, long updateMillis);
+  // 여러 이력을 한번에 저장합니다. PointHistory의 id는 저장소에서 발급하므로 무시됩니다.
+  void insertHistories(List<PointHistory> histories);
+  // 이력 일괄 저장을 executor에서 실행합니다. 비동기 저장을 지원하는 저장소는 직접 구현할 수 있습니다.
+  default CompletableFuture<Void> insertHistoriesAsync(List<PointHistory> histories, Executor executor) {
+    return CompletableFuture.runAsync(() -> insertHistories(histories), executor);
+  }
   UserPoint selectById(long id);
+  // 잔액이 저장된 유저 id 목록을 반환합니다.
+  Set<Long> selectUserIds();
   List<PointHistory> selectHistories(long id);
+  PointHistoryPage selectHistories(long id, PointHistoryQuery query);
 }
\ No newline at end of file
@@ -1,33 +1,137 @@
 package io.hhplus.tdd.point;
 
-import io.hhplus.tdd.database.PointHistoryTable;
+import io.hhplus.tdd.database.IndexedPointHistoryStore;
+import io.hhplus.tdd.database.PointHistoryStore;
 import io.hhplus.tdd.database.UserPointTable;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 
+/**
+ * UserPointTable은 HashMap 기반이라 스레드 안전하지 않으므로,
+ * 유저 id로 나눈 줄무늬(stripe)마다 UserPointTable과 ReadWriteLock을 두고, 각 테이블은 자기 줄무늬의 락으로만 접근합니다.
+ * 다른 줄무늬의 유저는 서로 기다리지 않으므로, 여러 레인의 워커가 지연이 있는 테이블에 동시에 저장하고 조회할 수 있습니다.
+ * UserPointTable은 version을 저장하지 않으므로, 유저별 version은 같은 락으로 보호되는 줄무늬별 맵에 저장합니다.
+ * 이력은 설정(point.history.store)에 따라 선택된 PointHistoryStore에 저장합니다.
+ * 재시작하면 모든 데이터가 사라지므로, 영속성이 필요하면 WalPointRepository(point.repository.type=wal)를 사용합니다.
+ */
 @Repository
+@ConditionalOnProperty(name = "point.repository.type", havingValue = "table", matchIfMissing = true)
 public class PointRepositoryImpl implements PointRepository{
-  PointHistoryTable pointHistoryTable = new PointHistoryTable();
-  UserPointTable userPointTable = new UserPointTable();
+  // PointService의 줄무늬 락과 같은 수로 나눔
+  private static final int STRIPES = 64;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final PointHistoryStore pointHistoryStore;
+
+  public PointRepositoryImpl() {
+    this(new IndexedPointHistoryStore());
+  }
+
+  @Autowired
+  public PointRepositoryImpl(PointHistoryStore pointHistoryStore) {
+    this.pointHistoryStore = pointHistoryStore;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public UserPoint insertOrUpdate(long id, long amount) {
+    Stripe stripe = stripeOf(id);
+    return withWriteLock(stripe.lock, () -> stripe.update(id, amount));
+  }
 
   @Override
-  public void insertOrUpdate(long id, long amount) {
-    userPointTable.insertOrUpdate(id, amount);
+  public Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount) {
+    Stripe stripe = stripeOf(id);
+    return withWriteLock(stripe.lock, () -> stripe.versions.getOrDefault(id, 0L) == expectedVersion
+        ? Optional.of(stripe.update(id, amount))
+        : Optional.empty());
   }
 
   @Override
   public void insertHistory(long id, long amount, TransactionType type, long updateMillis) {
-    pointHistoryTable.insert(id, amount, type, updateMillis);
+    pointHistoryStore.insertAll(List.of(new PointHistory(0, id, amount, type, updateMillis)));
+  }
+
+  @Override
+  public void insertHistories(List<PointHistory> histories) {
+    pointHistoryStore.insertAll(histories);
   }
 
   @Override
   public UserPoint selectById(long id) {
-    return userPointTable.selectById(id);
+    Stripe stripe = stripeOf(id);
+    return withReadLock(stripe.lock, () -> stripe.withVersion(stripe.table.selectById(id)));
+  }
+
+  @Override
+  public Set<Long> selectUserIds() {
+    Set<Long> ids = new HashSet<>();
+    for (Stripe stripe : stripes) {
+      withReadLock(stripe.lock, () -> ids.addAll(stripe.versions.keySet()));
+    }
+    return Set.copyOf(ids);
   }
 
   @Override
   public List<PointHistory> selectHistories(long id) {
-    return pointHistoryTable.selectAllByUserId(id);
+    return pointHistoryStore.selectAllByUserId(id);
+  }
+
+  @Override
+  public PointHistoryPage selectHistories(long id, PointHistoryQuery query) {
+    return pointHistoryStore.selectByUserId(id, query);
+  }
+
+  private Stripe stripeOf(long id) {
+    return stripes[Math.floorMod(Long.hashCode(id), STRIPES)];
+  }
+
+  private static <T> T withReadLock(ReadWriteLock lock, Supplier<T> action) {
+    lock.readLock().lock();
+    try {
+      return action.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static <T> T withWriteLock(ReadWriteLock lock, Supplier<T> action) {
+    lock.writeLock().lock();
+    try {
+      return action.get();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 줄무늬 하나의 테이블과 version, lock을 잡은 상태에서만 접근
+  private static class Stripe {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final UserPointTable table = new UserPointTable();
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    // 쓰기 락을 잡은 상태에서 호출
+    UserPoint update(long id, long amount) {
+      versions.merge(id, 1L, Long::sum);
+      return withVersion(table.insertOrUpdate(id, amount));
+    }
+
+    UserPoint withVersion(UserPoint userPoint) {
+      return new UserPoint(userPoint.id(), userPoint.point(), userPoint.updateMillis(),
+          versions.getOrDefault(userPoint.id(), 0L));
+    }
   }
-}
\ No newline at end of file
+}
@@ -1,136 +1,889 @@
 package io.hhplus.tdd.point;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
- * 주요 로직 1. 포인트 충전 또는 사용 요청을 큐에 추가, CompleatableFuture를 결과값을 비동기로 대기합니다.
- * 2. 큐 객체가 생성되면서 큐 객체에는 타임스탬프가 존재하여 큐에 추가된 순서대로 처리됨.
- * 3. 큐에서 나온요청은 AtomicLong을 저장하는 ConcurrentHashMap에 의해 값 비교를 하며 갱신됩니다.
- * 4. 주기적으로 큐에 있는 요청을 처리하면서 포인트를 갱신합니다. 그리고 결과값을 CompletableFuture에 저장합니다.
+ * 주요 로직 1. 포인트 충전 또는 사용 요청을 디스패처에 전달, CompleatableFuture를 결과값을 비동기로 대기합니다.
+ * 2. 디스패처는 유저 id별 레인에 요청을 분배하여, 같은 유저의 요청은 추가된 순서대로 처리됨.
+ * 3. 레인에서 나온요청은 유저 id → 잔액을 long 배열에 저장하는 LongBalanceTable에서 CAS로 갱신됩니다.
+ * 4. 레인의 워커는 요청이 들어오는 즉시 포인트를 갱신합니다. 그리고 결과값을 요청마다 가진 CompletableFuture에 저장합니다.
+ *  - 워커가 한번에 꺼낸 요청은 유저별로 묶어, 최종 잔액 1회 저장과 이력 일괄 저장으로 반영합니다.(group commit)
+ *  - 잔액을 먼저 저장하고 이력은 I/O 스레드에서 저장하며, 그동안 워커는 다음 유저의 잔액을 저장합니다.
+ *    잔액 저장에 실패하면 이력을 저장하지 않고, 이력 저장에 실패하면 저장소의 잔액을 이전 잔액으로 다시 저장합니다.
+ *    결과는 저장소를 다시 읽지 않고 저장한 잔액과 version으로 만듭니다.
+ *    한 유저의 잔액 저장과 이력 저장은 순서대로 하므로 요청 한 건의 지연시간은 두 저장의 합이고, 줄어드는 것은 마지막 재조회 한번 뿐입니다.
+ *    저장된 이력은 지울 수 없어 잔액 저장이 실패했을때 되돌릴 수 없으므로, 되돌릴 수 있는 잔액을 먼저 저장합니다.
+ *  - point.write.mode=direct 이면 디스패처를 거치지 않고 요청 스레드에서 유저 id별 줄무늬 락(striped lock)을 잡고 바로 처리합니다.
+ *  - point.write.mode=optimistic 이면 락 없이 저장소의 version으로 compareAndSet 하고, 충돌하면 처리 기한까지 정해진 횟수만큼 다시 읽어 재시도합니다.
+ *    여러 워커나 인스턴스가 같은 저장소를 함께 갱신할 때 사용하며, 이때는 LongBalanceTable과 포인트 캐시를 사용하지 않습니다.
+ *  - 잔액 차감은 CAS 루프 안에서 잔액을 확인하므로, 잔액이 부족한 요청은 잔액을 바꾸지 않고 거절됩니다.
  * 5. 처음에 요청했던 값을 CompletableFuture를 통해 비동기로 반환합니다.
- *
- * 의문 사항
- * 1. CompleatableFuture를 사용하여 결과값을 기다리지만, 결과값이 없을경우에 대한 로직이 빈약한것같습니다.
- * 예상 개선 사항
- * 1. 만약에 비동기 처리된 결과값이 반환되지않을 경우 대기시간을 설정해야 할수도 있을것 같습니다.
+ * 6. 레인은 미리 할당된 링 버퍼로 크기가 제한되어 있어, 가득차면 enqueueTimeout 동안만 기다리고 PointOverloadedException으로 거절합니다.
+ *  - 요청 값은 링 버퍼의 슬롯에 복사되므로, 멱등키가 없는 충전/사용은 QueueEntity 없이 결과를 받을 CompletableFuture만 만듭니다.
+ *  - 요청마다 처리 기한(requestTimeout)이 있어, 결과는 기한까지만 기다리고 레인에서 기한이 지난 요청은 반영하지 않고 버립니다.
+ * 7. 충전/사용 요청에 멱등키가 있으면, 같은 키로 다시 들어온 요청은 실행하지 않고 처음 요청의 결과를 돌려줍니다.
+ *  - 반영되지 않은 것이 확실한 실패(레인 거절, 기한 초과로 버려짐, 저장 실패)는 키를 지워서 다시 시도할 수 있도록 합니다.
+ *  - 이력 저장에 실패한 뒤 잔액을 되돌리지 못한 실패(PointUncompensatedException)는 반영된 것으로 보고 키를 유지합니다.
+ * 8. 일괄 처리(batch)는 모든 항목을 레인에 연달아 전달하므로, 워커가 한번에 꺼낸 항목이 유저별로 묶여 저장됩니다.
+ *  - 레인이 가득차면 단건 요청처럼 enqueueTimeout 까지만 기다리고 거절하며, 거절된 유저의 이후 항목도 함께 거절하여 유저별 순서를 지킵니다.
+ *  - 한 항목이 거절된 뒤로는 기다리지 않고 전달하여, 일괄 처리 전체가 enqueueTimeout 보다 오래 기다리지 않습니다.
+ * 9. 포인트와 이력 조회는 같은 조건으로 진행중인 조회가 있으면 새로 조회하지 않고 그 결과를 함께 받습니다.(single flight)
+ * 10. 유저별로 이력을 저장할 때마다 올라가는 이력 version을 두어, 직렬화된 이력 응답 캐시가 바뀐 이력을 알 수 있도록 합니다.
+ * 11. 요청 수, 거절 수, 레인 대기열 길이, 레인 대기 시간, 처리 시간, 저장소 호출 시간을 PointMetrics로 기록합니다.
  */
 @Slf4j
 @Service
 public class PointService {
 
+  private static final int DEFAULT_LANE_COUNT = 4;
+  private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+  private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+  private static final long DEFAULT_ENQUEUE_TIMEOUT_MILLIS = 10L;
+  private static final String DEFAULT_WAIT_STRATEGY = "blocking";
+  private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 5_000L;
+  private static final int DEFAULT_CACHE_MAX_SIZE = 100_000;
+  private static final long DEFAULT_CACHE_TTL_MILLIS = 60_000L;
+  private static final int DEFAULT_IDEMPOTENCY_MAX_SIZE = 100_000;
+  private static final long DEFAULT_IDEMPOTENCY_TTL_MILLIS = 86_400_000L;
+  private static final int MAX_HISTORY_PAGE_SIZE = 1000;
+  private static final int EXPORT_CHUNK_SIZE = 1000;
+  private static final int MAX_BATCH_OPERATIONS = 10_000;
+  private static final int WRITE_LOCK_STRIPES = 64;
+  private static final int MAX_OPTIMISTIC_ATTEMPTS = 16;
+  private static final int DEFAULT_IO_THREADS = 16;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000L;
 
   private final PointRepository pointRepository;
-  // 요청을 처리하기 위한 ConcurrentLinkedQueue
-  private final Queue<QueueEntity> requestQueue = new ConcurrentLinkedQueue<>();
-  // 포인트 갱신을 위한 ConcurrentHashMap
-  private final Map<Long, AtomicLong> userPoints = new ConcurrentHashMap<>();
-  // 비동기 처리를 위한 CompletableFuture
-  private final Map<Long, CompletableFuture<UserPoint>> futureMap = new ConcurrentHashMap<>();
+  // 포인트 조회를 위한 write-through 캐시
+  private final UserPointCache userPointCache;
+  // 멱등키로 중복 요청을 걸러내기 위한 캐시
+  private final IdempotencyCache idempotencyCache;
+  // 처리 과정의 지표를 기록
+  private final PointMetrics metrics;
+  // 유저 id별 레인으로 요청을 분배하여 처리하는 디스패처
+  private final PointDispatcher dispatcher;
+  // 진행중인 같은 조회를 합치기 위한 single flight
+  private final SingleFlight<Long, UserPoint> pointReads;
+  private final SingleFlight<Long, VersionedHistory> historyReads;
+  private final SingleFlight<HistoryPageKey, PointHistoryPage> historyPageReads;
+  // 포인트 갱신을 위한 long 전용 해시 테이블
+  private final LongBalanceTable userPoints = new LongBalanceTable();
+  // 유저별 이력 version, 이력을 저장할 때마다 1씩 올라감
+  private final LongBalanceTable historyVersions = new LongBalanceTable();
+  // 다른 노드에서 옮겨오는 중인 유저별로, 옮겨오기 전부터 저장되어 있던 이력 중 아직 걸러내지 않은 이력의 건수
+  private final Map<Long, Map<HistoryRow, Integer>> importingHistories = new ConcurrentHashMap<>();
+  // 요청마다 순번을 부여하기 위한 시퀀스
+  private final AtomicLong requestSequence = new AtomicLong();
+  // 요청을 처리하는 방식과, direct 방식에서 같은 유저의 처리 순서를 지키기 위한 줄무늬 락
+  private final WriteMode writeMode;
+  private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCK_STRIPES];
+  // 요청마다 부여하는 처리 기한
+  private final long requestTimeoutNanos;
+  // 잔액 저장과 동시에 이력을 저장하는 I/O 스레드, 모두 사용중이면 요청한 스레드에서 바로 저장
+  private final ThreadPoolExecutor ioExecutor;
 
   public PointService(PointRepository pointRepository) {
-    this.pointRepository = pointRepository;
+    this(
+        pointRepository,
+        new UserPointCache(DEFAULT_CACHE_MAX_SIZE, DEFAULT_CACHE_TTL_MILLIS),
+        new IdempotencyCache(DEFAULT_IDEMPOTENCY_MAX_SIZE, DEFAULT_IDEMPOTENCY_TTL_MILLIS),
+        new PointMetrics(new SimpleMeterRegistry()),
+        DEFAULT_LANE_COUNT,
+        DEFAULT_MAX_BATCH_SIZE,
+        DEFAULT_QUEUE_CAPACITY,
+        DEFAULT_ENQUEUE_TIMEOUT_MILLIS,
+        DEFAULT_WAIT_STRATEGY,
+        DEFAULT_REQUEST_TIMEOUT_MILLIS,
+        WriteMode.QUEUE.name(),
+        DEFAULT_IO_THREADS);
   }
 
-  // 포인트 충전 요청을 큐에 추가
-  public void addToQueueByCharge(long id, long amount) {
-    requestQueue.offer(new QueueEntity(id, amount, TransactionType.CHARGE));
-    futureMap.put(id, new CompletableFuture<>());
+  @Autowired
+  public PointService(
+      PointRepository pointRepository,
+      UserPointCache userPointCache,
+      IdempotencyCache idempotencyCache,
+      PointMetrics metrics,
+      @Value("${point.dispatcher.lanes:" + DEFAULT_LANE_COUNT + "}") int laneCount,
+      @Value("${point.dispatcher.max-batch-size:" + DEFAULT_MAX_BATCH_SIZE + "}") int maxBatchSize,
+      @Value("${point.dispatcher.queue-capacity:" + DEFAULT_QUEUE_CAPACITY + "}") int queueCapacity,
+      @Value("${point.dispatcher.enqueue-timeout-millis:" + DEFAULT_ENQUEUE_TIMEOUT_MILLIS + "}") long enqueueTimeoutMillis,
+      @Value("${point.dispatcher.wait-strategy:" + DEFAULT_WAIT_STRATEGY + "}") String waitStrategy,
+      @Value("${point.request.timeout-millis:" + DEFAULT_REQUEST_TIMEOUT_MILLIS + "}") long requestTimeoutMillis,
+      @Value("${point.write.mode:queue}") String writeMode,
+      @Value("${point.repository.io-threads:" + DEFAULT_IO_THREADS + "}") int ioThreads) {
+    this.pointRepository = metrics.timed(pointRepository);
+    this.userPointCache = userPointCache;
+    this.idempotencyCache = idempotencyCache;
+    this.metrics = metrics;
+    this.pointReads = new SingleFlight<>(metrics::pointReadCoalesced);
+    this.historyReads = new SingleFlight<>(metrics::historyReadCoalesced);
+    this.historyPageReads = new SingleFlight<>(metrics::historyReadCoalesced);
+    this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+    this.writeMode = WriteMode.valueOf(writeMode.toUpperCase(Locale.ROOT));
+    for (int i = 0; i < WRITE_LOCK_STRIPES; i++) {
+      writeLocks[i] = new ReentrantLock();
+    }
+    AtomicInteger ioThreadNumber = new AtomicInteger();
+    this.ioExecutor = new ThreadPoolExecutor(
+        0, ioThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "point-io-" + ioThreadNumber.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    this.dispatcher = new PointDispatcher(
+        laneCount, maxBatchSize, queueCapacity, enqueueTimeoutMillis,
+        RequestRingBuffer.WaitStrategy.from(waitStrategy), this::process);
+    metrics.registerLanes(dispatcher);
   }
 
-  // 포인트 사용 요청을 큐에 추가
-  public void addToQueueByUse(long id, long amount) {
-    requestQueue.offer(new QueueEntity(id, amount, TransactionType.USE));
-    futureMap.put(id, new CompletableFuture<>());
+  // 포인트 충전 요청을 디스패처에 전달
+  public QueueEntity addToQueueByCharge(long id, long amount) {
+    return addToQueue(id, amount, TransactionType.CHARGE);
   }
 
-  // 큐에 있는 요청을 주기적으로 처리
-  @Scheduled(fixedDelay = 1000)
-  public void queueOperation() {
-    while (!requestQueue.isEmpty()) {
-      QueueEntity request = requestQueue.poll();
-      if (request != null) {
-        if (request.transactionType == TransactionType.CHARGE) {
-          chargeProcess(request.id, request.amount);
-        } else if (request.transactionType == TransactionType.USE) {
-          useProcess(request.id, request.amount);
+  // 포인트 사용 요청을 디스패처에 전달
+  public QueueEntity addToQueueByUse(long id, long amount) {
+    return addToQueue(id, amount, TransactionType.USE);
+  }
+
+  private QueueEntity addToQueue(long id, long amount, TransactionType transactionType) {
+    validate(id, amount, transactionType);
+    QueueEntity request = new QueueEntity(
+        requestSequence.incrementAndGet(), id, amount, transactionType, System.nanoTime() + requestTimeoutNanos);
+    submit(request);
+    return request;
+  }
+
+  // 요청을 전달하고 결과를 받을 CompletableFuture를 반환, 큐 모드에서는 QueueEntity를 만들지 않고 값만 레인의 슬롯에 복사
+  private CompletableFuture<UserPoint> enqueue(long id, long amount, TransactionType transactionType, long deadlineNanos) {
+    validate(id, amount, transactionType);
+    if (writeMode != WriteMode.QUEUE) {
+      QueueEntity request = new QueueEntity(requestSequence.incrementAndGet(), id, amount, transactionType, deadlineNanos);
+      submit(request);
+      return request.future;
+    }
+    metrics.requested(transactionType);
+    CompletableFuture<UserPoint> future = new CompletableFuture<>();
+    if (!dispatcher.dispatch(requestSequence.incrementAndGet(), id, amount, transactionType, deadlineNanos, future)) {
+      throw overloaded(id);
+    }
+    return future;
+  }
+
+  // 멱등키가 있으면 같은 키로 먼저 들어온 요청을 반환하고, 없으면 요청을 전달한 뒤 키에 저장
+  private QueueEntity addToQueue(long id, long amount, TransactionType transactionType, String idempotencyKey) {
+    if (idempotencyKey == null) {
+      return addToQueue(id, amount, transactionType);
+    }
+    validate(id, amount, transactionType);
+    QueueEntity request = new QueueEntity(
+        requestSequence.incrementAndGet(), id, amount, transactionType, System.nanoTime() + requestTimeoutNanos);
+    QueueEntity original = idempotencyCache.putIfAbsent(id, idempotencyKey, request);
+    if (original != null) {
+      if (original.amount != amount || original.transactionType != transactionType) {
+        errorMessageThrowing("idempotency key is already used for another request");
+      }
+      log.info("멱등키로 중복 요청을 걸러냈습니다. id: {}, key: {}", id, idempotencyKey);
+      return original;
+    }
+    try {
+      submit(request);
+    } catch (RuntimeException e) {
+      idempotencyCache.remove(id, idempotencyKey, request);
+      throw e;
+    }
+    // 잔액 부족 등 요청 자체가 거절된 경우만 결과를 유지하고, 반영되지 않은 실패는 다시 시도할 수 있도록 키를 지움
+    // 잔액을 되돌리지 못한 실패는 다시 시도하면 두번 반영되므로 키를 유지
+    request.future.whenComplete((userPoint, e) -> {
+      if (e != null && !(e instanceof IllegalArgumentException) && !(e instanceof PointUncompensatedException)) {
+        idempotencyCache.remove(id, idempotencyKey, request);
+      }
+    });
+    return request;
+  }
+
+  private void submit(QueueEntity request) {
+    long id = request.id;
+    metrics.requested(request.transactionType);
+    switch (writeMode) {
+      case DIRECT -> commitDirect(id, List.of(request));
+      case OPTIMISTIC -> commitOptimistic(request);
+      default -> {
+        if (!dispatcher.dispatch(request)) {
+          throw overloaded(id);
         }
-        UserPoint result = pointRepository.selectById(request.id);
-        futureMap.get(request.id).complete(result);
       }
     }
   }
 
-  // CompletableFuture를 통해 비동기 처리된 결과를 반환
-  public UserPoint futureMapListener(long id) {
+  // 레인이 가득차서 거절한 요청을 기록하고 던질 예외를 반환
+  private PointOverloadedException overloaded(long id) {
+    log.warn("레인이 가득차서 요청을 거절합니다. id: {}", id);
+    metrics.rejected(PointMetrics.Rejection.OVERLOADED);
+    return new PointOverloadedException("요청이 많아 처리할 수 없습니다.");
+  }
+
+  /**
+   * 여러 유저의 충전/사용 요청을 한번에 전달하고, 요청 순서대로 항목별 결과를 반환합니다.
+   * 종류가 없거나 유저 id, 금액이 양수가 아닌 항목은 단건 요청과 같은 규칙(invalidReason)으로 걸러, 전달하지 않고 실패로 반환합니다.
+   * 레인이 가득차서 enqueueTimeout 안에 전달하지 못한 항목은 실패로 반환하며, 같은 유저의 순서를 지키기 위해 그 유저의 이후 항목도 함께 거절합니다.
+   * 처음 거절된 뒤로는 기다리지 않고 자리가 있는 레인에만 전달하므로, 요청 스레드는 최대 enqueueTimeout 한번만 기다립니다.
+   * 기한까지 처리되지 않은 항목도 실패로 반환합니다.
+   */
+  public CompletableFuture<List<PointOperationResult>> batch(List<PointOperation> operations) {
+    if (operations.size() > MAX_BATCH_OPERATIONS) {
+      throw new IllegalArgumentException("operations must be at most " + MAX_BATCH_OPERATIONS);
+    }
+    long deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+    List<QueueEntity> requests = new ArrayList<>(operations.size());
+    List<CompletableFuture<PointOperationResult>> results = new ArrayList<>(operations.size());
+    for (PointOperation operation : operations) {
+      // 잘못된 항목은 레인에 전달하지 않고 그 항목만 실패로 반환
+      String invalid = invalidReason(operation.userId(), operation.amount(), operation.type());
+      if (invalid != null) {
+        metrics.rejected(PointMetrics.Rejection.INVALID);
+        results.add(CompletableFuture.completedFuture(PointOperationResult.failure(operation, invalid)));
+        continue;
+      }
+      QueueEntity request = new QueueEntity(requestSequence.incrementAndGet(),
+          operation.userId(), operation.amount(), operation.type(), deadlineNanos);
+      metrics.requested(operation.type());
+      requests.add(request);
+      results.add(request.future.handle((userPoint, e) -> e == null
+          ? PointOperationResult.success(operation, userPoint)
+          : PointOperationResult.failure(operation, messageOf(e))));
+    }
+    switch (writeMode) {
+      case DIRECT -> {
+        Map<Long, List<QueueEntity>> requestsByUser = new LinkedHashMap<>();
+        requests.forEach(request -> requestsByUser.computeIfAbsent(request.id, key -> new ArrayList<>()).add(request));
+        requestsByUser.forEach(this::commitDirect);
+      }
+      case OPTIMISTIC -> requests.forEach(this::commitOptimistic);
+      default -> {
+        // 한 유저의 항목이 거절되면 그 유저의 이후 항목도 거절하여, 앞 항목을 건너뛰고 뒷 항목이 처리되지 않도록 함
+        // 한번 거절되면 레인이 가득찬 것이므로, 요청 스레드가 항목마다 기다리지 않도록 이후 항목은 기다리지 않고 전달
+        Set<Long> rejectedUsers = new HashSet<>();
+        for (QueueEntity request : requests) {
+          if (rejectedUsers.contains(request.id) || !dispatcher.dispatch(request, rejectedUsers.isEmpty())) {
+            rejectedUsers.add(request.id);
+            metrics.rejected(PointMetrics.Rejection.OVERLOADED);
+            request.future.completeExceptionally(new PointOverloadedException("요청이 많아 처리할 수 없습니다."));
+          }
+        }
+      }
+    }
+    // 항목마다 타이머를 두지 않고, 전체에 하나의 기한을 두고 기한까지 끝나지 않은 항목은 실패로 채움
+    return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .completeOnTimeout(null, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)
+        .thenApply(ignored -> {
+          List<PointOperationResult> completed = new ArrayList<>(results.size());
+          for (int i = 0; i < results.size(); i++) {
+            completed.add(results.get(i).getNow(
+                PointOperationResult.failure(operations.get(i), "처리 기한까지 결과를 받지 못했습니다.")));
+          }
+          return completed;
+        });
+  }
+
+  // 단건 요청과 일괄 처리 항목에 같은 규칙을 적용, 잘못되었으면 실패 사유, 올바르면 null
+  private static String invalidReason(long id, long amount, TransactionType transactionType) {
+    if (transactionType == null) {
+      return "type must not be null";
+    }
+    if (id <= 0) {
+      return "userId must be positive";
+    }
+    if (amount <= 0) {
+      return "amount must be positive";
+    }
+    return null;
+  }
+
+  // 단건 요청이 잘못되었으면 레인에 전달하지 않고 바로 거절
+  private void validate(long id, long amount, TransactionType transactionType) {
+    String invalid = invalidReason(id, amount, transactionType);
+    if (invalid != null) {
+      metrics.rejected(PointMetrics.Rejection.INVALID);
+      errorMessageThrowing(invalid);
+    }
+  }
+
+  private static String messageOf(Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    return cause.getMessage();
+  }
+
+  // 요청 스레드에서 유저 id의 줄무늬 락을 잡고 바로 처리, 다른 줄무늬의 유저는 병렬로 처리됨
+  private void commitDirect(long id, List<QueueEntity> requests) {
+    long startNanos = System.nanoTime();
+    ReentrantLock lock = writeLocks[Math.floorMod(Long.hashCode(id), WRITE_LOCK_STRIPES)];
+    lock.lock();
+    try {
+      PendingCommit pending = commit(id, requests, startNanos);
+      if (pending != null) {
+        finish(pending);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 저장소의 잔액과 version을 읽어 새 잔액을 계산하고 compareAndSet으로 저장, 다른 쓰기가 먼저 반영되었으면 다시 읽어 재시도
+  // 재시도는 MAX_OPTIMISTIC_ATTEMPTS 번까지, 처리 기한까지만 하고 넘으면 반영하지 않고 거절
+  // 이력 저장에 실패하면 잔액을 저장한 version에서 이전 잔액으로 되돌리고, 되돌리지 못하면 PointUncompensatedException으로 실패
+  private void commitOptimistic(QueueEntity request) {
+    long id = request.id;
+    long startNanos = System.nanoTime();
+    UserPoint stored = null;
+    long previous = 0;
+    try {
+      Optional<UserPoint> result = Optional.empty();
+      for (int attempt = 0; result.isEmpty(); attempt++) {
+        if (request.isExpired(System.nanoTime())) {
+          throw new PointTimeoutException("처리 기한이 지난 요청입니다.");
+        }
+        if (attempt == MAX_OPTIMISTIC_ATTEMPTS) {
+          log.warn("다른 쓰기와 계속 충돌하여 요청을 거절합니다. id: {}", id);
+          throw new PointOverloadedException("요청이 많아 처리할 수 없습니다.");
+        }
+        UserPoint current = pointRepository.selectById(id);
+        previous = current.point();
+        long balance = request.transactionType == TransactionType.CHARGE
+            ? charged(current.point(), request.amount)
+            : debited(current.point(), request.amount);
+        result = pointRepository.compareAndSet(id, current.version(), balance);
+      }
+      stored = result.get();
+      pointRepository.insertHistory(id, request.amount, request.transactionType, stored.updateMillis());
+      historyWritten(id);
+    } catch (RuntimeException e) {
+      RuntimeException failure = e;
+      if (stored != null) {
+        // 일부 이력이 저장되었을 수 있으므로 version을 올림
+        historyWritten(id);
+        if (!compensate(id, stored, previous)) {
+          failure = uncompensated(e);
+        }
+      }
+      metrics.rejected(rejectionOf(e));
+      request.future.completeExceptionally(failure);
+      metrics.processed(request, startNanos);
+      return;
+    }
+    request.future.complete(stored);
+    metrics.processed(request, startNanos);
+  }
+
+  // 저장한 version 그대로일 때만 이전 잔액으로 되돌림, 그 사이 다른 쓰기가 반영되었거나 저장에 실패하면 false
+  private boolean compensate(long id, UserPoint stored, long previous) {
+    try {
+      if (pointRepository.compareAndSet(id, stored.version(), previous).isPresent()) {
+        return true;
+      }
+      log.error("이력 저장 실패 후 다른 쓰기가 반영되어 잔액을 되돌리지 못했습니다. id: {}, balance: {}", id, previous);
+    } catch (RuntimeException compensation) {
+      log.error("이력 저장 실패 후 잔액을 되돌리지 못했습니다. id: {}, balance: {}", id, previous, compensation);
+    }
+    return false;
+  }
+
+  private static PointMetrics.Rejection rejectionOf(RuntimeException e) {
+    if (e instanceof IllegalArgumentException) {
+      return PointMetrics.Rejection.INVALID;
+    }
+    if (e instanceof PointTimeoutException) {
+      return PointMetrics.Rejection.EXPIRED;
+    }
+    if (e instanceof PointOverloadedException) {
+      return PointMetrics.Rejection.OVERLOADED;
+    }
+    return PointMetrics.Rejection.FAILED;
+  }
+
+  // 디스패처에 전달된 요청이 모두 처리될 때까지 대기
+  public void queueOperation() {
+    dispatcher.awaitIdle();
+  }
+
+  /**
+   * 지금까지 디스패처에 전달된 요청이 처리될 때까지 처리 기한(requestTimeout) 동안 기다리고, 모두 처리되면 true를 반환합니다.
+   * 이후에 전달되는 요청은 기다리지 않으므로, 재분배처럼 일부 유저의 새 요청만 막아둔 상태에서 다른 유저의 요청이 계속 들어와도 끝납니다.
+   * direct, optimistic 모드의 요청은 요청 스레드에서 바로 처리되므로 기다릴 요청이 없습니다.
+   */
+  public boolean awaitDispatched() {
+    try {
+      return dispatcher.awaitDispatched(System.nanoTime() + requestTimeoutNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  // 레인의 워커 스레드에서 한번에 꺼낸 요청을 유저별로 묶어 처리, 기한이 지난 요청은 반영하지 않고 버림
+  private void process(List<QueueEntity> batch) {
+    Map<Long, List<QueueEntity>> requestsByUser = new LinkedHashMap<>();
+    long now = System.nanoTime();
+    metrics.dequeued(batch, now);
+    for (QueueEntity request : batch) {
+      if (request.isExpired(now)) {
+        metrics.rejected(PointMetrics.Rejection.EXPIRED);
+        request.future.completeExceptionally(new PointTimeoutException("처리 기한이 지난 요청입니다."));
+        continue;
+      }
+      requestsByUser.computeIfAbsent(request.id, key -> new ArrayList<>()).add(request);
+    }
+    // 한 유저의 이력을 저장하는 동안 다음 유저의 잔액을 저장하고, 이력 저장은 배치가 끝나기 전에 모두 마무리
+    List<PendingCommit> pendings = new ArrayList<>(requestsByUser.size());
+    requestsByUser.forEach((id, requests) -> {
+      PendingCommit pending = commit(id, requests, System.nanoTime());
+      if (pending != null) {
+        pendings.add(pending);
+      }
+    });
+    pendings.forEach(this::finish);
+  }
+
+  // 한 유저의 요청을 순서대로 반영하고 최종 잔액을 저장한 뒤, 이력 저장을 I/O 스레드에서 시작
+  // 이력 저장이 끝나야 결과가 정해지므로 반환한 PendingCommit을 finish로 마무리해야 하며, 마무리할 것이 없으면 null
+  private PendingCommit commit(long id, List<QueueEntity> requests, long startNanos) {
+    long updateMillis = System.currentTimeMillis();
+    List<QueueEntity> applied = new ArrayList<>(requests.size());
+    List<PointHistory> histories = new ArrayList<>(requests.size());
+    long[] balances = new long[requests.size()];
+    // 저장에 실패하면 되돌리기 위해 반영한 변화량을 누적
+    long appliedDelta = 0;
+    for (QueueEntity request : requests) {
+      try {
+        long balance = request.transactionType == TransactionType.CHARGE
+            ? chargeProcess(id, request.amount)
+            : useProcess(id, request.amount);
+        balances[applied.size()] = balance;
+        appliedDelta += request.transactionType == TransactionType.CHARGE ? request.amount : -request.amount;
+        applied.add(request);
+        histories.add(new PointHistory(0, id, request.amount, request.transactionType, updateMillis));
+      } catch (RuntimeException e) {
+        metrics.rejected(PointMetrics.Rejection.INVALID);
+        request.future.completeExceptionally(e);
+      }
+    }
+    if (applied.isEmpty()) {
+      metrics.processed(requests, startNanos);
+      return null;
+    }
+    // 잔액을 먼저 저장하고, 실패하면 이력은 저장하지 않음
+    UserPoint stored;
+    try {
+      stored = pointRepository.insertOrUpdate(id, balances[applied.size() - 1]);
+    } catch (RuntimeException e) {
+      fail(id, applied, appliedDelta, e, null);
+      metrics.processed(requests, startNanos);
+      return null;
+    }
+    CompletableFuture<Void> historyWrite = pointRepository.insertHistoriesAsync(histories, ioExecutor);
+    return new PendingCommit(id, requests, applied, balances, appliedDelta, updateMillis, stored, historyWrite, startNanos);
+  }
+
+  // 이력 저장이 끝나길 기다려 요청별 결과를 저장, 이력 저장에 실패하면 저장소의 잔액을 이전 잔액으로 다시 저장
+  // 되돌리지 못하면 저장소에 남은 잔액이 메모리의 잔액과 같으므로 메모리의 잔액은 그대로 두고 PointUncompensatedException으로 실패
+  private void finish(PendingCommit pending) {
+    long id = pending.id();
+    try {
+      pending.historyWrite().join();
+    } catch (CompletionException e) {
+      RuntimeException failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+      long previous = pending.balances()[pending.applied().size() - 1] - pending.appliedDelta();
+      UserPoint compensated;
+      try {
+        compensated = pointRepository.insertOrUpdate(id, previous);
+      } catch (RuntimeException compensation) {
+        log.error("이력 저장 실패 후 잔액을 되돌리지 못했습니다. id: {}, balance: {}", id, previous, compensation);
+        compensated = null;
+      }
+      // 일부 이력이 저장되었을 수 있으므로 version을 올림
+      historyWritten(id);
+      if (compensated != null) {
+        fail(id, pending.applied(), pending.appliedDelta(), failure, compensated);
+      } else {
+        metrics.rejected(PointMetrics.Rejection.FAILED, pending.applied().size());
+        userPointCache.put(pending.stored());
+        PointUncompensatedException uncompensated = uncompensated(failure);
+        pending.applied().forEach(request -> request.future.completeExceptionally(uncompensated));
+      }
+      metrics.processed(pending.requests(), pending.startNanos());
+      return;
+    }
+    historyWritten(id);
+    userPointCache.put(pending.stored());
+    // 같이 저장된 요청은 모두 이번 저장의 version을 가짐
+    for (int i = 0; i < pending.applied().size(); i++) {
+      pending.applied().get(i).future.complete(
+          new UserPoint(id, pending.balances()[i], pending.updateMillis(), pending.stored().version()));
+    }
+    metrics.processed(pending.requests(), pending.startNanos());
+  }
+
+  // 메모리의 잔액을 되돌리고 반영했던 요청을 모두 실패로 완료
+  // 이력을 기다리는 동안 저장소의 잔액을 읽은 조회가 캐시에 넣지 못하도록, 되돌린 잔액(compensated)이 있으면 더 높은 version으로 캐시에 저장
+  private void fail(long id, List<QueueEntity> applied, long appliedDelta, RuntimeException e, UserPoint compensated) {
+    userPoints.addAndGet(id, -appliedDelta, this::storedBalance);
+    metrics.rejected(PointMetrics.Rejection.FAILED, applied.size());
+    if (compensated != null) {
+      userPointCache.put(compensated);
+    } else {
+      userPointCache.evict(id);
+    }
+    applied.forEach(request -> request.future.completeExceptionally(e));
+  }
+
+  private static PointUncompensatedException uncompensated(RuntimeException e) {
+    return new PointUncompensatedException("이력 저장에 실패했지만 잔액이 반영되었습니다.", e);
+  }
+
+  // 요청의 CompletableFuture를 통해 비동기 처리된 결과를 처리 기한까지 기다려 반환
+  public UserPoint futureMapListener(QueueEntity request) {
+    return await(request.id, request.future, request.deadlineNanos);
+  }
+
+  private UserPoint await(long id, CompletableFuture<UserPoint> future, long deadlineNanos) {
     try {
-      return futureMap.get(id).get();
-    } catch (Exception e) {
+      return future.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IllegalArgumentException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof PointTimeoutException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof PointUncompensatedException cause) {
+        throw cause;
+      }
+      errorMessageThrowing("처리요청이 완료되지 않았습니다.");
+    } catch (TimeoutException e) {
+      log.error("처리 기한까지 결과를 받지 못했습니다. id: {}", id);
+      throw new PointTimeoutException("처리 기한까지 결과를 받지 못했습니다.");
+    } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       errorMessageThrowing("처리요청이 완료되지 않았습니다.");
     }
     return null;
   }
 
-  // 포인트 조회
+  // 레인에 남은 요청을 처리한 뒤 워커를 멈추고, I/O 스레드를 종료
+  // 워커가 기다리는 이력 저장이 종료된 I/O executor에서 버려지지 않도록 워커를 먼저 멈춤
+  @PreDestroy
+  public void shutdown() {
+    try {
+      dispatcher.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+      ioExecutor.shutdown();
+      if (!ioExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        log.warn("I/O 스레드가 종료되지 않았습니다. active: {}", ioExecutor.getActiveCount());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      ioExecutor.shutdownNow();
+    }
+  }
+
+  // 포인트 조회, 캐시 미스일때만 저장소를 조회
+  // optimistic 모드에서는 다른 인스턴스의 쓰기가 캐시에 반영되지 않으므로, 캐시를 거치지 않고 항상 저장소를 조회
   public UserPoint point(long id) {
     if (id < 0) {
       throw new IllegalArgumentException("id must be positive");
     }
-    return pointRepository.selectById(id);
+    if (writeMode == WriteMode.OPTIMISTIC) {
+      return pointReads.load(id, pointRepository::selectById);
+    }
+    UserPoint cached = userPointCache.get(id);
+    if (cached != null) {
+      return cached;
+    }
+    UserPoint userPoint = pointReads.load(id, pointRepository::selectById);
+    userPointCache.putIfAbsent(userPoint);
+    return userPoint;
   }
 
+  // 전체 이력 조회, 같은 유저의 이력을 조회중이면 그 결과를 함께 받음
   public List<PointHistory> history(long id) {
-    return pointRepository.selectHistories(id);
+    return versionedHistory(id).histories();
+  }
+
+  // 전체 이력과 읽기 전에 확인한 이력 version을 함께 반환
+  // 함께 받은 조회는 요청보다 먼저 시작했을 수 있으므로, 응답을 캐시할때는 요청에서 읽은 version이 아니라 이 version을 사용
+  public VersionedHistory versionedHistory(long id) {
+    return historyReads.load(id, key -> {
+      long version = historyVersion(key);
+      return new VersionedHistory(version, pointRepository.selectHistories(key));
+    });
+  }
+
+  // cursor 이후의 이력을 size 건씩 조회, 시간 범위 조회는 한번에 확인하는 이력 수가 제한되므로 size 건보다 적어도 nextCursor가 있을 수 있음
+  public PointHistoryPage history(long id, long cursor, long fromMillis, long toMillis, int size) {
+    if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+      throw new IllegalArgumentException("size must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+    }
+    return historyPageReads.load(
+        new HistoryPageKey(id, new PointHistoryQuery(cursor, fromMillis, toMillis, size)),
+        key -> pointRepository.selectHistories(key.id(), key.query()));
+  }
+
+  // 이력을 cursor 단위로 나눠 읽으면서 한 건씩 전달, 전체 이력을 한번에 메모리에 올리지 않음
+  public void exportHistory(long id, Consumer<PointHistory> consumer) {
+    Long cursor = 0L;
+    while (cursor != null) {
+      PointHistoryPage chunk = pointRepository.selectHistories(
+          id, new PointHistoryQuery(cursor, 0, Long.MAX_VALUE, EXPORT_CHUNK_SIZE));
+      chunk.histories().forEach(consumer);
+      cursor = chunk.nextCursor();
+    }
+  }
+
+  // 유저의 이력 version, 이력을 저장할 때마다 올라가므로 같으면 이력이 바뀌지 않은 것
+  public long historyVersion(long id) {
+    return historyVersions.get(id, 0);
+  }
+
+  private void historyWritten(long id) {
+    historyVersions.addAndGet(id, 1, key -> 0);
+  }
+
+  // 잔액이 저장된 유저 id 목록
+  public Set<Long> userIds() {
+    return pointRepository.selectUserIds();
+  }
+
+  // 재분배로 옮겨지는 유저들의 멱등키별 처리 결과, 처리중인 요청과 다시 시도할 수 있는 실패는 제외
+  public Map<Long, List<IdempotencyEntry>> idempotencyEntries(Set<Long> ids) {
+    Map<Long, List<IdempotencyEntry>> entries = new HashMap<>();
+    idempotencyCache.completedRequests(ids).forEach((id, requests) -> requests.forEach((key, request) -> {
+      IdempotencyEntry entry = idempotencyEntryOf(key, request);
+      if (entry != null) {
+        entries.computeIfAbsent(id, ignored -> new ArrayList<>()).add(entry);
+      }
+    }));
+    return entries;
+  }
+
+  private static IdempotencyEntry idempotencyEntryOf(String idempotencyKey, QueueEntity request) {
+    try {
+      return new IdempotencyEntry(idempotencyKey, request.amount, request.transactionType, request.future.join(), null);
+    } catch (CompletionException e) {
+      // 캐시에는 잔액 부족 등 요청 자체가 거절된 실패만 남으므로, 그 외의 실패는 옮기지 않음
+      return e.getCause() instanceof IllegalArgumentException cause
+          ? new IdempotencyEntry(idempotencyKey, request.amount, request.transactionType, null, cause.getMessage())
+          : null;
+    }
+  }
+
+  /**
+   * 다른 노드에서 옮겨오는 유저의 이력 일부를 반영합니다. 이력은 나눠서 여러번 받으며, 마지막에 importUser로 잔액과 함께 마무리합니다.
+   * 이전에 이 노드에서 옮겨갔던 유저라면 일부 이력은 이미 저장되어 있으므로, 금액, 종류, 시각이 같은 이력은 저장된 건수만큼 걸러내고 나머지만 저장합니다.
+   * 걸러낼 이력은 처음 받을때 저장되어 있던 이력으로 정하고 나눠 받는 동안 이어서 사용하므로, 앞서 받은 이력과 같은 이력도 걸러내지 않습니다.
+   */
+  public void importHistories(long id, List<PointHistory> histories) {
+    if (!histories.isEmpty()) {
+      Map<HistoryRow, Integer> stored = importingHistories.computeIfAbsent(id, this::storedRows);
+      List<PointHistory> missing = new ArrayList<>();
+      synchronized (stored) {
+        for (PointHistory history : histories) {
+          HistoryRow row = HistoryRow.of(history);
+          Integer count = stored.get(row);
+          if (count == null) {
+            missing.add(history);
+          } else if (count == 1) {
+            stored.remove(row);
+          } else {
+            stored.put(row, count - 1);
+          }
+        }
+      }
+      if (!missing.isEmpty()) {
+        pointRepository.insertHistories(missing);
+      }
+    }
+    // 이 노드에 남아있던 이력 응답 캐시가 쓰이지 않도록 이력 version은 항상 올림
+    historyWritten(id);
+  }
+
+  private Map<HistoryRow, Integer> storedRows(long id) {
+    Map<HistoryRow, Integer> stored = new HashMap<>();
+    pointRepository.selectHistories(id).forEach(history -> stored.merge(HistoryRow.of(history), 1, Integer::sum));
+    return stored;
+  }
+
+  // 옮겨오다 멈춘 유저의 이력 상태를 지움, 재분배를 시작하거나 취소할때 호출
+  public void discardImports() {
+    importingHistories.clear();
+  }
+
+  /**
+   * 다른 노드에서 옮겨온 유저의 잔액, 남은 이력, 멱등키별 처리 결과를 반영하고 유저를 옮겨오는 것을 마무리합니다.
+   * 옮기는 동안 해당 유저의 요청은 처리되지 않아야 합니다. 이력은 importHistories와 같이 걸러냅니다.
+   */
+  public void importUser(UserPoint userPoint, List<PointHistory> histories, List<IdempotencyEntry> idempotencyEntries) {
+    long id = userPoint.id();
+    importHistories(id, histories);
+    importingHistories.remove(id);
+    // 같은 멱등키로 재시도하면 이 노드에서도 처음 결과를 받도록 처리된 요청으로 저장
+    for (IdempotencyEntry entry : idempotencyEntries) {
+      QueueEntity request = new QueueEntity(requestSequence.incrementAndGet(),
+          id, entry.amount(), entry.type(), System.nanoTime() + requestTimeoutNanos);
+      if (entry.error() == null) {
+        request.future.complete(entry.userPoint());
+      } else {
+        request.future.completeExceptionally(new IllegalArgumentException(entry.error()));
+      }
+      idempotencyCache.putIfAbsent(id, entry.idempotencyKey(), request);
+    }
+    UserPoint imported = pointRepository.insertOrUpdate(id, userPoint.point());
+    userPoints.put(id, userPoint.point());
+    userPointCache.evict(id);
+    userPointCache.put(imported);
   }
 
   // 컨트롤러 단에서 받아온 충전 요청을 큐에 추가 및 비동기 결과값 대기
   public UserPoint charge(long id, long amount) {
-    addToQueueByCharge(id, amount);
-    return futureMapListener(id);
+    long deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+    return await(id, enqueue(id, amount, TransactionType.CHARGE, deadlineNanos), deadlineNanos);
+  }
+
+  // 충전 요청을 큐에 추가하고 결과를 기다리지 않고 CompletableFuture로 반환
+  public CompletableFuture<UserPoint> chargeAsync(long id, long amount) {
+    long deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+    return withDeadline(enqueue(id, amount, TransactionType.CHARGE, deadlineNanos), deadlineNanos);
+  }
+
+  // 멱등키가 있는 충전 요청, 같은 키로 다시 요청하면 처음 요청의 결과를 반환
+  public CompletableFuture<UserPoint> chargeAsync(long id, long amount, String idempotencyKey) {
+    QueueEntity request = addToQueue(id, amount, TransactionType.CHARGE, idempotencyKey);
+    return withDeadline(request.future, request.deadlineNanos);
   }
 
-  // 포인트 충전 처리
-  private void chargeProcess(long id, long amount) {
+  // 포인트 충전 처리 후 충전 직후 잔액을 반환
+  private long chargeProcess(long id, long amount) {
+    return userPoints.updateAndGet(id, this::storedBalance, current -> charged(current, amount));
+  }
+
+  // 잔액에 충전한 결과를 반환
+  private static long charged(long balance, long amount) {
     if (amount < 0) {
       errorMessageThrowing("amount must be positive");
     }
-    userPoints.putIfAbsent(id, new AtomicLong(0));
-    long currentAmount = userPoints.get(id).addAndGet(amount);
-    if (currentAmount == Long.MIN_VALUE) {
+    if (balance > Long.MAX_VALUE - amount) {
       errorMessageThrowing("amount is exceed Long.MAX_VALUE");
     }
-    pointRepository.insertOrUpdate(id, currentAmount);
-    pointRepository.insertHistory(id, amount, TransactionType.CHARGE, System.currentTimeMillis());
+    return balance + amount;
   }
 
   // 컨트롤러 단에서 받아온 포인트 사용 요청을 큐에 추가 및 비동기 결과값 대기
 
   public UserPoint use(long id, long amount) {
-    addToQueueByUse(id, amount);
-    return futureMapListener(id);
+    long deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+    return await(id, enqueue(id, amount, TransactionType.USE, deadlineNanos), deadlineNanos);
+  }
+
+  // 사용 요청을 큐에 추가하고 결과를 기다리지 않고 CompletableFuture로 반환
+  public CompletableFuture<UserPoint> useAsync(long id, long amount) {
+    long deadlineNanos = System.nanoTime() + requestTimeoutNanos;
+    return withDeadline(enqueue(id, amount, TransactionType.USE, deadlineNanos), deadlineNanos);
+  }
+
+  // 멱등키가 있는 사용 요청, 같은 키로 다시 요청하면 처음 요청의 결과를 반환
+  public CompletableFuture<UserPoint> useAsync(long id, long amount, String idempotencyKey) {
+    QueueEntity request = addToQueue(id, amount, TransactionType.USE, idempotencyKey);
+    return withDeadline(request.future, request.deadlineNanos);
   }
 
-  // 포인트 사용 처리
-  private void useProcess(long id, long amount) {
+  // 처리 기한까지 결과가 없으면 PointTimeoutException으로 완료되는 CompletableFuture
+  private static CompletableFuture<UserPoint> withDeadline(CompletableFuture<UserPoint> future, long deadlineNanos) {
+    return future.copy()
+        .orTimeout(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)
+        .exceptionallyCompose(e -> CompletableFuture.failedFuture(e instanceof TimeoutException
+            ? new PointTimeoutException("처리 기한까지 결과를 받지 못했습니다.")
+            : e));
+  }
+
+  // 포인트 사용 처리 후 사용 직후 잔액을 반환
+  private long useProcess(long id, long amount) {
+    // 잔액 확인과 차감을 한번의 CAS로 처리하여, 잔액이 부족하면 잔액을 바꾸지 않고 거절
+    return userPoints.updateAndGet(id, this::storedBalance, current -> debited(current, amount));
+  }
+
+  // 잔액에서 사용한 결과를 반환
+  private static long debited(long balance, long amount) {
     if (amount < 0) {
       errorMessageThrowing("amount must be positive");
     }
-    userPoints.putIfAbsent(id, new AtomicLong(0));
-    long currentAmount = userPoints.get(id).addAndGet(-amount);
-    if (currentAmount < 0) {
+    if (balance < amount) {
       errorMessageThrowing("amount is more than balance");
     }
-    pointRepository.insertOrUpdate(id, currentAmount);
-    pointRepository.insertHistory(id, amount, TransactionType.USE, System.currentTimeMillis());
+    return balance - amount;
+  }
+
+  // 처음 접근하는 유저는 저장소에 남아있는 잔액(재시작 후 복구된 잔액 등)으로 시작
+  private long storedBalance(long id) {
+    return pointRepository.selectById(id).point();
+  }
+
+  // 잔액은 저장했고 이력 저장을 기다리는 한 유저의 요청들
+  private record PendingCommit(
+      long id,
+      List<QueueEntity> requests,
+      List<QueueEntity> applied,
+      long[] balances,
+      long appliedDelta,
+      long updateMillis,
+      UserPoint stored,
+      CompletableFuture<Void> historyWrite,
+      long startNanos) {
+  }
+
+  // 노드마다 이력 id가 다르므로, 옮겨온 이력이 이미 저장된 이력인지는 금액, 종류, 시각으로 판단
+  private record HistoryRow(long amount, TransactionType type, long updateMillis) {
+    static HistoryRow of(PointHistory history) {
+      return new HistoryRow(history.amount(), history.type(), history.updateMillis());
+    }
+  }
+
+  private record HistoryPageKey(long id, PointHistoryQuery query) {
+  }
+
+  enum WriteMode {
+    // 유저 id별 레인의 워커가 처리
+    QUEUE,
+    // 요청 스레드에서 유저 id별 줄무늬 락을 잡고 처리
+    DIRECT,
+    // 요청 스레드에서 저장소의 version으로 compareAndSet 하고 충돌하면 재시도
+    OPTIMISTIC
   }
 
   // 에러 메시지 출력 및 예외 발생
@@ -0,0 +1,13 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 요청의 처리 기한이 지났을때 발생합니다. (503 Service Unavailable)
+ * 레인에서 기다리다 기한이 지난 요청은 반영하지 않고 버리므로, 대부분은 반영되지 않은 요청입니다.
+ */
+public class PointTimeoutException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public PointTimeoutException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,13 @@
+package io.hhplus.tdd.point;
+
+/**
+ * 이력 저장에 실패한 뒤 저장소의 잔액을 이전 잔액으로 되돌리지 못했을때 발생합니다.
+ * 잔액은 반영된 채로 남아있으므로, 멱등키가 있는 요청은 키를 유지하여 재시도가 다시 반영되지 않도록 합니다.
+ */
+public class PointUncompensatedException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public PointUncompensatedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,31 @@
+package io.hhplus.tdd.point;
+
+import java.util.List;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 바이너리 응답 형식(application/x-point-binary)과 엔드포인트 응답 시간 기록을 등록합니다.
+ * 기존 변환기 뒤에 추가하므로, Accept가 없거나 와일드카드이면 지금처럼 JSON으로 응답합니다.
+ */
+@Configuration
+public class PointWebConfig implements WebMvcConfigurer {
+
+  private final PointMetrics pointMetrics;
+
+  public PointWebConfig(PointMetrics pointMetrics) {
+    this.pointMetrics = pointMetrics;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new RequestTimingInterceptor(pointMetrics));
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new PointBinaryHttpMessageConverter());
+  }
+}
@@ -1,10 +1,11 @@
 package io.hhplus.tdd.point;
 
-import java.sql.Time;
+import java.util.concurrent.CompletableFuture;
 import lombok.Getter;
 
 
 // 큐에 저장되는 객체를 정의한 클래스
+// 레인의 링 버퍼는 이 객체를 슬롯으로 미리 만들어 두고, 요청 값을 복사하여 재사용합니다.
 public class QueueEntity implements Comparable<QueueEntity>{
   long id;
   long amount;
@@ -12,17 +13,52 @@ public class QueueEntity implements Comparable<QueueEntity>{
   //시간순서대로 확인하기위해 timestamp 추가
   @Getter
   long timestamp;
+  // 같은 밀리초에 들어온 요청을 구분하기 위한 요청 순번
+  @Getter
+  long sequence;
+  // 처리 기한(System.nanoTime 기준), 기한이 지난 요청은 반영하지 않음
+  @Getter
+  long deadlineNanos;
+  // 요청이 만들어진 시각(System.nanoTime 기준), 레인에서 기다린 시간을 재기 위해 사용
+  long createdNanos;
+  // 요청마다 결과를 전달받기 위한 CompletableFuture
+  CompletableFuture<UserPoint> future;
+
+  QueueEntity(long sequence, long id, long amount, TransactionType transactionType, long deadlineNanos) {
+    fill(sequence, id, amount, transactionType, deadlineNanos, new CompletableFuture<>());
+  }
+
+  // 링 버퍼의 빈 슬롯
+  QueueEntity() {
+  }
 
-  QueueEntity(long id, long amount, TransactionType transactionType) {
+  // 요청 값을 채움, 링 버퍼의 슬롯은 요청마다 다시 채워서 사용
+  void fill(long sequence, long id, long amount, TransactionType transactionType, long deadlineNanos,
+      CompletableFuture<UserPoint> future) {
+    this.sequence = sequence;
+    this.deadlineNanos = deadlineNanos;
     this.id = id;
     this.amount = amount;
     this.transactionType = transactionType;
-    timestamp = new Time(System.currentTimeMillis()).getTime();
+    this.future = future;
+    createdNanos = System.nanoTime();
+    timestamp = System.currentTimeMillis();
+  }
+
+  // 처리가 끝난 슬롯이 결과를 계속 참조하지 않도록 비움
+  void clear() {
+    transactionType = null;
+    future = null;
+  }
+
+  boolean isExpired(long nowNanos) {
+    return nowNanos - deadlineNanos >= 0;
   }
 
   // 큐에 저장된 객체를 시간순서대로 정렬하기 위해 Comparable 인터페이스 구현
   @Override
   public int compareTo(QueueEntity other) {
-    return Long.compare(this.timestamp, other.timestamp);
+    int compared = Long.compare(this.timestamp, other.timestamp);
+    return compared != 0 ? compared : Long.compare(this.sequence, other.sequence);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+package io.hhplus.tdd.point;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 레인 하나의 요청을 담는 미리 할당된 링 버퍼 (여러 생산자, 하나의 소비자)
+ * 1. 슬롯(QueueEntity)과 슬롯별 발행 순번 배열을 미리 만들어 두고 재사용하므로, 요청을 넣을 때 큐 노드나 요청 객체를 새로 만들지 않고 락도 잡지 않습니다.
+ * 2. 생산자는 순번을 CAS로 하나 얻어(claim) 슬롯에 요청 값을 복사한 뒤, 슬롯의 발행 순번을 기록하여 소비자에게 공개합니다.
+ *  - 소비자는 순번 순서대로만 꺼내므로, 먼저 순번을 얻은 요청이 먼저 처리됩니다.
+ * 3. 소비자는 다음 순번부터 연속으로 발행된 슬롯을 최대 maxBatchSize개 꺼내 처리하고, 처리가 끝나면 release로 슬롯을 돌려줍니다.
+ *  - 꺼낸 슬롯은 release 전까지 다시 쓰이지 않도록, 배열은 capacity + maxBatchSize 개 이상으로 만듭니다.
+ * 4. 꺼내지 않은 요청이 capacity 개면 생산자는 timeout까지 잠깐씩 쉬며 자리가 나길 기다리고, 나지 않으면 실패합니다.
+ * 5. 소비자가 다음 요청을 기다리는 방식은 WaitStrategy로 정합니다.
+ */
+final class RequestRingBuffer {
+
+  private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final int YIELD_AFTER_SPINS = 100;
+  private static final long PRODUCER_PARK_NANOS = 1_000L;
+  private static final long RELEASE_POLL_NANOS = 1_000_000L;
+
+  private final QueueEntity[] slots;
+  // 슬롯에 마지막으로 발행된 순번, 소비자는 기다리는 순번과 같을때만 슬롯을 읽음
+  private final long[] published;
+  private final int mask;
+  private final int capacity;
+  private final int maxBatchSize;
+  private final WaitStrategy waitStrategy;
+  // 생산자가 마지막으로 얻은 순번
+  private final AtomicLong claimed = new AtomicLong(-1);
+  // 소비자가 마지막으로 꺼낸 순번
+  private volatile long consumed = -1;
+  // 소비자가 처리를 마치고 돌려준 마지막 순번, 그 이하의 슬롯만 다시 쓸 수 있음
+  private volatile long released = -1;
+  // BLOCKING 방식에서 park 중인 소비자 스레드
+  private volatile Thread parkedConsumer;
+
+  RequestRingBuffer(int capacity, int maxBatchSize, WaitStrategy waitStrategy) {
+    if (capacity < 1 || maxBatchSize < 1 || capacity > (1 << 29) || maxBatchSize > (1 << 29)) {
+      throw new IllegalArgumentException("capacity and maxBatchSize must be between 1 and " + (1 << 29));
+    }
+    // 슬롯 위치를 비트 연산으로 구하도록 배열은 2의 거듭제곱 크기로 만들고, 쌓이는 요청 수는 capacity로 제한
+    int required = capacity + maxBatchSize;
+    int size = Integer.highestOneBit(required) == required ? required : Integer.highestOneBit(required) << 1;
+    this.slots = new QueueEntity[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new QueueEntity();
+    }
+    this.published = new long[size];
+    Arrays.fill(published, -1);
+    this.mask = size - 1;
+    this.capacity = capacity;
+    this.maxBatchSize = maxBatchSize;
+    this.waitStrategy = waitStrategy;
+  }
+
+  /**
+   * 요청 값을 슬롯에 복사하고 소비자에게 공개합니다. 자리가 없으면 timeoutNanos 까지 기다리고, 그래도 없거나 인터럽트되면 false를 반환합니다.
+   */
+  boolean offer(long requestSequence, long id, long amount, TransactionType transactionType, long deadlineNanos,
+      CompletableFuture<UserPoint> future, long timeoutNanos) {
+    long sequence;
+    long deadline = 0;
+    boolean waiting = false;
+    while (true) {
+      long current = claimed.get();
+      sequence = current + 1;
+      if (sequence - capacity > consumed || sequence - slots.length > released) {
+        if (!waiting) {
+          if (timeoutNanos <= 0) {
+            return false;
+          }
+          deadline = System.nanoTime() + timeoutNanos;
+          waiting = true;
+        } else if (System.nanoTime() - deadline >= 0) {
+          return false;
+        }
+        LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+        if (Thread.currentThread().isInterrupted()) {
+          return false;
+        }
+        continue;
+      }
+      if (claimed.compareAndSet(current, sequence)) {
+        break;
+      }
+    }
+    int index = (int) sequence & mask;
+    slots[index].fill(requestSequence, id, amount, transactionType, deadlineNanos, future);
+    // 발행 순번을 volatile로 써서 슬롯의 요청 값이 함께 보이고, 아래에서 parkedConsumer를 읽기 전에 반영되도록 함
+    PUBLISHED.setVolatile(published, index, sequence);
+    if (waitStrategy == WaitStrategy.BLOCKING) {
+      Thread consumer = parkedConsumer;
+      if (consumer != null) {
+        LockSupport.unpark(consumer);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 다음 요청이 발행될 때까지 기다린 뒤, 연속으로 발행된 슬롯을 최대 maxBatchSize개 batch에 담습니다. 소비자 스레드 하나에서만 호출합니다.
+   * 담긴 슬롯은 release를 호출하기 전까지만 유효하며, 다음 drainTo 전에 release 해야 합니다.
+   */
+  void drainTo(List<QueueEntity> batch) throws InterruptedException {
+    long next = consumed + 1;
+    waitFor(next);
+    long sequence = next;
+    while (sequence - next < maxBatchSize && isPublished(sequence)) {
+      batch.add(slots[(int) sequence & mask]);
+      sequence++;
+    }
+    consumed = sequence - 1;
+  }
+
+  /**
+   * 꺼낸 슬롯의 처리가 끝났음을 알리고 생산자가 다시 쓸 수 있도록 돌려줍니다. 소비자 스레드 하나에서만 호출합니다.
+   */
+  void release() {
+    long last = consumed;
+    for (long sequence = released + 1; sequence <= last; sequence++) {
+      // 처리가 끝난 요청의 결과가 슬롯에 남아있지 않도록 참조를 지움
+      slots[(int) sequence & mask].clear();
+    }
+    released = last;
+  }
+
+  // 생산자가 마지막으로 얻은 순번, awaitReleased로 이 순번까지의 요청이 처리되길 기다릴 수 있음
+  long claimedSequence() {
+    return claimed.get();
+  }
+
+  /**
+   * sequence 이하의 요청이 모두 처리되어 돌려질 때까지 잠깐씩 쉬며 기다립니다. 그 뒤에 들어온 요청은 기다리지 않습니다.
+   * deadline(System.nanoTime 기준)까지 끝나지 않으면 false를 반환합니다.
+   */
+  boolean awaitReleased(long sequence, long deadline) throws InterruptedException {
+    while (released < sequence) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(RELEASE_POLL_NANOS);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return true;
+  }
+
+  // 쌓여있는 요청 수 (순번을 얻었지만 아직 발행하지 않은 요청 포함)
+  int size() {
+    return (int) (claimed.get() - consumed);
+  }
+
+  private boolean isPublished(long sequence) {
+    return (long) PUBLISHED.getVolatile(published, (int) sequence & mask) == sequence;
+  }
+
+  private void waitFor(long sequence) throws InterruptedException {
+    int spins = 0;
+    while (!isPublished(sequence)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      switch (waitStrategy) {
+        case BUSY_SPIN -> Thread.onSpinWait();
+        case YIELDING -> {
+          if (spins < YIELD_AFTER_SPINS) {
+            spins++;
+            Thread.onSpinWait();
+          } else {
+            Thread.yield();
+          }
+        }
+        default -> {
+          // park 전에 자신을 기록하고 다시 확인하므로, 그 사이에 발행한 생산자는 반드시 깨워줌
+          parkedConsumer = Thread.currentThread();
+          if (!isPublished(sequence)) {
+            LockSupport.park(this);
+          }
+          parkedConsumer = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * 소비자가 다음 요청을 기다리는 방식
+   */
+  enum WaitStrategy {
+    // 스레드를 park 하고 생산자가 깨움, 대기중 CPU를 쓰지 않지만 깨어나는데 수십 µs가 걸릴 수 있음
+    BLOCKING,
+    // 잠깐 spin 한 뒤 Thread.yield()를 반복, 다른 스레드에 CPU를 양보하며 지연이 짧음
+    YIELDING,
+    // 계속 spin, 레인마다 코어 하나를 쓰는 대신 지연이 가장 짧음
+    BUSY_SPIN;
+
+    static WaitStrategy from(String name) {
+      return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+  }
+}
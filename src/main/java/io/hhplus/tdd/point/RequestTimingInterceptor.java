@@ -0,0 +1,41 @@
+package io.hhplus.tdd.point;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 컨트롤러 엔드포인트의 응답 시간을 메서드, URI 패턴, 상태 코드별로 PointMetrics에 기록합니다.
+ * 비동기 응답(CompletableFuture)은 처음 요청에서 시작 시각을 저장하고, 결과를 쓰는 비동기 디스패치가 끝날때 기록합니다.
+ * URI는 요청 경로가 아니라 매핑된 패턴(/point/{id})으로 기록하여, 유저 id마다 타이머가 만들어지지 않도록 합니다.
+ */
+class RequestTimingInterceptor implements AsyncHandlerInterceptor {
+
+  private static final String START_NANOS = RequestTimingInterceptor.class.getName() + ".startNanos";
+  private static final String UNKNOWN_URI = "UNKNOWN";
+
+  private final PointMetrics metrics;
+
+  RequestTimingInterceptor(PointMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getAttribute(START_NANOS) == null) {
+      request.setAttribute(START_NANOS, System.nanoTime());
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    if (!(request.getAttribute(START_NANOS) instanceof Long startNanos)) {
+      return;
+    }
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    metrics.requestHandled(request.getMethod(), pattern == null ? UNKNOWN_URI : pattern.toString(),
+        response.getStatus(), System.nanoTime() - startNanos);
+  }
+}
@@ -0,0 +1,191 @@
+package io.hhplus.tdd.point;
+
+import io.hhplus.tdd.database.IndexedPointHistoryStore;
+import io.hhplus.tdd.database.PointHistoryStore;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 지연 없는 저장소에 설정한 지연 모델(LatencyModel)을 씌운 저장소 (point.repository.type=simulated)
+ * 1. UserPointTable/PointHistoryTable의 throttle은 코드에 고정된 균등 분포라, 대신 메모리 저장소 앞에서 지연을 만듭니다.
+ * 2. 잔액 조회, 잔액 저장, 이력 저장, 이력 조회마다 다른 지연 모델을 설정할 수 있습니다.
+ *  - 기본값은 테이블의 throttle과 같은 분포입니다. (잔액 조회 0~200ms, 잔액 저장 0~300ms, 이력 저장 0~300ms, 이력 조회 없음)
+ *  - 이력 일괄 저장(insertHistories)은 테이블과 달리 한번의 지연만 가집니다.
+ * 3. point.simulation.seed를 지정하면 호출 순서별 지연이 매번 같게 재현되어, 부하 테스트 결과를 비교할 수 있습니다.
+ * 4. 지연 모델을 모두 zero로 두면(withoutLatency) 서비스 로직만 확인하는 테스트와 벤치마크의 저장소로 사용합니다.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "point.repository.type", havingValue = "simulated")
+public class SimulatedPointRepository implements PointRepository {
+
+  private final PointRepository delegate;
+  private final LatencyModel pointReadLatency;
+  private final LatencyModel pointWriteLatency;
+  private final LatencyModel historyReadLatency;
+  private final LatencyModel historyWriteLatency;
+
+  @Autowired
+  public SimulatedPointRepository(
+      PointHistoryStore pointHistoryStore,
+      @Value("${point.simulation.seed:}") String seed,
+      @Value("${point.simulation.point-read-latency:uniform:0:200}") String pointReadLatency,
+      @Value("${point.simulation.point-write-latency:uniform:0:300}") String pointWriteLatency,
+      @Value("${point.simulation.history-read-latency:zero}") String historyReadLatency,
+      @Value("${point.simulation.history-write-latency:uniform:0:300}") String historyWriteLatency) {
+    this(new MemoryStore(pointHistoryStore), seedOf(seed),
+        pointReadLatency, pointWriteLatency, historyReadLatency, historyWriteLatency);
+  }
+
+  SimulatedPointRepository(
+      long seed,
+      String pointReadLatency,
+      String pointWriteLatency,
+      String historyReadLatency,
+      String historyWriteLatency) {
+    this(new MemoryStore(new IndexedPointHistoryStore()), seed,
+        pointReadLatency, pointWriteLatency, historyReadLatency, historyWriteLatency);
+  }
+
+  private SimulatedPointRepository(
+      PointRepository delegate,
+      long seed,
+      String pointReadLatency,
+      String pointWriteLatency,
+      String historyReadLatency,
+      String historyWriteLatency) {
+    this.delegate = delegate;
+    // 모델마다 seed를 달리하여 서로 다른 지연 순서를 가지도록 함
+    this.pointReadLatency = LatencyModel.parse(pointReadLatency, seed);
+    this.pointWriteLatency = LatencyModel.parse(pointWriteLatency, seed + 1);
+    this.historyReadLatency = LatencyModel.parse(historyReadLatency, seed + 2);
+    this.historyWriteLatency = LatencyModel.parse(historyWriteLatency, seed + 3);
+    log.info("simulated repository. seed: {}, point read: {}, point write: {}, history read: {}, history write: {}",
+        seed, pointReadLatency, pointWriteLatency, historyReadLatency, historyWriteLatency);
+  }
+
+  // 지연 없이 메모리에만 저장하는 저장소
+  static SimulatedPointRepository withoutLatency() {
+    return new SimulatedPointRepository(0, "zero", "zero", "zero", "zero");
+  }
+
+  // seed가 없으면 실행마다 다른 지연 순서를 사용
+  private static long seedOf(String seed) {
+    return seed.isBlank() ? System.nanoTime() : Long.parseLong(seed.trim());
+  }
+
+  @Override
+  public UserPoint insertOrUpdate(long id, long amount) {
+    pointWriteLatency.pause();
+    return delegate.insertOrUpdate(id, amount);
+  }
+
+  @Override
+  public Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount) {
+    pointWriteLatency.pause();
+    return delegate.compareAndSet(id, expectedVersion, amount);
+  }
+
+  @Override
+  public void insertHistory(long id, long amount, TransactionType type, long updateMillis) {
+    historyWriteLatency.pause();
+    delegate.insertHistory(id, amount, type, updateMillis);
+  }
+
+  @Override
+  public void insertHistories(List<PointHistory> histories) {
+    historyWriteLatency.pause();
+    delegate.insertHistories(histories);
+  }
+
+  @Override
+  public UserPoint selectById(long id) {
+    pointReadLatency.pause();
+    return delegate.selectById(id);
+  }
+
+  @Override
+  public Set<Long> selectUserIds() {
+    return delegate.selectUserIds();
+  }
+
+  @Override
+  public List<PointHistory> selectHistories(long id) {
+    historyReadLatency.pause();
+    return delegate.selectHistories(id);
+  }
+
+  @Override
+  public PointHistoryPage selectHistories(long id, PointHistoryQuery query) {
+    historyReadLatency.pause();
+    return delegate.selectHistories(id, query);
+  }
+
+  // UserPointTable의 지연(throttle) 없이 메모리에만 저장하는 저장소
+  private static final class MemoryStore implements PointRepository {
+    private final Map<Long, UserPoint> userPoints = new ConcurrentHashMap<>();
+    private final PointHistoryStore pointHistoryStore;
+
+    MemoryStore(PointHistoryStore pointHistoryStore) {
+      this.pointHistoryStore = pointHistoryStore;
+    }
+
+    @Override
+    public UserPoint insertOrUpdate(long id, long amount) {
+      return userPoints.merge(id, new UserPoint(id, amount, System.currentTimeMillis(), 1),
+          (current, next) -> new UserPoint(id, amount, next.updateMillis(), current.version() + 1));
+    }
+
+    @Override
+    public Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount) {
+      UserPoint[] stored = new UserPoint[1];
+      userPoints.compute(id, (key, current) -> {
+        long version = current == null ? 0 : current.version();
+        if (version != expectedVersion) {
+          return current;
+        }
+        stored[0] = new UserPoint(id, amount, System.currentTimeMillis(), version + 1);
+        return stored[0];
+      });
+      return Optional.ofNullable(stored[0]);
+    }
+
+    @Override
+    public void insertHistory(long id, long amount, TransactionType type, long updateMillis) {
+      pointHistoryStore.insertAll(List.of(new PointHistory(0, id, amount, type, updateMillis)));
+    }
+
+    @Override
+    public void insertHistories(List<PointHistory> histories) {
+      pointHistoryStore.insertAll(histories);
+    }
+
+    @Override
+    public UserPoint selectById(long id) {
+      return userPoints.getOrDefault(id, UserPoint.empty(id));
+    }
+
+    @Override
+    public Set<Long> selectUserIds() {
+      return Set.copyOf(userPoints.keySet());
+    }
+
+    @Override
+    public List<PointHistory> selectHistories(long id) {
+      return pointHistoryStore.selectAllByUserId(id);
+    }
+
+    @Override
+    public PointHistoryPage selectHistories(long id, PointHistoryQuery query) {
+      return pointHistoryStore.selectByUserId(id, query);
+    }
+  }
+}
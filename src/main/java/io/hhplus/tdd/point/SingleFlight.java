@@ -0,0 +1,50 @@
+package io.hhplus.tdd.point;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 같은 키로 동시에 들어온 조회를 한번의 저장소 조회로 합칩니다. (single flight)
+ * 1. 키로 진행중인 조회가 없으면 호출한 스레드가 직접 조회하고, 있으면 그 조회가 끝나길 기다려 결과를 함께 받습니다.
+ * 2. 조회가 끝나면 바로 키를 지우므로 결과를 보관하지 않고, 진행중인 조회에 합류한 요청만 결과를 공유합니다.
+ * 3. 조회가 실패하면 기다리던 요청도 같은 예외를 받습니다.
+ */
+final class SingleFlight<K, V> {
+
+  private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  // 진행중인 조회에 합류할 때마다 호출
+  private final Runnable onShared;
+
+  SingleFlight(Runnable onShared) {
+    this.onShared = onShared;
+  }
+
+  V load(K key, Function<K, V> loader) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+    if (running != null) {
+      onShared.run();
+      try {
+        return running.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw e;
+      }
+    }
+    try {
+      V value = loader.apply(key);
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package io.hhplus.tdd.point;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 저장소 메서드마다 호출 시간을 point.repository 타이머(repository, method)로 기록하는 PointRepository
+ * 타이머는 메서드마다 미리 만들어 두고, 호출은 그대로 감싼 저장소에 위임합니다.
+ * 비동기 메서드도 감싼 저장소의 구현에 위임하고, 완료될 때까지의 시간을 동기 메서드와 같은 타이머에 기록합니다.
+ */
+class TimedPointRepository implements PointRepository {
+
+  private final PointRepository delegate;
+  private final Timer insertOrUpdate;
+  private final Timer compareAndSet;
+  private final Timer insertHistory;
+  private final Timer insertHistories;
+  private final Timer selectById;
+  private final Timer selectUserIds;
+  private final Timer selectHistories;
+  private final Timer selectHistoriesPage;
+
+  TimedPointRepository(PointRepository delegate, MeterRegistry registry) {
+    this.delegate = delegate;
+    String repository = delegate.getClass().getSimpleName();
+    this.insertOrUpdate = timer(registry, repository, "insertOrUpdate");
+    this.compareAndSet = timer(registry, repository, "compareAndSet");
+    this.insertHistory = timer(registry, repository, "insertHistory");
+    this.insertHistories = timer(registry, repository, "insertHistories");
+    this.selectById = timer(registry, repository, "selectById");
+    this.selectUserIds = timer(registry, repository, "selectUserIds");
+    this.selectHistories = timer(registry, repository, "selectHistories");
+    this.selectHistoriesPage = timer(registry, repository, "selectHistoriesPage");
+  }
+
+  private static Timer timer(MeterRegistry registry, String repository, String method) {
+    return PointMetrics.latencyTimer("point.repository")
+        .description("저장소 메서드 호출 시간")
+        .tag("repository", repository)
+        .tag("method", method)
+        .register(registry);
+  }
+
+  @Override
+  public UserPoint insertOrUpdate(long id, long amount) {
+    return insertOrUpdate.record(() -> delegate.insertOrUpdate(id, amount));
+  }
+
+  @Override
+  public Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount) {
+    return compareAndSet.record(() -> delegate.compareAndSet(id, expectedVersion, amount));
+  }
+
+  @Override
+  public void insertHistory(long id, long amount, TransactionType type, long updateMillis) {
+    insertHistory.record(() -> delegate.insertHistory(id, amount, type, updateMillis));
+  }
+
+  @Override
+  public void insertHistories(List<PointHistory> histories) {
+    insertHistories.record(() -> delegate.insertHistories(histories));
+  }
+
+  @Override
+  public CompletableFuture<Void> insertHistoriesAsync(List<PointHistory> histories, Executor executor) {
+    Timer.Sample sample = Timer.start();
+    return delegate.insertHistoriesAsync(histories, executor).whenComplete((ignored, e) -> sample.stop(insertHistories));
+  }
+
+  @Override
+  public UserPoint selectById(long id) {
+    return selectById.record(() -> delegate.selectById(id));
+  }
+
+  @Override
+  public Set<Long> selectUserIds() {
+    return selectUserIds.record(delegate::selectUserIds);
+  }
+
+  @Override
+  public List<PointHistory> selectHistories(long id) {
+    return selectHistories.record(() -> delegate.selectHistories(id));
+  }
+
+  @Override
+  public PointHistoryPage selectHistories(long id, PointHistoryQuery query) {
+    return selectHistoriesPage.record(() -> delegate.selectHistories(id, query));
+  }
+}
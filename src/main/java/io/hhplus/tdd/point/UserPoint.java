@@ -1,11 +1,19 @@
 package io.hhplus.tdd.point;
 
+/**
+ * version은 저장소에 저장될 때마다 1씩 증가하며, 낙관적 동시성 제어(compareAndSet)의 기준값으로 사용됩니다.
+ */
 public record UserPoint(
         long id,
         long point,
-        long updateMillis
+        long updateMillis,
+        long version
 ) {
 
+    public UserPoint(long id, long point, long updateMillis) {
+        this(id, point, updateMillis, 0);
+    }
+
     public static UserPoint empty(long id) {
         return new UserPoint(id, 0, System.currentTimeMillis());
     }
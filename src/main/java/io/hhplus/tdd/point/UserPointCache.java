@@ -0,0 +1,105 @@
+package io.hhplus.tdd.point;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 포인트 조회를 위한 write-through 캐시
+ * 1. 쓰기 경로에서 저장에 성공한 잔액을 바로 캐시에 반영하므로, 조회는 메모리에서 처리하고 캐시 미스일때만 테이블을 조회합니다.
+ * 2. 세그먼트별 최대 크기를 넘으면 가장 오래 사용되지 않은 항목부터 제거(LRU)하고, TTL이 지난 항목은 조회시 제거됩니다.
+ * 3. 쓰기 경로의 반영은 캐시된 값보다 version이 낮지 않을때만 덮어써서, 늦게 도착한 이전 쓰기 결과가 최신 값을 덮어쓰지 않습니다.
+ * 4. 캐시 미스로 읽어온 값은 저장된 값이 없을때만 반영하여, 동시에 진행된 쓰기 결과를 덮어쓰지 않습니다.
+ *  - 만료된 값이 남아있어도 그보다 version이 낮은 값은 반영하지 않으므로, 되돌리기 전에 읽은 잔액이 되돌린 잔액을 덮어쓰지 않습니다.
+ */
+@Component
+public class UserPointCache {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+  private final long ttlNanos;
+
+  public UserPointCache(
+      @Value("${point.cache.max-size:100000}") int maxSize,
+      @Value("${point.cache.ttl-millis:60000}") long ttlMillis) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    int segmentCapacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+    this.ttlNanos = ttlMillis * 1_000_000L;
+  }
+
+  // 캐시된 잔액을 반환, 없거나 만료되었으면 null
+  public UserPoint get(long id) {
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      Entry entry = segment.get(id);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt() - System.nanoTime() < 0) {
+        segment.remove(id);
+        return null;
+      }
+      return entry.userPoint();
+    }
+  }
+
+  // 쓰기 경로에서 저장된 잔액을 반영, 캐시된 값이 더 최신 version이면 무시
+  public void put(UserPoint userPoint) {
+    Segment segment = segmentOf(userPoint.id());
+    synchronized (segment) {
+      Entry entry = segment.get(userPoint.id());
+      if (entry == null || entry.userPoint().version() <= userPoint.version()) {
+        segment.put(userPoint.id(), new Entry(userPoint, System.nanoTime() + ttlNanos));
+      }
+    }
+  }
+
+  // 캐시 미스로 읽어온 잔액을 저장된 값이 없을때만 반영, 만료된 값이 더 최신 version이면 무시
+  public void putIfAbsent(UserPoint userPoint) {
+    Segment segment = segmentOf(userPoint.id());
+    synchronized (segment) {
+      Entry entry = segment.get(userPoint.id());
+      if (entry == null
+          || (entry.expiresAt() - System.nanoTime() < 0 && entry.userPoint().version() <= userPoint.version())) {
+        segment.put(userPoint.id(), new Entry(userPoint, System.nanoTime() + ttlNanos));
+      }
+    }
+  }
+
+  public void evict(long id) {
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      segment.remove(id);
+    }
+  }
+
+  private Segment segmentOf(long id) {
+    return segments[Math.floorMod(Long.hashCode(id), SEGMENT_COUNT)];
+  }
+
+  private record Entry(UserPoint userPoint, long expiresAt) {
+  }
+
+  // 접근 순서를 유지하는 LinkedHashMap으로 LRU 제거를 구현
+  private static class Segment extends LinkedHashMap<Long, Entry> {
+    private static final long serialVersionUID = 1L;
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+}
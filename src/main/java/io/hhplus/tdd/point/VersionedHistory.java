@@ -0,0 +1,13 @@
+package io.hhplus.tdd.point;
+
+import java.util.List;
+
+/**
+ * 유저의 전체 이력과, 이력을 읽기 전에 확인한 이력 version(PointService.historyVersion)
+ * 이력은 version을 확인한 뒤에 읽으므로, 이 version까지 저장된 이력을 모두 포함합니다.
+ */
+public record VersionedHistory(
+        long version,
+        List<PointHistory> histories
+) {
+}
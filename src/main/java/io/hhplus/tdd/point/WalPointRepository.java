@@ -0,0 +1,215 @@
+package io.hhplus.tdd.point;
+
+import io.hhplus.tdd.database.DurablePointHistoryStore;
+import io.hhplus.tdd.database.PointHistoryStore;
+import io.hhplus.tdd.database.WalRecord;
+import io.hhplus.tdd.database.WriteAheadLog;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * write-ahead log에 기록한 뒤 메모리에 반영하는 저장소 (point.repository.type=wal)
+ * 1. 잔액 변경과 이력은 WAL에 먼저 추가하고, 그 다음 메모리의 잔액과 PointHistoryStore에 반영합니다.
+ * 2. 시작시 최신 스냅샷과 그 이후의 WAL로 잔액을 복원하고, 이력 세그먼트의 이력과 그 이후 WAL의 이력 레코드로 PointHistoryStore를 다시 채웁니다.
+ *  - 이력 id는 이 저장소가 발급하여 WAL 레코드와 PointHistoryStore에 함께 저장하므로, 복구한 이력도 원래의 id를 그대로 가집니다.
+ *    id를 직접 발급하는 저장소(keepsIds = false, point.history.store=table)와는 함께 사용할 수 없습니다.
+ *  - PointHistoryStore가 영속 저장소(DurablePointHistoryStore)면 스냅샷마다 이력을 디스크에 반영(flush)하고, 그때의 마지막 이력 id를 스냅샷에 기록합니다.
+ *    재시작시 그 이후의 이력은 디스크에 반영되지 않았을 수 있으므로 지우고(truncateAfter), 스냅샷 이후의 WAL로 다시 채웁니다.
+ * 3. 잔액 갱신은 유저 id별 줄무늬 락(striped lock)을 잡고 version 확인(compareAndSet), WAL 추가, 메모리 반영을 순서대로 합니다.
+ *  - WAL에 추가된 잔액만 메모리에 반영되므로, 조회와 compareAndSet은 기록되지 않은 version을 보지 않습니다.
+ *  - WAL 추가에 실패하면 메모리에 반영하지 않으므로 되돌릴 것이 없습니다.
+ *  - WAL 레코드에 version을 함께 기록하고 복구시 version이 가장 큰 잔액을 사용하므로, version은 재시작 후에도 이어집니다.
+ * 4. snapshotEvery 건의 레코드가 쌓일 때마다 스냅샷을 찍고 오래된 세그먼트를 지워, 복구할 WAL을 스냅샷 주기만큼으로 제한합니다.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "point.repository.type", havingValue = "wal")
+public class WalPointRepository implements PointRepository {
+
+  private static final int WRITE_LOCK_STRIPES = 64;
+
+  private final WriteAheadLog writeAheadLog;
+  private final PointHistoryStore pointHistoryStore;
+  private final Map<Long, UserPoint> balances = new ConcurrentHashMap<>();
+  // 쓰기는 공유 락, 스냅샷은 배타 락을 잡아 스냅샷이 WAL 위치와 일치하는 잔액을 보도록 보장
+  private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+  // 같은 유저의 잔액 갱신이 WAL 추가부터 메모리 반영까지 겹치지 않도록 하는 줄무늬 락
+  private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCK_STRIPES];
+  private final long snapshotEvery;
+  private final AtomicLong appendedSinceSnapshot = new AtomicLong();
+  private final AtomicBoolean snapshotting = new AtomicBoolean();
+  // 마지막으로 발급한 이력 id
+  private final AtomicLong historyIds = new AtomicLong();
+
+  public WalPointRepository(
+      PointHistoryStore pointHistoryStore,
+      @Value("${point.wal.dir:./data/wal}") String directory,
+      @Value("${point.wal.sync-policy:interval}") String syncPolicy,
+      @Value("${point.wal.sync-interval-millis:10}") long syncIntervalMillis,
+      @Value("${point.wal.snapshot-every:100000}") long snapshotEvery) {
+    if (!pointHistoryStore.keepsIds()) {
+      throw new IllegalStateException("history store that issues its own ids cannot be used with the wal repository");
+    }
+    this.pointHistoryStore = pointHistoryStore;
+    this.snapshotEvery = snapshotEvery;
+    for (int i = 0; i < WRITE_LOCK_STRIPES; i++) {
+      writeLocks[i] = new ReentrantLock();
+    }
+    this.writeAheadLog = new WriteAheadLog(
+        Path.of(directory),
+        WriteAheadLog.SyncPolicy.valueOf(syncPolicy.toUpperCase(Locale.ROOT)),
+        syncIntervalMillis);
+    List<PointHistory> recovered = new ArrayList<>();
+    WriteAheadLog.Recovery recovery = writeAheadLog.recover(record -> recovered.add(new PointHistory(
+        record.version(), record.userId(), record.amount(), TransactionType.valueOf(record.kind().name()),
+        record.updateMillis())));
+    balances.putAll(recovery.balances());
+    if (pointHistoryStore instanceof DurablePointHistoryStore durable) {
+      durable.truncateAfter(recovery.historyLastId());
+    } else {
+      pointHistoryStore.insertAll(recovery.histories());
+    }
+    pointHistoryStore.insertAll(recovered);
+    historyIds.set(pointHistoryStore.lastId());
+  }
+
+  @Override
+  public UserPoint insertOrUpdate(long id, long amount) {
+    return update(id, amount, -1).orElseThrow();
+  }
+
+  @Override
+  public Optional<UserPoint> compareAndSet(long id, long expectedVersion, long amount) {
+    return update(id, amount, expectedVersion);
+  }
+
+  @Override
+  public void insertHistory(long id, long amount, TransactionType type, long updateMillis) {
+    insertHistories(List.of(new PointHistory(0, id, amount, type, updateMillis)));
+  }
+
+  // 이력 id를 발급하여 WAL 레코드에 함께 기록, WAL 추가에 실패한 id는 건너뜀
+  @Override
+  public void insertHistories(List<PointHistory> histories) {
+    List<PointHistory> stored = new ArrayList<>(histories.size());
+    List<WalRecord> records = new ArrayList<>(histories.size());
+    snapshotLock.readLock().lock();
+    try {
+      long id = historyIds.getAndAdd(histories.size());
+      for (PointHistory history : histories) {
+        PointHistory withId = new PointHistory(
+            ++id, history.userId(), history.amount(), history.type(), history.updateMillis());
+        stored.add(withId);
+        records.add(new WalRecord(WalRecord.Kind.valueOf(withId.type().name()),
+            withId.userId(), withId.amount(), withId.updateMillis(), withId.id()));
+      }
+      writeAheadLog.append(records);
+      pointHistoryStore.insertAll(stored);
+    } finally {
+      snapshotLock.readLock().unlock();
+    }
+    afterAppend(records.size());
+  }
+
+  @Override
+  public UserPoint selectById(long id) {
+    return balances.getOrDefault(id, UserPoint.empty(id));
+  }
+
+  @Override
+  public Set<Long> selectUserIds() {
+    return Set.copyOf(balances.keySet());
+  }
+
+  @Override
+  public List<PointHistory> selectHistories(long id) {
+    return pointHistoryStore.selectAllByUserId(id);
+  }
+
+  @Override
+  public PointHistoryPage selectHistories(long id, PointHistoryQuery query) {
+    return pointHistoryStore.selectByUserId(id, query);
+  }
+
+  // expectedVersion이 -1이면 version과 관계없이 저장, 저장하지 않았으면 empty
+  // WAL에 추가한 뒤에 메모리에 반영하고, 추가에 실패하면 메모리를 바꾸지 않고 예외를 전달
+  private Optional<UserPoint> update(long id, long amount, long expectedVersion) {
+    UserPoint stored;
+    ReentrantLock writeLock = writeLocks[Math.floorMod(Long.hashCode(id), WRITE_LOCK_STRIPES)];
+    snapshotLock.readLock().lock();
+    writeLock.lock();
+    try {
+      UserPoint current = balances.get(id);
+      long version = current == null ? 0 : current.version();
+      if (expectedVersion >= 0 && version != expectedVersion) {
+        return Optional.empty();
+      }
+      stored = new UserPoint(id, amount, System.currentTimeMillis(), version + 1);
+      writeAheadLog.append(List.of(new WalRecord(
+          WalRecord.Kind.BALANCE, stored.id(), stored.point(), stored.updateMillis(), stored.version())));
+      balances.put(id, stored);
+    } finally {
+      writeLock.unlock();
+      snapshotLock.readLock().unlock();
+    }
+    afterAppend(1);
+    return Optional.of(stored);
+  }
+
+  // 스냅샷 주기가 되면 한 스레드만 스냅샷을 찍음
+  private void afterAppend(int count) {
+    if (appendedSinceSnapshot.addAndGet(count) < snapshotEvery
+        || !snapshotting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      snapshot();
+    } catch (RuntimeException e) {
+      log.error("스냅샷 저장에 실패했습니다.", e);
+    } finally {
+      snapshotting.set(false);
+    }
+  }
+
+  public void snapshot() {
+    long segmentIndex;
+    List<UserPoint> copy;
+    long historyLastId;
+    snapshotLock.writeLock().lock();
+    try {
+      segmentIndex = writeAheadLog.roll();
+      copy = List.copyOf(balances.values());
+      // 이력은 id 발급, WAL 추가, 저장소 반영을 공유 락 안에서 함께 하므로, 여기까지의 이력은 모두 이 id 이하로 저장되어 있음
+      historyLastId = historyIds.get();
+      appendedSinceSnapshot.set(0);
+    } finally {
+      snapshotLock.writeLock().unlock();
+    }
+    // 스냅샷이 가리키는 이력까지 디스크에 반영한 뒤 스냅샷을 저장
+    if (pointHistoryStore instanceof DurablePointHistoryStore durable) {
+      durable.flush();
+    }
+    writeAheadLog.writeSnapshot(segmentIndex, copy, historyLastId, pointHistoryStore);
+  }
+
+  @PreDestroy
+  public void close() {
+    writeAheadLog.close();
+  }
+}
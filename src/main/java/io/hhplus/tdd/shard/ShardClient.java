@@ -0,0 +1,151 @@
+package io.hhplus.tdd.shard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.hhplus.tdd.point.PointOperation;
+import io.hhplus.tdd.point.PointOperationResult;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 다른 노드로 요청을 전달하는 HTTP 클라이언트
+ * 1. 전달한 요청에는 FORWARDED_HEADER를 붙여, 받은 노드가 다시 다른 노드로 전달하지 않도록 합니다.
+ * 2. 응답 본문은 스트림으로 그대로 복사하므로, 이력 내보내기처럼 큰 응답도 메모리에 모으지 않습니다.
+ * 3. 요청 전달은 기다리지 않고 CompletableFuture로 반환하므로, 소유 노드의 응답을 기다리는 동안 요청 스레드를 점유하지 않습니다.
+ */
+@Component
+@ConditionalOnProperty(name = "point.shard.enabled", havingValue = "true")
+public class ShardClient {
+
+  public static final String FORWARDED_HEADER = "X-Point-Shard-Forwarded";
+  // HttpClient가 직접 설정하거나 연결마다 달라지는 헤더는 복사하지 않음
+  private static final TypeReference<List<PointOperationResult>> RESULTS = new TypeReference<>() {
+  };
+  private static final Set<String> SKIPPED_HEADERS = Set.of(
+      "connection", "content-length", "date", "expect", "host", "keep-alive",
+      "transfer-encoding", "upgrade", ":status");
+
+  private final HttpClient httpClient;
+  private final ObjectMapper objectMapper;
+  private final Duration timeout;
+
+  public ShardClient(
+      ObjectMapper objectMapper,
+      @Value("${point.shard.forward-timeout-millis:5000}") long timeoutMillis) {
+    this.objectMapper = objectMapper;
+    this.timeout = Duration.ofMillis(timeoutMillis);
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(timeout)
+        .build();
+  }
+
+  // 받은 요청을 소유 노드로 전달하고, 응답을 받으면 HttpClient의 스레드에서 그대로 복사
+  // 요청 본문과 헤더는 호출한 스레드에서 읽으므로, 반환된 CompletableFuture가 끝날 때까지 response만 사용됩니다.
+  public CompletableFuture<Void> forward(String owner, String self, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    String query = request.getQueryString();
+    byte[] body = request.getInputStream().readAllBytes();
+    HttpRequest.Builder builder = HttpRequest.newBuilder(
+            URI.create(owner + request.getRequestURI() + (query == null ? "" : "?" + query)))
+        .timeout(timeout)
+        .method(request.getMethod(), body.length == 0
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofByteArray(body));
+    for (String name : Collections.list(request.getHeaderNames())) {
+      if (!SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+        Collections.list(request.getHeaders(name)).forEach(value -> builder.header(name, value));
+      }
+    }
+    builder.header(FORWARDED_HEADER, self);
+    return httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream())
+        .thenAccept(forwarded -> copy(forwarded, response));
+  }
+
+  private static void copy(HttpResponse<InputStream> forwarded, HttpServletResponse response) {
+    response.setStatus(forwarded.statusCode());
+    forwarded.headers().map().forEach((name, values) -> {
+      if (!SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+        values.forEach(value -> response.addHeader(name, value));
+      }
+    });
+    try (InputStream input = forwarded.body()) {
+      input.transferTo(response.getOutputStream());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // 소유 노드에 일괄 처리 요청을 전달하고, 기다리지 않고 항목별 결과를 받을 CompletableFuture를 반환
+  public CompletableFuture<List<PointOperationResult>> batch(String owner, String self, List<PointOperation> operations)
+      throws JsonProcessingException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(owner + "/point/batch"))
+        .timeout(timeout)
+        .header("Content-Type", "application/json")
+        .header(FORWARDED_HEADER, self)
+        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(operations)))
+        .build();
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+      if (response.statusCode() != 200) {
+        throw new UncheckedIOException(new IOException(
+            "shard batch failed. owner: " + owner + ", status: " + response.statusCode()));
+      }
+      try {
+        return objectMapper.readValue(response.body(), RESULTS);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  // 노드의 재분배 API를 호출, 2xx가 아니면 예외
+  public void post(String node, String path, Object body) {
+    post(node, path, body, timeout);
+  }
+
+  // 응답을 기다리는 시간을 지정하여 노드의 재분배 API를 호출, 2xx가 아니면 예외
+  public void post(String node, String path, Object body, Duration timeout) {
+    try {
+      HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+          .timeout(timeout)
+          .header("Content-Type", "application/json")
+          .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+          .build();
+      HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() / 100 != 2) {
+        throw new IllegalStateException(
+            "shard request failed. node: " + node + path + ", status: " + response.statusCode());
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+    try {
+      return httpClient.send(request, handler);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("shard request interrupted", e);
+    }
+  }
+}
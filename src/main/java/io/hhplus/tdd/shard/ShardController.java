@@ -0,0 +1,71 @@
+package io.hhplus.tdd.shard;
+
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 샤드 링 조회와 재분배 API
+ * PUT /shards 는 받은 노드가 조정자가 되어 전체 재분배를 진행하고, 나머지는 조정자가 각 노드에 호출하는 단계별 API입니다.
+ */
+@RestController
+@RequestMapping("/shards")
+@ConditionalOnProperty(name = "point.shard.enabled", havingValue = "true")
+public class ShardController {
+
+    private final ShardState shardState;
+    private final ShardCoordinator shardCoordinator;
+
+    public ShardController(ShardState shardState, ShardCoordinator shardCoordinator) {
+        this.shardState = shardState;
+        this.shardCoordinator = shardCoordinator;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<String>> nodes() {
+        return ResponseEntity.ok(shardState.nodes());
+    }
+
+    @PutMapping
+    public ResponseEntity<List<String>> rebalance(@RequestBody List<String> nodes) {
+        shardCoordinator.rebalance(nodes);
+        return ResponseEntity.ok(shardState.nodes());
+    }
+
+    @PostMapping("/prepare")
+    public ResponseEntity<Void> prepare(@RequestBody List<String> nodes) {
+        shardCoordinator.prepare(nodes);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/migrate")
+    public ResponseEntity<Void> migrate() {
+        shardCoordinator.migrate();
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/histories")
+    public ResponseEntity<Void> importHistories(@RequestBody List<ShardHistoryChunk> chunks) {
+        shardCoordinator.importHistories(chunks);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/users")
+    public ResponseEntity<Void> importUsers(@RequestBody List<ShardUser> users) {
+        shardCoordinator.importUsers(users);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/commit")
+    public ResponseEntity<Void> commit() {
+        shardCoordinator.commit();
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/abort")
+    public ResponseEntity<Void> abort() {
+        shardCoordinator.abort();
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,162 @@
+package io.hhplus.tdd.shard;
+
+import io.hhplus.tdd.point.IdempotencyEntry;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * 노드 추가/제거시 유저를 새 소유 노드로 옮기는 재분배를 진행합니다.
+ * 1. prepare : 기존 노드와 새 노드 모두에 다음 링을 알려, 소유 노드가 바뀌는 유저의 요청을 멈춥니다.
+ * 2. migrate : 각 노드는 prepare 전에 레인에 전달된 요청이 처리되길 기다린 뒤, 다른 노드로 옮겨지는 유저의 잔액, 이력, 멱등키별 처리 결과를 새 소유 노드로 보냅니다.
+ *    이력은 cursor로 나눠 읽어 요청마다 MIGRATION_PAGE_SIZE 건 이하로 보내고, 모든 이력을 보낸 뒤 잔액과 멱등키별 처리 결과를 보냅니다.
+ *    이력이 많은 유저도 한번에 메모리에 올리지 않으며, 요청 하나가 forward-timeout 안에 끝날 크기로 유지됩니다.
+ *    migrate 전체는 이력 양에 비례해 오래 걸리므로, 조정자는 migrate 호출만 migrate-timeout 까지 기다립니다.
+ *    옮겨지는 유저의 새 요청은 prepare 이후 막혀있으므로, 그 뒤에 들어온 다른 유저의 요청은 기다리지 않습니다.
+ *    새 소유 노드에서 같은 멱등키로 재시도하면 다시 처리하지 않고 처음 결과를 받습니다.
+ * 3. commit : 모든 노드가 다음 링으로 바꾸고 멈췄던 유저의 요청을 다시 처리합니다. 중간에 실패하면 abort로 기존 링을 유지합니다.
+ * 옮겨간 유저의 데이터는 이전 노드에도 남지만, 요청은 새 소유 노드로 전달되므로 사용되지 않습니다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "point.shard.enabled", havingValue = "true")
+public class ShardCoordinator {
+
+  // 재분배 요청 하나로 보내는 최대 이력 수와 유저 수
+  private static final int MIGRATION_PAGE_SIZE = 1000;
+
+  private final ShardState shardState;
+  private final ShardClient shardClient;
+  private final PointService pointService;
+  private final Duration migrateTimeout;
+
+  public ShardCoordinator(
+      ShardState shardState,
+      ShardClient shardClient,
+      PointService pointService,
+      @Value("${point.shard.migrate-timeout-millis:600000}") long migrateTimeoutMillis) {
+    this.shardState = shardState;
+    this.shardClient = shardClient;
+    this.pointService = pointService;
+    this.migrateTimeout = Duration.ofMillis(migrateTimeoutMillis);
+  }
+
+  // 이 노드가 조정자가 되어 전체 노드의 재분배를 진행
+  public synchronized void rebalance(List<String> nodes) {
+    Set<String> participants = new LinkedHashSet<>(shardState.nodes());
+    participants.addAll(nodes);
+    try {
+      participants.forEach(node -> shardClient.post(node, "/shards/prepare", nodes));
+      participants.forEach(node -> shardClient.post(node, "/shards/migrate", List.of(), migrateTimeout));
+      participants.forEach(node -> shardClient.post(node, "/shards/commit", List.of()));
+    } catch (RuntimeException e) {
+      log.error("shard rebalance failed. nodes: {}", nodes, e);
+      for (String node : participants) {
+        try {
+          shardClient.post(node, "/shards/abort", List.of());
+        } catch (RuntimeException abortFailure) {
+          log.error("shard abort failed. node: {}", node, abortFailure);
+        }
+      }
+      throw e;
+    }
+  }
+
+  // 이전 재분배에서 옮겨오다 멈춘 이력이 섞이지 않도록 지운 뒤 시작
+  public void prepare(List<String> nodes) {
+    pointService.discardImports();
+    shardState.prepare(nodes);
+  }
+
+  // 다른 노드로 옮겨지는 유저를 새 소유 노드별로 모아서 전송
+  public void migrate() {
+    ShardRing next = shardState.pending();
+    if (next == null) {
+      throw new IllegalStateException("shard rebalance is not prepared");
+    }
+    // 옮겨지는 유저의 요청은 prepare 전에 모두 레인에 전달되었으므로, 그때까지 전달된 요청만 처리되길 기다림
+    if (!pointService.awaitDispatched()) {
+      throw new IllegalStateException("requests dispatched before prepare were not processed in time");
+    }
+    Set<Long> movingUserIds = new LinkedHashSet<>();
+    for (long userId : pointService.userIds()) {
+      if (shardState.isMovingOut(userId)) {
+        movingUserIds.add(userId);
+      }
+    }
+    Map<Long, List<IdempotencyEntry>> idempotencyEntries = pointService.idempotencyEntries(movingUserIds);
+    Map<String, List<Long>> usersByOwner = new LinkedHashMap<>();
+    for (long userId : movingUserIds) {
+      usersByOwner.computeIfAbsent(next.ownerOf(userId), key -> new ArrayList<>()).add(userId);
+    }
+    usersByOwner.forEach((owner, userIds) -> {
+      long histories = sendHistories(owner, userIds);
+      for (int from = 0; from < userIds.size(); from += MIGRATION_PAGE_SIZE) {
+        List<ShardUser> users = userIds.subList(from, Math.min(userIds.size(), from + MIGRATION_PAGE_SIZE)).stream()
+            .map(userId -> new ShardUser(pointService.point(userId), List.of(),
+                idempotencyEntries.getOrDefault(userId, List.of())))
+            .toList();
+        shardClient.post(owner, "/shards/users", users);
+      }
+      log.info("shard users migrated. owner: {}, users: {}, histories: {}", owner, userIds.size(), histories);
+    });
+  }
+
+  // 유저마다 이력을 cursor로 나눠 읽어, 여러 유저의 이력을 모아 요청마다 MIGRATION_PAGE_SIZE 건까지 보내고 보낸 이력 수를 반환
+  private long sendHistories(String owner, List<Long> userIds) {
+    List<ShardHistoryChunk> chunks = new ArrayList<>();
+    int rows = 0;
+    long sent = 0;
+    for (long userId : userIds) {
+      Long cursor = 0L;
+      while (cursor != null) {
+        PointHistoryPage page = pointService.history(userId, cursor, 0, Long.MAX_VALUE, MIGRATION_PAGE_SIZE - rows);
+        if (!page.histories().isEmpty()) {
+          chunks.add(new ShardHistoryChunk(userId, page.histories()));
+          rows += page.histories().size();
+        }
+        cursor = page.nextCursor();
+        if (rows == MIGRATION_PAGE_SIZE) {
+          shardClient.post(owner, "/shards/histories", chunks);
+          sent += rows;
+          chunks = new ArrayList<>();
+          rows = 0;
+        }
+      }
+    }
+    if (!chunks.isEmpty()) {
+      shardClient.post(owner, "/shards/histories", chunks);
+      sent += rows;
+    }
+    return sent;
+  }
+
+  public void importHistories(List<ShardHistoryChunk> chunks) {
+    chunks.forEach(chunk -> pointService.importHistories(chunk.userId(), chunk.histories()));
+  }
+
+  public void importUsers(List<ShardUser> users) {
+    // 멱등키별 처리 결과를 보내지 않는 이전 버전 노드에서 옮겨온 유저는 이력과 잔액만 반영
+    users.forEach(user -> pointService.importUser(user.userPoint(), user.histories(),
+        user.idempotencyEntries() == null ? List.of() : user.idempotencyEntries()));
+  }
+
+  public void commit() {
+    shardState.commit();
+  }
+
+  public void abort() {
+    pointService.discardImports();
+    shardState.abort();
+  }
+}
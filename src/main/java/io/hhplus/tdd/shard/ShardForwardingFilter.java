@@ -0,0 +1,241 @@
+package io.hhplus.tdd.shard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.hhplus.tdd.ErrorResponse;
+import io.hhplus.tdd.point.PointOperation;
+import io.hhplus.tdd.point.PointOperationResult;
+import io.hhplus.tdd.point.PointService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * /point/{id} 요청을 유저 id의 소유 노드로 전달하는 필터
+ * 1. 이 노드가 소유한 유저의 요청은 샤드 링의 읽기 락을 잡은 상태로 그대로 처리합니다.
+ * 2. 다른 노드가 소유한 유저의 요청은 소유 노드로 전달합니다. 이미 전달된 요청은 다시 전달하지 않고 503으로 응답합니다.
+ *    소유 노드의 응답은 요청 스레드를 점유하지 않고 비동기로 기다려 그대로 복사하므로, 비동기 충전/사용 API처럼 요청 스레드를 바로 반환합니다.
+ * 3. 재분배로 소유 노드가 바뀌는 중인 유저의 요청과, 소유 노드에 연결할 수 없는 요청은 503과 Retry-After로 응답합니다.
+ * 4. 일괄 처리(/point/batch)는 항목을 소유 노드별로 나눠 각 노드에서 처리하고, 결과를 요청 순서대로 합쳐서 응답합니다.
+ *    처리할 수 없는 노드의 항목은 실패 결과로 채웁니다.
+ *    결과는 요청 스레드를 점유하지 않고 비동기로 기다리며, 본문을 읽지 못하는 등의 오류는 컨트롤러와 같이 ApiControllerAdvice로 응답합니다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "point.shard.enabled", havingValue = "true")
+public class ShardForwardingFilter extends OncePerRequestFilter {
+
+  private static final String PATH_PREFIX = "/point/";
+  private static final String BATCH_PATH = "/point/batch";
+  private static final TypeReference<List<PointOperation>> OPERATIONS = new TypeReference<>() {
+  };
+
+  private final ShardState shardState;
+  private final ShardClient shardClient;
+  private final ObjectMapper objectMapper;
+  private final PointService pointService;
+  // 컨트롤러의 예외와 같이 ApiControllerAdvice로 응답하기 위한 resolver
+  private final HandlerExceptionResolver exceptionResolver;
+
+  public ShardForwardingFilter(
+      ShardState shardState,
+      ShardClient shardClient,
+      ObjectMapper objectMapper,
+      PointService pointService,
+      @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver) {
+    this.shardState = shardState;
+    this.shardClient = shardClient;
+    this.objectMapper = objectMapper;
+    this.pointService = pointService;
+    this.exceptionResolver = exceptionResolver;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    if (path.equals(BATCH_PATH) && "POST".equals(request.getMethod())) {
+      batch(request, response);
+      return;
+    }
+    Long userId = userIdOf(path);
+    if (userId == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    String owner;
+    Lock lock = shardState.routingLock().readLock();
+    lock.lock();
+    try {
+      owner = shardState.ownerOf(userId);
+      if (owner != null && owner.equals(shardState.self())) {
+        chain.doFilter(request, response);
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (owner == null || request.getHeader(ShardClient.FORWARDED_HEADER) != null) {
+      unavailable(response, "샤드 재분배 중입니다.");
+      return;
+    }
+    forward(owner, request, response);
+  }
+
+  // 소유 노드로 전달한 뒤 요청 스레드를 반환하고, 응답을 복사하면 비동기 요청을 끝냄
+  // 이력 내보내기처럼 긴 응답도 끝까지 복사하도록 비동기 요청의 시간 제한은 두지 않고, 소유 노드의 응답 대기는 ShardClient의 timeout으로 제한
+  private void forward(String owner, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AsyncContext async = request.startAsync();
+    async.setTimeout(0);
+    CompletableFuture<Void> forwarded;
+    try {
+      forwarded = shardClient.forward(owner, shardState.self(), request, response);
+    } catch (IOException | RuntimeException e) {
+      forwarded = CompletableFuture.failedFuture(e);
+    }
+    forwarded.whenComplete((ignored, e) -> {
+      try {
+        if (e != null) {
+          log.error("shard forward failed. owner: {}", owner, e);
+          if (!response.isCommitted()) {
+            unavailable(response, "샤드에 연결할 수 없습니다.");
+          }
+        }
+      } catch (IOException | RuntimeException failure) {
+        log.error("shard forward response failed.", failure);
+      } finally {
+        async.complete();
+      }
+    });
+  }
+
+  // 항목을 나눠 전달한 뒤 요청 스레드를 반환하고, 모든 노드의 결과가 모이면 비동기로 응답
+  private void batch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<PointOperation> operations;
+    try {
+      operations = objectMapper.readValue(request.getInputStream(), OPERATIONS);
+    } catch (JsonProcessingException e) {
+      // 컨트롤러가 본문을 읽지 못했을 때와 같은 예외로 ApiControllerAdvice에서 응답
+      exceptionResolver.resolveException(request, response, null,
+          new HttpMessageNotReadableException(e.getOriginalMessage(), e, new ServletServerHttpRequest(request)));
+      return;
+    }
+    boolean forwarded = request.getHeader(ShardClient.FORWARDED_HEADER) != null;
+    PointOperationResult[] results = new PointOperationResult[operations.size()];
+    Map<String, List<Integer>> indexesByOwner = new LinkedHashMap<>();
+    List<CompletableFuture<Void>> parts = new ArrayList<>();
+    Lock lock = shardState.routingLock().readLock();
+    lock.lock();
+    try {
+      for (int i = 0; i < operations.size(); i++) {
+        String owner = shardState.ownerOf(operations.get(i).userId());
+        if (owner == null || (forwarded && !owner.equals(shardState.self()))) {
+          results[i] = PointOperationResult.failure(operations.get(i), "샤드 재분배 중입니다.");
+        } else {
+          indexesByOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(i);
+        }
+      }
+      // 이 노드의 항목은 락을 잡은 상태로 레인에 전달까지 마침
+      List<Integer> localIndexes = indexesByOwner.remove(shardState.self());
+      if (localIndexes != null) {
+        parts.add(pointService.batch(pick(operations, localIndexes))
+            .thenAccept(values -> fill(results, localIndexes, values)));
+      }
+    } catch (RuntimeException e) {
+      // 컨트롤러에서 처리할 때와 같이 ApiControllerAdvice에서 응답
+      exceptionResolver.resolveException(request, response, null, e);
+      return;
+    } finally {
+      lock.unlock();
+    }
+    indexesByOwner.forEach((owner, indexes) -> {
+      List<PointOperation> picked = pick(operations, indexes);
+      parts.add(forwardBatch(owner, picked)
+          .handle((values, e) -> {
+            if (e == null) {
+              fill(results, indexes, values);
+            } else {
+              log.error("shard batch forward failed. owner: {}", owner, e);
+              for (int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = PointOperationResult.failure(picked.get(i), "샤드에 연결할 수 없습니다.");
+              }
+            }
+            return null;
+          }));
+    });
+    AsyncContext async = request.startAsync();
+    CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).whenComplete((ignored, e) -> {
+      try {
+        if (e != null) {
+          exceptionResolver.resolveException(request, response, null,
+              e.getCause() instanceof Exception cause ? cause : new IllegalStateException(e));
+        } else {
+          response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+          objectMapper.writeValue(response.getOutputStream(), Arrays.asList(results));
+        }
+      } catch (IOException | RuntimeException failure) {
+        log.error("shard batch response failed.", failure);
+      } finally {
+        async.complete();
+      }
+    });
+  }
+
+  private CompletableFuture<List<PointOperationResult>> forwardBatch(String owner, List<PointOperation> operations) {
+    try {
+      return shardClient.batch(owner, shardState.self(), operations);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static List<PointOperation> pick(List<PointOperation> operations, List<Integer> indexes) {
+    return indexes.stream().map(operations::get).toList();
+  }
+
+  private static void fill(PointOperationResult[] results, List<Integer> indexes, List<PointOperationResult> values) {
+    for (int i = 0; i < indexes.size(); i++) {
+      results[indexes.get(i)] = values.get(i);
+    }
+  }
+
+  // /point/{id} 또는 /point/{id}/... 에서 유저 id를 꺼냄, 아니면 null
+  private static Long userIdOf(String path) {
+    if (!path.startsWith(PATH_PREFIX)) {
+      return null;
+    }
+    int end = path.indexOf('/', PATH_PREFIX.length());
+    try {
+      return Long.parseLong(path.substring(PATH_PREFIX.length(), end < 0 ? path.length() : end));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void unavailable(HttpServletResponse response, String message) throws IOException {
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    response.setHeader("Retry-After", "1");
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), new ErrorResponse("503", message));
+  }
+}
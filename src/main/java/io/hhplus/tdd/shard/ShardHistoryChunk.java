@@ -0,0 +1,13 @@
+package io.hhplus.tdd.shard;
+
+import io.hhplus.tdd.point.PointHistory;
+import java.util.List;
+
+/**
+ * 재분배시 옮기는 유저 한명의 이력 일부, 이력은 cursor 순서대로 나눠 보냅니다.
+ */
+public record ShardHistoryChunk(
+        long userId,
+        List<PointHistory> histories
+) {
+}
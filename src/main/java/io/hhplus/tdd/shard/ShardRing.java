@@ -0,0 +1,66 @@
+package io.hhplus.tdd.shard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 유저 id를 노드에 분배하는 일관된 해싱(consistent hashing) 링
+ * 1. 노드마다 virtualNodes 개의 가상 노드를 링 위에 올려, 노드 수가 적어도 유저가 고르게 분배되도록 합니다.
+ * 2. 유저 id의 해시에서 시계 방향으로 처음 만나는 가상 노드의 노드가 소유 노드입니다.
+ * 3. 노드를 추가하면 새 노드가 가져가는 구간의 유저만 옮겨지고, 나머지 유저의 소유 노드는 바뀌지 않습니다.
+ */
+public final class ShardRing {
+
+  private final List<String> nodes;
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+
+  public ShardRing(List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("nodes must not be empty");
+    }
+    if (virtualNodes < 1) {
+      throw new IllegalArgumentException("virtualNodes must be positive");
+    }
+    this.nodes = List.copyOf(nodes);
+    for (String node : this.nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  public List<String> nodes() {
+    return nodes;
+  }
+
+  // 유저 id를 소유한 노드를 반환
+  public String ownerOf(long userId) {
+    Map.Entry<Long, String> entry = ring.ceilingEntry(mix(userId));
+    return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+  }
+
+  // 가상 노드의 위치는 노드 이름의 MD5 앞 8바이트, 노드마다 고르게 퍼지도록 함
+  private static long hash(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // 연속된 유저 id가 링 위에 흩어지도록 섞음 (MurmurHash3 fmix64)
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
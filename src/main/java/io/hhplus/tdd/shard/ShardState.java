@@ -0,0 +1,128 @@
+package io.hhplus.tdd.shard;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 이 노드가 알고 있는 샤드 링과, 재분배(rebalance) 중인 다음 링을 관리합니다.
+ * 1. 재분배는 prepare → migrate → commit 순서로 진행하며, prepare 이후 commit 전까지 소유 노드가 바뀌는 유저의 요청은 처리하지 않습니다.
+ * 2. 유저의 요청을 이 노드에서 처리하는 동안 읽기 락을 잡으므로, prepare가 끝나면 옮겨질 유저의 요청은 모두 디스패처에 전달된 상태입니다.
+ * 3. 이 노드의 주소(point.shard.self)가 없으면 웹 서버가 열린 포트로 http://localhost:{port} 를 사용합니다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "point.shard.enabled", havingValue = "true")
+public class ShardState implements ApplicationListener<WebServerInitializedEvent> {
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final String configuredSelf;
+  private final String configuredNodes;
+  private final int virtualNodes;
+  private volatile String self;
+  private volatile ShardRing ring;
+  private volatile ShardRing pending;
+
+  public ShardState(
+      @Value("${point.shard.self:}") String self,
+      @Value("${point.shard.nodes:}") String nodes,
+      @Value("${point.shard.virtual-nodes:128}") int virtualNodes) {
+    this.configuredSelf = self;
+    this.configuredNodes = nodes;
+    this.virtualNodes = virtualNodes;
+  }
+
+  @Override
+  public void onApplicationEvent(WebServerInitializedEvent event) {
+    self = configuredSelf.isBlank()
+        ? "http://localhost:" + event.getWebServer().getPort()
+        : configuredSelf;
+    List<String> nodes = Arrays.stream(configuredNodes.split(","))
+        .map(String::trim)
+        .filter(node -> !node.isEmpty())
+        .toList();
+    ring = new ShardRing(nodes.isEmpty() ? List.of(self) : nodes, virtualNodes);
+    log.info("shard ring initialized. self: {}, nodes: {}", self, ring.nodes());
+  }
+
+  public String self() {
+    return self;
+  }
+
+  public List<String> nodes() {
+    return ring.nodes();
+  }
+
+  /**
+   * 유저의 요청을 처리할 노드를 반환합니다. 소유 노드가 바뀌는 중이면 null을 반환합니다.
+   * 이 노드에서 처리하는 동안에는 routingLock()의 읽기 락을 잡고 있어야 합니다.
+   */
+  public String ownerOf(long userId) {
+    ShardRing current = ring;
+    if (current == null) {
+      return self;
+    }
+    String owner = current.ownerOf(userId);
+    ShardRing next = pending;
+    if (next != null && !next.ownerOf(userId).equals(owner)) {
+      return null;
+    }
+    return owner;
+  }
+
+  public ReadWriteLock routingLock() {
+    return lock;
+  }
+
+  // 옮겨야 하는 유저인지, 이 노드가 소유하다가 다음 링에서 다른 노드로 바뀌는 유저
+  public boolean isMovingOut(long userId) {
+    ShardRing next = pending;
+    return next != null && ring.ownerOf(userId).equals(self) && !next.ownerOf(userId).equals(self);
+  }
+
+  public ShardRing pending() {
+    return pending;
+  }
+
+  // 진행중인 요청이 끝나길 기다린 뒤 다음 링을 설정
+  public void prepare(List<String> nodes) {
+    ShardRing next = new ShardRing(nodes, virtualNodes);
+    lock.writeLock().lock();
+    try {
+      pending = next;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("shard rebalance prepared. nodes: {}", nodes);
+  }
+
+  public void commit() {
+    lock.writeLock().lock();
+    try {
+      if (pending != null) {
+        ring = pending;
+        pending = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("shard rebalance committed. nodes: {}", ring.nodes());
+  }
+
+  public void abort() {
+    lock.writeLock().lock();
+    try {
+      pending = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.warn("shard rebalance aborted. nodes: {}", ring.nodes());
+  }
+}
@@ -0,0 +1,17 @@
+package io.hhplus.tdd.shard;
+
+import io.hhplus.tdd.point.IdempotencyEntry;
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.UserPoint;
+import java.util.List;
+
+/**
+ * 재분배시 다른 노드로 옮기는 유저의 잔액, 이력, 멱등키별 처리 결과
+ * 이력은 ShardHistoryChunk로 먼저 나눠 보내므로 비어있고, 이전 버전 노드는 전체 이력을 함께 보냅니다.
+ */
+public record ShardUser(
+        UserPoint userPoint,
+        List<PointHistory> histories,
+        List<IdempotencyEntry> idempotencyEntries
+) {
+}
@@ -0,0 +1,113 @@
+package io.hhplus.tdd.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryPage;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import io.hhplus.tdd.point.TransactionType;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IndexedPointHistoryStoreTest {
+  private final IndexedPointHistoryStore store = new IndexedPointHistoryStore();
+
+  /**
+   * 저장한 이력이 유저별로 저장 순서대로 조회되는지 확인합니다.
+   */
+  @Test
+  void insert_then_select_by_user_in_order() {
+    // given
+    store.insertAll(List.of(
+        new PointHistory(0, 1L, 100L, TransactionType.CHARGE, 10L),
+        new PointHistory(0, 2L, 500L, TransactionType.CHARGE, 11L),
+        new PointHistory(0, 1L, 40L, TransactionType.USE, 12L)));
+    // when
+    List<PointHistory> histories = store.selectAllByUserId(1L);
+    // then
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(100L, 40L);
+    assertThat(histories).extracting(PointHistory::type)
+        .containsExactly(TransactionType.CHARGE, TransactionType.USE);
+    assertThat(histories).allMatch(history -> history.userId() == 1L);
+    assertThat(histories.get(0).id()).isLessThan(histories.get(1).id());
+  }
+
+  /**
+   * 이력이 없는 유저는 빈 리스트가 반환되는지 확인합니다.
+   */
+  @Test
+  void select_by_unknown_user_then_empty() {
+    assertThat(store.selectAllByUserId(99L)).isEmpty();
+  }
+
+  /**
+   * 세그먼트의 초기 크기를 넘겨 저장해도 모든 이력이 조회되는지 확인합니다.
+   */
+  @Test
+  void insert_over_initial_capacity_then_all_results() {
+    // given
+    for (int i = 0; i < 100; i++) {
+      store.insertAll(List.of(new PointHistory(0, 1L, i, TransactionType.CHARGE, i)));
+    }
+    // when
+    List<PointHistory> histories = store.selectAllByUserId(1L);
+    // then
+    assertThat(histories).hasSize(100);
+    assertThat(histories.get(99).amount()).isEqualTo(99L);
+  }
+
+  /**
+   * cursor 이후의 이력을 limit 건만큼 조회하고, 시간 범위를 벗어난 이력은 제외되는지 확인합니다.
+   */
+  @Test
+  void select_after_cursor_within_time_range() {
+    // given
+    for (int i = 0; i < 10; i++) {
+      store.insertAll(List.of(new PointHistory(0, 1L, i, TransactionType.CHARGE, i)));
+    }
+    long cursor = store.selectAllByUserId(1L).get(2).id();
+    // when
+    List<PointHistory> histories = store.selectByUserId(1L, new PointHistoryQuery(cursor, 5, 9, 3)).histories();
+    // then
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(5L, 6L, 7L);
+  }
+
+  /**
+   * 시간 범위에 맞는 이력이 적어도 scanLimit 건만 확인하고, 마지막으로 확인한 이력의 id를 nextCursor로 반환하는지 확인합니다.
+   */
+  @Test
+  void select_over_scan_limit_then_next_cursor_after_scanned_rows() {
+    // given
+    for (int i = 0; i < 10; i++) {
+      store.insertAll(List.of(new PointHistory(0, 1L, i, TransactionType.CHARGE, i)));
+    }
+    // when
+    PointHistoryPage first = store.selectByUserId(1L, new PointHistoryQuery(0, 8, 10, 3, 4));
+    PointHistoryPage second = store.selectByUserId(1L, new PointHistoryQuery(first.nextCursor(), 8, 10, 3, 4));
+    PointHistoryPage third = store.selectByUserId(1L, new PointHistoryQuery(second.nextCursor(), 8, 10, 3, 4));
+    // then
+    assertThat(first.histories()).isEmpty();
+    assertThat(first.nextCursor()).isEqualTo(4L);
+    assertThat(second.histories()).isEmpty();
+    assertThat(second.nextCursor()).isEqualTo(8L);
+    assertThat(third.histories()).extracting(PointHistory::amount).containsExactly(8L, 9L);
+    assertThat(third.nextCursor()).isNull();
+  }
+
+  /**
+   * id가 정해진 이력이 순서가 바뀌어 저장되어도 id 순서대로 조회되고, 이후 발급하는 id가 이어지는지 확인합니다.
+   */
+  @Test
+  void insert_with_ids_out_of_order_then_select_in_id_order() {
+    // given
+    store.insertAll(List.of(
+        new PointHistory(2, 1L, 20L, TransactionType.CHARGE, 2L),
+        new PointHistory(3, 1L, 30L, TransactionType.CHARGE, 3L),
+        new PointHistory(1, 1L, 10L, TransactionType.CHARGE, 1L)));
+    // when
+    store.insertAll(List.of(new PointHistory(0, 1L, 40L, TransactionType.USE, 4L)));
+    // then
+    assertThat(store.selectAllByUserId(1L)).extracting(PointHistory::id).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(store.selectAllByUserId(1L)).extracting(PointHistory::amount).containsExactly(10L, 20L, 30L, 40L);
+  }
+}
@@ -0,0 +1,91 @@
+package io.hhplus.tdd.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import io.hhplus.tdd.point.TransactionType;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedPointHistoryStoreTest {
+  @TempDir Path directory;
+
+  /**
+   * 세그먼트 크기를 넘겨 저장해도 유저별로 저장 순서대로 조회되는지 확인합니다.
+   */
+  @Test
+  void insert_over_segments_then_select_by_user_in_order() {
+    // given
+    MappedPointHistoryStore store = new MappedPointHistoryStore(directory.toString(), 4);
+    for (int i = 0; i < 10; i++) {
+      store.insertAll(List.of(new PointHistory(0, i % 2, i, TransactionType.CHARGE, i)));
+    }
+    // when
+    List<PointHistory> histories = store.selectAllByUserId(1L);
+    // then
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(1L, 3L, 5L, 7L, 9L);
+    assertThat(histories).allMatch(history -> history.userId() == 1L);
+  }
+
+  /**
+   * cursor 이후의 이력을 limit 건만큼 조회하는지 확인합니다.
+   */
+  @Test
+  void select_after_cursor() {
+    // given
+    MappedPointHistoryStore store = new MappedPointHistoryStore(directory.toString(), 4);
+    for (int i = 0; i < 10; i++) {
+      store.insertAll(List.of(new PointHistory(0, 1L, i, TransactionType.USE, i)));
+    }
+    long cursor = store.selectAllByUserId(1L).get(3).id();
+    // when
+    List<PointHistory> histories =
+        store.selectByUserId(1L, new PointHistoryQuery(cursor, 0, Long.MAX_VALUE, 2)).histories();
+    // then
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(4L, 5L);
+  }
+
+  /**
+   * 저장소를 다시 열어도 이력과 id가 유지되고, 이후 저장한 이력의 id가 이어지는지 확인합니다.
+   */
+  @Test
+  void reopen_then_histories_recovered() {
+    // given
+    MappedPointHistoryStore store = new MappedPointHistoryStore(directory.toString(), 4);
+    for (int i = 0; i < 6; i++) {
+      store.insertAll(List.of(new PointHistory(0, 1L, i, TransactionType.CHARGE, i)));
+    }
+    store.close();
+    // when
+    MappedPointHistoryStore reopened = new MappedPointHistoryStore(directory.toString(), 4);
+    reopened.insertAll(List.of(new PointHistory(0, 1L, 6, TransactionType.CHARGE, 6)));
+    // then
+    List<PointHistory> histories = reopened.selectAllByUserId(1L);
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L);
+    assertThat(histories).extracting(PointHistory::id).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+  }
+
+  /**
+   * id가 정해진 이력이 순서가 바뀌어 저장되어도 그 id의 행에 저장되고, 다시 열어도 id 순서대로 조회되는지 확인합니다.
+   */
+  @Test
+  void insert_with_ids_out_of_order_then_reopened_in_id_order() {
+    // given
+    MappedPointHistoryStore store = new MappedPointHistoryStore(directory.toString(), 4);
+    store.insertAll(List.of(
+        new PointHistory(6, 1L, 60L, TransactionType.CHARGE, 6L),
+        new PointHistory(2, 1L, 20L, TransactionType.CHARGE, 2L),
+        new PointHistory(1, 2L, 10L, TransactionType.CHARGE, 1L),
+        new PointHistory(5, 1L, 50L, TransactionType.CHARGE, 5L)));
+    store.close();
+    // when
+    MappedPointHistoryStore reopened = new MappedPointHistoryStore(directory.toString(), 4);
+    // then
+    assertThat(store.selectAllByUserId(1L)).extracting(PointHistory::id).containsExactly(2L, 5L, 6L);
+    assertThat(reopened.selectAllByUserId(1L)).extracting(PointHistory::amount).containsExactly(20L, 50L, 60L);
+    assertThat(reopened.lastId()).isEqualTo(6L);
+  }
+}
@@ -0,0 +1,34 @@
+package io.hhplus.tdd.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.hhplus.tdd.point.PointHistory;
+import io.hhplus.tdd.point.PointHistoryQuery;
+import io.hhplus.tdd.point.TransactionType;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TablePointHistoryStoreTest {
+  private final TablePointHistoryStore store = new TablePointHistoryStore();
+
+  /**
+   * cursor 조회가 유저별 이력 중 cursor 이후의 이력만 limit 건만큼 id 순서대로 반환하는지 확인합니다.
+   */
+  @Test
+  void select_after_cursor_then_only_user_rows_in_order() {
+    // given
+    store.insertAll(List.of(
+        new PointHistory(0, 1L, 100L, TransactionType.CHARGE, 10L),
+        new PointHistory(0, 2L, 500L, TransactionType.CHARGE, 11L),
+        new PointHistory(0, 1L, 40L, TransactionType.USE, 12L),
+        new PointHistory(0, 1L, 70L, TransactionType.CHARGE, 13L),
+        new PointHistory(0, 1L, 30L, TransactionType.USE, 14L)));
+    long cursor = store.selectAllByUserId(1L).get(0).id();
+    // when
+    List<PointHistory> histories = store.selectByUserId(1L, new PointHistoryQuery(cursor, 0, Long.MAX_VALUE, 2)).histories();
+    // then
+    assertThat(histories).extracting(PointHistory::amount).containsExactly(40L, 70L);
+    assertThat(store.selectByUserId(2L, new PointHistoryQuery(0, 0, Long.MAX_VALUE, 10)).histories())
+        .extracting(PointHistory::amount).containsExactly(500L);
+  }
+}
@@ -0,0 +1,28 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+class HistoryResponseCacheTest {
+
+  /**
+   * 보관중인 응답 본문의 바이트 수가 상한을 넘으면 가장 오래 사용되지 않은 응답부터 제거되는지 확인합니다.
+   */
+  @Test
+  void put_over_max_bytes_then_least_recently_used_evicted() {
+    // given
+    // 세그먼트가 16개이므로 같은 세그먼트에 들어가는 유저 id(0, 16, 32)에 세그먼트 몫(100 바이트)을 넘도록 저장
+    HistoryResponseCache cache = new HistoryResponseCache(10_000, 1_600, 1_000);
+    cache.put(0L, MediaType.APPLICATION_JSON, 1L, new HistoryResponseCache.Response("\"1\"", new byte[40]));
+    cache.put(16L, MediaType.APPLICATION_JSON, 1L, new HistoryResponseCache.Response("\"2\"", new byte[40]));
+    cache.get(0L, MediaType.APPLICATION_JSON, 1L);
+    // when
+    cache.put(32L, MediaType.APPLICATION_JSON, 1L, new HistoryResponseCache.Response("\"3\"", new byte[40]));
+    // then
+    assertThat(cache.get(0L, MediaType.APPLICATION_JSON, 1L)).isNotNull();
+    assertThat(cache.get(16L, MediaType.APPLICATION_JSON, 1L)).isNull();
+    assertThat(cache.get(32L, MediaType.APPLICATION_JSON, 1L)).isNotNull();
+  }
+}
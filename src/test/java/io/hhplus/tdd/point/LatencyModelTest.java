@@ -0,0 +1,78 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class LatencyModelTest {
+
+  /**
+   * 같은 seed로 만든 모델은 같은 지연 순서를 만드는지 확인합니다.
+   */
+  @Test
+  void same_seed_then_same_delays() {
+    // given
+    LatencyModel first = LatencyModel.parse("lognormal:5:0.5:0.01:200", 42);
+    LatencyModel second = LatencyModel.parse("lognormal:5:0.5:0.01:200", 42);
+    // when
+    long[] firstDelays = delays(first, 1000);
+    long[] secondDelays = delays(second, 1000);
+    // then
+    assertThat(firstDelays).isEqualTo(secondDelays);
+  }
+
+  /**
+   * fixed는 항상 같은 지연을, uniform은 [min, max) 안의 지연을 만드는지 확인합니다.
+   */
+  @Test
+  void fixed_and_uniform_then_delays_in_range() {
+    // given
+    LatencyModel fixed = LatencyModel.parse("fixed:3", 1);
+    LatencyModel uniform = LatencyModel.parse("uniform:10:20", 1);
+    // when
+    long[] fixedDelays = delays(fixed, 1000);
+    long[] uniformDelays = delays(uniform, 1000);
+    // then
+    assertThat(fixedDelays).containsOnly(3_000_000L);
+    assertThat(Arrays.stream(uniformDelays).min().getAsLong()).isGreaterThanOrEqualTo(10_000_000L);
+    assertThat(Arrays.stream(uniformDelays).max().getAsLong()).isLessThan(20_000_000L);
+    assertThat(LatencyModel.parse("zero", 1).nextDelayNanos()).isZero();
+  }
+
+  /**
+   * lognormal의 중앙값이 설정한 median에 가깝고, spike 확률만큼 긴 지연이 섞이는지 확인합니다.
+   */
+  @Test
+  void lognormal_then_median_and_spikes_match() {
+    // given
+    LatencyModel lognormal = LatencyModel.parse("lognormal:5:0.5:0.01:1000", 7);
+    // when
+    long[] sorted = delays(lognormal, 100_000);
+    Arrays.sort(sorted);
+    long spikes = Arrays.stream(sorted).filter(delay -> delay >= 1_000_000_000L).count();
+    // then
+    assertThat(sorted[sorted.length / 2]).isBetween(4_800_000L, 5_200_000L);
+    assertThat(spikes).isBetween(800L, 1200L);
+  }
+
+  /**
+   * 알 수 없는 모델이나 인자 수가 맞지 않는 설정은 예외가 발생하는지 확인합니다.
+   */
+  @Test
+  void invalid_spec_then_throw_exception() {
+    assertThatThrownBy(() -> LatencyModel.parse("gaussian:1", 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> LatencyModel.parse("uniform:5", 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> LatencyModel.parse("uniform:5:1", 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> LatencyModel.parse("fixed:-1", 1)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static long[] delays(LatencyModel model, int count) {
+    long[] delays = new long[count];
+    for (int i = 0; i < count; i++) {
+      delays[i] = model.nextDelayNanos();
+    }
+    return delays;
+  }
+}
@@ -0,0 +1,73 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class LongBalanceTableTest {
+  private final LongBalanceTable table = new LongBalanceTable();
+
+  /**
+   * 처음 접근하는 키는 초기값에서 시작하고, 이후에는 초기값을 다시 읽지 않는지 확인합니다.
+   */
+  @Test
+  void add_then_starts_from_initial_value() {
+    // when
+    long first = table.addAndGet(1L, 10L, key -> 100L);
+    long second = table.addAndGet(1L, 10L, key -> 0L);
+    // then
+    assertThat(first).isEqualTo(110L);
+    assertThat(second).isEqualTo(120L);
+    assertThat(table.get(1L, -1L)).isEqualTo(120L);
+    assertThat(table.get(2L, -1L)).isEqualTo(-1L);
+  }
+
+  /**
+   * 여러 스레드가 배열 확장이 일어날 만큼 많은 키를 동시에 갱신해도 값이 유실되지 않는지 확인합니다.
+   */
+  @Test
+  void concurrent_add_over_resize_then_no_lost_update() throws InterruptedException {
+    // given
+    int threadCount = 8;
+    int keyCount = 10_000;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch latch = new CountDownLatch(threadCount);
+    // when
+    for (int i = 0; i < threadCount; i++) {
+      executorService.execute(() -> {
+        try {
+          for (long key = 0; key < keyCount; key++) {
+            table.addAndGet(key, 1L, id -> 0L);
+          }
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    executorService.shutdown();
+    // then
+    for (long key = 0; key < keyCount; key++) {
+      assertThat(table.get(key, -1L)).isEqualTo(threadCount);
+    }
+  }
+
+  /**
+   * 갱신 함수가 예외를 던지면 값이 바뀌지 않는지 확인합니다.
+   */
+  @Test
+  void update_throws_then_value_unchanged() {
+    // given
+    table.addAndGet(1L, 100L, key -> 0L);
+    // when
+    assertThatThrownBy(() -> table.updateAndGet(1L, key -> 0L, current -> {
+      throw new IllegalArgumentException("amount is more than balance");
+    })).isInstanceOf(IllegalArgumentException.class);
+    // then
+    assertThat(table.get(1L, -1L)).isEqualTo(100L);
+  }
+}
@@ -0,0 +1,107 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class PointBinaryCodecTest {
+
+  /**
+   * 잔액과 이력 페이지를 쓰고 읽으면 같은 값이 되는지 확인합니다. (음수와 최대값 포함)
+   */
+  @Test
+  void write_then_read_same_value() throws IOException {
+    // given
+    UserPoint userPoint = new UserPoint(Long.MAX_VALUE, -1L, System.currentTimeMillis(), 5L);
+    PointHistoryPage page = new PointHistoryPage(List.of(
+        new PointHistory(10L, 1L, Long.MIN_VALUE, TransactionType.USE, 2_000L),
+        new PointHistory(4L, 1L, 300L, TransactionType.CHARGE, 1_000L)), 4L);
+    PointHistoryPage lastPage = new PointHistoryPage(List.of(), null);
+    // when
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PointBinaryCodec.writeUserPoint(userPoint, out);
+    PointBinaryCodec.writeHistoryPage(page, out);
+    PointBinaryCodec.writeHistoryPage(lastPage, out);
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    // then
+    assertThat(PointBinaryCodec.readUserPoint(in)).isEqualTo(userPoint);
+    assertThat(PointBinaryCodec.readHistoryPage(in)).isEqualTo(page);
+    assertThat(PointBinaryCodec.readHistoryPage(in)).isEqualTo(lastPage);
+    assertThat(in.available()).isZero();
+  }
+
+  /**
+   * 한 유저의 이력은 차이값으로 쓰므로 JSON보다 훨씬 작은지 확인합니다.
+   */
+  @Test
+  void histories_then_smaller_than_json() throws IOException {
+    // given
+    long now = System.currentTimeMillis();
+    List<PointHistory> histories = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      histories.add(new PointHistory(1_000_000L + i, 42L, 1_000L + i,
+          i % 2 == 0 ? TransactionType.CHARGE : TransactionType.USE, now + i));
+    }
+    // when
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PointBinaryCodec.writeHistories(histories, out);
+    byte[] json = new ObjectMapper().writeValueAsBytes(histories);
+    // then
+    assertThat(out.size()).isLessThan(json.length / 5);
+    assertThat(PointBinaryCodec.readHistories(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(histories);
+  }
+
+  /**
+   * 잘린 본문이나 다른 종류의 본문을 읽으면 예외가 발생하는지 확인합니다.
+   */
+  @Test
+  void read_invalid_body_then_fail() throws IOException {
+    // given
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PointBinaryCodec.writeUserPoint(new UserPoint(1L, 100L, 1L), out);
+    byte[] body = out.toByteArray();
+    // when & then
+    assertThatThrownBy(() -> PointBinaryCodec.readUserPoint(
+        new ByteArrayInputStream(Arrays.copyOf(body, body.length - 1))))
+        .isInstanceOf(EOFException.class);
+    assertThatThrownBy(() -> PointBinaryCodec.readHistories(new ByteArrayInputStream(body)))
+        .isInstanceOf(IOException.class);
+  }
+
+  /**
+   * 컨버터로 쓴 이력 목록을 같은 컨버터로 읽으면 같은 값이 되고, 형식이 맞지 않는 본문은 읽지 못하는지 확인합니다.
+   */
+  @Test
+  void converter_write_then_read_same_value() throws IOException {
+    // given
+    PointBinaryHttpMessageConverter converter = new PointBinaryHttpMessageConverter();
+    Type historyList = ResolvableType.forClassWithGenerics(List.class, PointHistory.class).getType();
+    List<PointHistory> histories = List.of(
+        new PointHistory(1L, 7L, 100L, TransactionType.CHARGE, 1_000L),
+        new PointHistory(2L, 7L, 40L, TransactionType.USE, 2_000L));
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+    // when
+    converter.write(histories, historyList, PointBinaryCodec.MEDIA_TYPE, output);
+    byte[] body = output.getBodyAsBytes();
+    // then
+    assertThat(converter.canRead(historyList, null, PointBinaryCodec.MEDIA_TYPE)).isTrue();
+    assertThat(converter.canRead(List.class, null, PointBinaryCodec.MEDIA_TYPE)).isFalse();
+    assertThat(converter.read(historyList, null, new MockHttpInputMessage(body))).isEqualTo(histories);
+    assertThatThrownBy(() -> converter.read(UserPoint.class, null, new MockHttpInputMessage(body)))
+        .isInstanceOf(HttpMessageNotReadableException.class);
+  }
+}
@@ -1,23 +1,39 @@
 package io.hhplus.tdd.point;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 /**
  * 1. ParamerizedTest를 사용하여 임의의 Long 값을 입력받아 테스트했습니다. (각 테스트당 100회씩)
@@ -27,6 +43,7 @@ import org.springframework.test.web.servlet.MockMvc;
  * 3. verify를 사용하여, pointService에서 해당 메소드가 호출되었는지 확인했습니다.
  */
 @WebMvcTest(PointController.class)
+@Import({HistoryResponseCache.class, PointMetrics.class})
 class PointControllerTest {
   @Autowired MockMvc mockMvc;
   @MockBean private PointService pointService;
@@ -58,14 +75,186 @@ class PointControllerTest {
   void history(long id) throws Exception {
     //given
     //when
-    when(pointService.history(id)).thenReturn(List.of());
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(0L, List.of()));
 
     //then
     mockMvc
         .perform(get("/point/{id}/histories", id))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$").isArray());
-    verify(pointService).history(id);
+    verify(pointService).versionedHistory(id);
+  }
+
+  /**
+   * 이력 응답의 ETag가 마지막 이력의 id이고, If-None-Match가 같으면 304로 응답하며 이력을 다시 조회하지 않는지 확인합니다.
+   * 이력 version이 바뀌면 다시 조회하여 새 ETag로 응답합니다.
+   */
+  @Test
+  void historyNotModified() throws Exception {
+    //given
+    long id = 42L;
+    when(pointService.historyVersion(id)).thenReturn(1L);
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(1L, List.of(
+        new PointHistory(3L, id, 100L, TransactionType.CHARGE, 1L),
+        new PointHistory(7L, id, 50L, TransactionType.USE, 2L))));
+    //when
+    mockMvc
+        .perform(get("/point/{id}/histories", id))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"7\""))
+        .andExpect(jsonPath("$[1].id").value(7L));
+    mockMvc
+        .perform(get("/point/{id}/histories", id).header("If-None-Match", "\"7\""))
+        .andExpect(status().isNotModified());
+    when(pointService.historyVersion(id)).thenReturn(2L);
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(2L, List.of(
+        new PointHistory(3L, id, 100L, TransactionType.CHARGE, 1L),
+        new PointHistory(7L, id, 50L, TransactionType.USE, 2L),
+        new PointHistory(9L, id, 10L, TransactionType.USE, 3L))));
+    //then
+    mockMvc
+        .perform(get("/point/{id}/histories", id).header("If-None-Match", "\"7\""))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"9\""))
+        .andExpect(jsonPath("$.length()").value(3));
+    verify(pointService, times(2)).versionedHistory(id);
+  }
+
+  /**
+   * 함께 받은 이력 조회가 요청보다 먼저 시작하여 이전 version의 이력을 읽었으면, 지금의 version으로 캐시하지 않고 다음 요청에서 다시 조회하는지 확인합니다.
+   */
+  @Test
+  void historyLoadedBeforeWriteNotCachedUnderNewVersion() throws Exception {
+    //given
+    long id = 44L;
+    when(pointService.historyVersion(id)).thenReturn(2L);
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(1L, List.of(
+        new PointHistory(3L, id, 100L, TransactionType.CHARGE, 1L))));
+    //when
+    mockMvc
+        .perform(get("/point/{id}/histories", id))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"3\""));
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(2L, List.of(
+        new PointHistory(3L, id, 100L, TransactionType.CHARGE, 1L),
+        new PointHistory(5L, id, 10L, TransactionType.USE, 2L))));
+    //then
+    mockMvc
+        .perform(get("/point/{id}/histories", id).header("If-None-Match", "\"3\""))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"5\""));
+    verify(pointService, times(2)).versionedHistory(id);
+  }
+
+  /**
+   * Accept가 바이너리 형식이면 잔액과 이력을 바이너리로 응답하고, JSON과 ETag를 따로 쓰는지 확인합니다.
+   */
+  @Test
+  void binaryFormat() throws Exception {
+    //given
+    long id = 43L;
+    when(pointService.point(id)).thenReturn(new UserPoint(id, 150L, 2L, 3L));
+    when(pointService.historyVersion(id)).thenReturn(1L);
+    List<PointHistory> histories = List.of(
+        new PointHistory(3L, id, 100L, TransactionType.CHARGE, 1L),
+        new PointHistory(7L, id, 50L, TransactionType.USE, 2L));
+    when(pointService.versionedHistory(id)).thenReturn(new VersionedHistory(1L, histories));
+    //when
+    MvcResult point = mockMvc
+        .perform(get("/point/{id}", id).accept(PointBinaryCodec.MEDIA_TYPE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(PointBinaryCodec.MEDIA_TYPE))
+        .andReturn();
+    MvcResult history = mockMvc
+        .perform(get("/point/{id}/histories", id).accept(PointBinaryCodec.MEDIA_TYPE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(PointBinaryCodec.MEDIA_TYPE))
+        .andExpect(header().string("ETag", "\"7-bin\""))
+        .andExpect(header().string("Vary", "Accept"))
+        .andReturn();
+    //then
+    assertThat(PointBinaryCodec.readUserPoint(
+        new ByteArrayInputStream(point.getResponse().getContentAsByteArray())))
+        .isEqualTo(new UserPoint(id, 150L, 2L, 3L));
+    assertThat(PointBinaryCodec.readHistories(
+        new ByteArrayInputStream(history.getResponse().getContentAsByteArray())))
+        .isEqualTo(histories);
+    mockMvc
+        .perform(get("/point/{id}/histories", id).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"7\""))
+        .andExpect(jsonPath("$[1].id").value(7L));
+  }
+
+  @ParameterizedTest
+  @MethodSource("randomValueSupplier")
+  void historyPage(long id) throws Exception {
+    //given
+    //when
+    PointHistoryPage page = new PointHistoryPage(
+        List.of(new PointHistory(11L, id, 100L, TransactionType.CHARGE, System.currentTimeMillis())), 11L);
+    when(pointService.history(id, 10L, 0L, Long.MAX_VALUE, 1)).thenReturn(page);
+
+    //then
+    mockMvc
+        .perform(get("/point/{id}/histories/page", id)
+            .param("cursor", "10")
+            .param("size", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.histories[0].id").value(11L))
+        .andExpect(jsonPath("$.nextCursor").value(11L));
+    verify(pointService).history(id, 10L, 0L, Long.MAX_VALUE, 1);
+  }
+
+  @ParameterizedTest
+  @MethodSource("randomValueSupplier")
+  void exportHistory(long id) throws Exception {
+    //given
+    PointHistory history = new PointHistory(1L, id, 100L, TransactionType.CHARGE, 10L);
+    //when
+    doAnswer(invocation -> {
+      Consumer<PointHistory> consumer = invocation.getArgument(1);
+      consumer.accept(history);
+      return null;
+    }).when(pointService).exportHistory(eq(id), any());
+
+    //then
+    MvcResult mvcResult = mockMvc
+        .perform(get("/point/{id}/histories/export", id).param("format", "csv"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk())
+        .andExpect(content().string(
+            "id,userId,amount,type,updateMillis\n1," + id + ",100,CHARGE,10\n"));
+    verify(pointService).exportHistory(eq(id), any());
+  }
+
+  /**
+   * JSON lines 내보내기가 이력 조회 응답과 같은 필드로 한 줄에 이력 하나씩 쓰는지 확인합니다.
+   */
+  @Test
+  void exportHistoryJsonl() throws Exception {
+    //given
+    PointHistory history = new PointHistory(1L, 7L, 100L, TransactionType.CHARGE, 10L);
+    //when
+    doAnswer(invocation -> {
+      Consumer<PointHistory> consumer = invocation.getArgument(1);
+      consumer.accept(history);
+      return null;
+    }).when(pointService).exportHistory(eq(7L), any());
+
+    //then
+    MvcResult mvcResult = mockMvc
+        .perform(get("/point/{id}/histories/export", 7L))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk())
+        .andExpect(content().string(
+            "{\"id\":1,\"userId\":7,\"amount\":100,\"type\":\"CHARGE\",\"updateMillis\":10}\n"));
   }
 
   static Stream<Arguments> randomValueMultiSupplier(){
@@ -82,18 +271,23 @@ class PointControllerTest {
 
     //when
     UserPoint userPoint = new UserPoint(userId, amount, System.currentTimeMillis());
-    when(pointService.charge(userId, amount)).thenReturn(userPoint);
+    when(pointService.chargeAsync(userId, amount))
+        .thenReturn(CompletableFuture.completedFuture(userPoint));
 
     //then
-    mockMvc
+    MvcResult mvcResult = mockMvc
         .perform(
             patch("/point/{id}/charge", userId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(String.valueOf(amount)))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value(userId))
         .andExpect(jsonPath("$.point").value(amount));
-    verify(pointService).charge(userId, amount);
+    verify(pointService).chargeAsync(userId, amount);
   }
 
   @ParameterizedTest
@@ -103,17 +297,118 @@ class PointControllerTest {
 
     //when
     UserPoint userPoint = new UserPoint(userId, amount, System.currentTimeMillis());
-    when(pointService.use(userId, amount)).thenReturn(userPoint);
+    when(pointService.useAsync(userId, amount))
+        .thenReturn(CompletableFuture.completedFuture(userPoint));
 
     //then
-    mockMvc
+    MvcResult mvcResult = mockMvc
         .perform(
             patch("/point/{id}/use", userId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(String.valueOf(amount)))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value(userId))
         .andExpect(jsonPath("$.point").value(amount));
-    verify(pointService).use(userId, amount);
+    verify(pointService).useAsync(userId, amount);
+  }
+
+  /**
+   * 일괄 처리 요청시 항목별 결과를 요청 순서대로 응답하는지 확인합니다.
+   */
+  @Test
+  void batch() throws Exception {
+    //given
+    List<PointOperation> operations = List.of(
+        new PointOperation(1L, 100L, TransactionType.CHARGE),
+        new PointOperation(2L, 50L, TransactionType.USE));
+    //when
+    when(pointService.batch(operations)).thenReturn(CompletableFuture.completedFuture(List.of(
+        PointOperationResult.success(operations.get(0), new UserPoint(1L, 100L, System.currentTimeMillis())),
+        PointOperationResult.failure(operations.get(1), "amount is more than balance"))));
+    //then
+    MvcResult mvcResult = mockMvc
+        .perform(
+            post("/point/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"userId\":1,\"amount\":100,\"type\":\"CHARGE\"},"
+                    + "{\"userId\":2,\"amount\":50,\"type\":\"USE\"}]"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].userPoint.point").value(100))
+        .andExpect(jsonPath("$[1].error").value("amount is more than balance"));
+  }
+
+  /**
+   * Idempotency-Key 헤더가 있으면 멱등키와 함께 충전을 요청하는지 확인합니다.
+   */
+  @Test
+  void chargeWithIdempotencyKey() throws Exception {
+    //given
+    //when
+    UserPoint userPoint = new UserPoint(1L, 100L, System.currentTimeMillis());
+    when(pointService.chargeAsync(1L, 100L, "key-1")).thenReturn(CompletableFuture.completedFuture(userPoint));
+    //then
+    MvcResult mvcResult = mockMvc
+        .perform(
+            patch("/point/{id}/charge", 1L)
+                .header("Idempotency-Key", "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("100"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.point").value(100));
+    verify(pointService).chargeAsync(1L, 100L, "key-1");
+  }
+
+  /**
+   * 레인이 가득차서 요청이 거절되면 429와 Retry-After로 응답하는지 확인합니다.
+   */
+  @Test
+  void chargeOverloaded() throws Exception {
+    //given
+    //when
+    when(pointService.chargeAsync(1L, 100L)).thenThrow(new PointOverloadedException("요청이 많아 처리할 수 없습니다."));
+    //then
+    mockMvc
+        .perform(
+            patch("/point/{id}/charge", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("100"))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().string("Retry-After", "1"))
+        .andExpect(jsonPath("$.code").value("429"));
+  }
+
+  /**
+   * 처리 기한까지 결과가 없으면 503으로 응답하는지 확인합니다.
+   */
+  @Test
+  void useTimeout() throws Exception {
+    //given
+    //when
+    when(pointService.useAsync(1L, 100L))
+        .thenReturn(CompletableFuture.failedFuture(new PointTimeoutException("처리 기한까지 결과를 받지 못했습니다.")));
+    //then
+    MvcResult mvcResult = mockMvc
+        .perform(
+            patch("/point/{id}/use", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("100"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(jsonPath("$.code").value("503"));
   }
-}
\ No newline at end of file
+}
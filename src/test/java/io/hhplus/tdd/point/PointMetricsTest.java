@@ -0,0 +1,47 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class PointMetricsTest {
+
+  /**
+   * 처리 시간을 기록하면 Prometheus 형식의 히스토그램 버킷, 횟수, 백분위수가 함께 반환되는지 확인합니다.
+   */
+  @Test
+  void processed_then_scrape_has_histogram_and_percentiles() {
+    // given
+    PointMetrics metrics = new PointMetrics(new SimpleMeterRegistry());
+    QueueEntity request = new QueueEntity(1L, 1L, 100L, TransactionType.CHARGE, Long.MAX_VALUE);
+    // when
+    metrics.processed(request, System.nanoTime() - 1_000_000);
+    // then
+    String scrape = metrics.scrape();
+    assertThat(scrape).contains(
+        "# TYPE point_process_seconds histogram\n",
+        "point_process_seconds_bucket{type=\"charge\",le=\"+Inf\"} 1\n",
+        "point_process_seconds_count{type=\"charge\"} 1\n",
+        "point_process_seconds_percentile{type=\"charge\",quantile=\"0.99\"} ",
+        "# TYPE point_requests_total counter\n");
+  }
+
+  /**
+   * 엔드포인트 응답 시간이 요청 경로가 아닌 URI 패턴과 메서드, 상태 코드별로 기록되는지 확인합니다.
+   */
+  @Test
+  void request_handled_then_timer_per_uri_pattern() {
+    // given
+    PointMetrics metrics = new PointMetrics(new SimpleMeterRegistry());
+    // when
+    metrics.requestHandled("GET", "/point/{id}", 200, 1_000_000);
+    metrics.requestHandled("GET", "/point/{id}", 200, 2_000_000);
+    metrics.requestHandled("PATCH", "/point/{id}/charge", 400, 1_000_000);
+    // then
+    String scrape = metrics.scrape();
+    assertThat(scrape).contains(
+        "point_http_requests_seconds_count{method=\"GET\",status=\"200\",uri=\"/point/{id}\"} 2\n",
+        "point_http_requests_seconds_count{method=\"PATCH\",status=\"400\",uri=\"/point/{id}/charge\"} 1\n");
+  }
+}
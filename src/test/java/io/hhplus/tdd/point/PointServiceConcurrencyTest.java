@@ -1,11 +1,18 @@
 package io.hhplus.tdd.point;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static io.hhplus.tdd.point.TestPointServiceBuilder.pointServiceBuilder;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 /**
  * 해결해야하는 동시성
@@ -18,6 +25,10 @@ import org.junit.jupiter.api.Test;
 public class PointServiceConcurrencyTest {
   private final PointService pointService = new PointService(new PointRepositoryImpl());
 
+  @AfterEach
+  void tearDown() {
+    pointService.shutdown();
+  }
 
   // 레이스컨디션
   @Test
@@ -39,12 +50,125 @@ public class PointServiceConcurrencyTest {
       });
     }
     latch.await();
+    executorService.shutdown();
     // 큐에 있는 작업을 처리
     pointService.queueOperation();
     UserPoint userPoint = pointService.point(userId);
     //then
     assertEquals(initialAmount + 10 * threadCount, userPoint.point());
   }
+  // 요청 스레드에서 바로 처리할때 동시 사용 요청이 잔액을 넘어 차감되지 않는지 확인
+  @Test
+  public void testDirectWriteNoOverdraft() throws InterruptedException {
+    //given
+    PointService directService = pointServiceBuilder().laneCount(4).writeMode("direct").build();
+    long userId = 1L;
+    directService.charge(userId, 100L);
+    int threadCount = 10;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch latch = new CountDownLatch(threadCount);
+    AtomicLong succeeded = new AtomicLong();
+    //when
+    // 10개의 스레드가 동시에 30씩 사용
+    for (int i = 0; i < threadCount; i++) {
+      executorService.execute(() -> {
+        try {
+          directService.use(userId, 30L);
+          succeeded.incrementAndGet();
+        } catch (IllegalArgumentException ignored) {
+          // 잔액 부족으로 거절
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    executorService.shutdown();
+    //then
+    assertEquals(3, succeeded.get());
+    assertEquals(10L, directService.point(userId).point());
+    directService.shutdown();
+  }
+  // 낙관적 동시성 제어로 처리할때 동시 충전이 충돌 후 재시도되어 유실되지 않는지 확인
+  @Test
+  public void testOptimisticWriteNoLostUpdate() throws InterruptedException {
+    //given
+    PointService optimisticService = pointServiceBuilder().laneCount(4).writeMode("optimistic").build();
+    long userId = 1L;
+    int threadCount = 10;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch latch = new CountDownLatch(threadCount);
+    Set<Long> versions = ConcurrentHashMap.newKeySet();
+    //when
+    // 10개의 스레드가 동시에 10씩 충전
+    for (int i = 0; i < threadCount; i++) {
+      executorService.execute(() -> {
+        try {
+          versions.add(optimisticService.charge(userId, 10L).version());
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    executorService.shutdown();
+    //then
+    // 충전마다 한번씩 저장되므로 version도 겹치지 않아야 합니다.
+    assertEquals(10L * threadCount, optimisticService.point(userId).point());
+    assertEquals(threadCount, versions.size());
+    optimisticService.shutdown();
+  }
+  // optimistic 모드에서 다른 인스턴스가 같은 저장소에 저장한 잔액이 바로 조회되는지 확인
+  @Test
+  public void testOptimisticModeReadsOtherInstanceWrites() {
+    //given
+    PointRepository repository = new PointRepositoryImpl();
+    PointService optimisticService = pointServiceBuilder()
+        .repository(repository)
+        .laneCount(4)
+        .writeMode("optimistic")
+        .build();
+    long userId = 1L;
+    optimisticService.charge(userId, 100L);
+    assertEquals(100L, optimisticService.point(userId).point());
+    //when
+    // 다른 인스턴스가 같은 저장소에 compareAndSet으로 저장
+    UserPoint current = repository.selectById(userId);
+    repository.compareAndSet(userId, current.version(), 300L);
+    //then
+    assertEquals(300L, optimisticService.point(userId).point());
+    optimisticService.shutdown();
+  }
+  // 같은 유저에 대한 동시 요청이 각자 자신의 처리 결과를 받는지 확인
+  @Test
+  public void testEachRequestReceivesOwnResult() throws InterruptedException {
+    //given
+    long userId = 1L;
+    pointService.charge(userId, 100L);
+    int threadCount = 10;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch latch = new CountDownLatch(threadCount);
+    Set<Long> results = ConcurrentHashMap.newKeySet();
+    //when
+    // 10개의 스레드가 동시에 10씩 충전하고 각자 결과를 받음
+    for (int i = 0; i < threadCount; i++) {
+      executorService.execute(() -> {
+        try {
+          results.add(pointService.charge(userId, 10L).point());
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+    executorService.shutdown();
+    //then
+    // 각 요청은 자신의 충전 직후 잔액을 받으므로 결과가 겹치지 않아야 합니다.
+    Set<Long> expected = LongStream.rangeClosed(1, threadCount)
+        .mapToObj(i -> 100L + 10 * i)
+        .collect(Collectors.toSet());
+    assertEquals(expected, results);
+  }
   // 데드락
   @Test
   public void testDeadlock() throws InterruptedException {
@@ -70,6 +194,7 @@ public class PointServiceConcurrencyTest {
       latch.countDown();
     });
     latch.await();
+    executorService.shutdown();
     // 큐에 있는 작업을 처리
     pointService.queueOperation();
     UserPoint userPoint1 = pointService.point(userId1);
@@ -104,6 +229,7 @@ public class PointServiceConcurrencyTest {
     });
 
     latch.await();
+    executorService.shutdown();
     // 큐에 있는 작업을 처리
     pointService.queueOperation();
     UserPoint userPoint = pointService.point(userId);
@@ -120,10 +246,13 @@ public class PointServiceConcurrencyTest {
 
     ExecutorService executorService = Executors.newFixedThreadPool(2);
     CountDownLatch latch = new CountDownLatch(2);
+    AtomicLong beforeAmount = new AtomicLong(0);
+    AtomicLong afterAmount = new AtomicLong(0);
     //when
     // 첫번째 스레드는 userId를 조회하고 1초후 다시 조회
     executorService.execute(() -> {
       UserPoint userPoint = pointService.point(userId);
+      beforeAmount.set(userPoint.point());
       try {
         Thread.sleep(1000);
       } catch (InterruptedException e) {
@@ -131,8 +260,7 @@ public class PointServiceConcurrencyTest {
       }
       //Non -repeatable read : 같은 읽기를 반복할수 없는 경우
       UserPoint secondUserPoint = pointService.point(userId);
-      //then
-      assertEquals(userPoint.point(), secondUserPoint.point());
+      afterAmount.set(secondUserPoint.point());
       latch.countDown();
     });
 
@@ -142,8 +270,14 @@ public class PointServiceConcurrencyTest {
     });
 
     latch.await();
+    executorService.shutdown();
     // 큐에 있는 작업을 처리
     pointService.queueOperation();
+    //then
+    // 요청은 들어오는 즉시 처리되므로, 두번째 조회는 충전 전 값 또는 커밋된 충전 후 값만 읽어야 합니다.
+    assertThat(beforeAmount.get()).isIn(100L, 150L);
+    assertThat(afterAmount.get()).isIn(beforeAmount.get(), 150L);
+    assertEquals(150, pointService.point(userId).point());
   }
 
   // 팬텀 읽기
@@ -182,9 +316,13 @@ public class PointServiceConcurrencyTest {
       latch.countDown();
     });
     latch.await();
+    executorService.shutdown();
     // 큐에 있는 작업을 처리
     pointService.queueOperation();
     //then
-    assertEquals(beforeAmount.get(), afterAmount.get());
+    // 요청은 들어오는 즉시 처리되므로, 두번째 조회는 충전 전 값 또는 커밋된 충전 후 값만 읽어야 합니다.
+    assertThat(beforeAmount.get()).isIn(100L, 150L);
+    assertThat(afterAmount.get()).isIn(beforeAmount.get(), 150L);
+    assertEquals(150, pointService.point(userId).point());
   }
 }
\ No newline at end of file
@@ -1,14 +1,39 @@
 package io.hhplus.tdd.point;
 
 import static org.assertj.core.api.Assertions.*;
+import static io.hhplus.tdd.point.TestPointServiceBuilder.pointServiceBuilder;
 import static org.junit.jupiter.api.Assertions.*;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 class PointServiceTest {
   private final PointService pointService = new PointService(new  PointRepositoryImpl());
 
+  @AfterEach
+  void tearDown() {
+    pointService.shutdown();
+  }
+
   /**
    * point 메소드를 일반 입력값을 테스트하고
    * 결과값이 없을때 0이 반환되는지 확인합니다.
@@ -67,8 +92,7 @@ class PointServiceTest {
     // when
     String[] message = new String[1];
     try {
-      pointService.addToQueueByCharge(id, amount);
-      pointService.queueOperation();
+      pointService.charge(id, amount);
     } catch (IllegalArgumentException e) {
       message[0] = e.getMessage();
     }
@@ -106,11 +130,10 @@ class PointServiceTest {
     long id = 1;
     long amount = Long.MAX_VALUE;
     // when
-    pointService.addToQueueByCharge(id, 1L);
+    pointService.charge(id, 1L);
     String[] message = new String[1];
     try{
-      pointService.addToQueueByCharge(id, amount);
-      pointService.queueOperation();
+      pointService.charge(id, amount);
     }
     catch (IllegalArgumentException e){
       message[0] = e.getMessage();
@@ -149,8 +172,7 @@ class PointServiceTest {
     // when
     String[] message = new String[1];
     try {
-      pointService.addToQueueByUse(id, amount);
-      pointService.queueOperation();
+      pointService.use(id, amount);
     } catch (IllegalArgumentException e) {
       message[0] = e.getMessage();
     }
@@ -172,8 +194,7 @@ class PointServiceTest {
     pointService.queueOperation();
     String[] message = new String[1];
     try {
-      pointService.addToQueueByUse(id, useAmount);
-      pointService.queueOperation();
+      pointService.use(id, useAmount);
     } catch (IllegalArgumentException e) {
       message[0] = e.getMessage();
     }
@@ -265,11 +286,586 @@ class PointServiceTest {
     long id = 1;
     long amount = 100;
     // when
-    pointService.addToQueueByCharge(id, amount);
+    QueueEntity request = pointService.addToQueueByCharge(id, amount);
     pointService.queueOperation();
 
-    UserPoint userPoint = pointService.futureMapListener(id);
+    UserPoint userPoint = pointService.futureMapListener(request);
     // then
     assertEquals(amount, userPoint.point());
   }
-}
\ No newline at end of file
+
+  /**
+   * queueOperation 호출 없이도 charge 요청이 즉시 처리되어 결과가 반환되는지 확인합니다.
+   */
+  @Test
+  void charge_without_queue_operation_then_point_results() {
+    // given
+    long id = 1;
+    long amount = 100;
+    // when
+    UserPoint userPoint = pointService.charge(id, amount);
+    // then
+    assertEquals(amount, userPoint.point());
+  }
+
+  /**
+   * history 페이지 조회시 size 건씩 조회되고, 다음 cursor로 나머지 이력이 조회되는지 확인합니다.
+   */
+  @Test
+  void history_page_then_next_cursor_results() {
+    // given
+    long id = 1;
+    for (int i = 0; i < 3; i++) {
+      pointService.addToQueueByCharge(id, 100);
+    }
+    pointService.queueOperation();
+    // when
+    PointHistoryPage first = pointService.history(id, 0, 0, Long.MAX_VALUE, 2);
+    PointHistoryPage second = pointService.history(id, first.nextCursor(), 0, Long.MAX_VALUE, 2);
+    // then
+    assertThat(first.histories()).hasSize(2);
+    assertThat(second.histories()).hasSize(1);
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  /**
+   * 잔액보다 큰 사용 요청은 잔액을 바꾸지 않고 거절되어, 이후 충전이 거절 전 잔액에 더해지는지 확인합니다.
+   */
+  @Test
+  void use_more_than_balance_then_balance_unchanged() {
+    // given
+    long id = 1;
+    pointService.charge(id, 100);
+    // when
+    assertThrows(IllegalArgumentException.class, () -> pointService.use(id, 200));
+    UserPoint userPoint = pointService.charge(id, 50);
+    // then
+    assertEquals(150, userPoint.point());
+  }
+
+  /**
+   * 일괄 처리시 요청 순서대로 항목별 결과가 반환되고, 실패한 항목은 다른 항목에 영향을 주지 않는지 확인합니다.
+   */
+  @Test
+  void batch_then_results_in_request_order() {
+    // given
+    List<PointOperation> operations = List.of(
+        new PointOperation(1, 100, TransactionType.CHARGE),
+        new PointOperation(2, 200, TransactionType.CHARGE),
+        new PointOperation(1, 300, TransactionType.USE),
+        new PointOperation(1, 30, TransactionType.USE));
+    // when
+    List<PointOperationResult> results = pointService.batch(operations).join();
+    // then
+    assertThat(results).extracting(PointOperationResult::userId).containsExactly(1L, 2L, 1L, 1L);
+    assertThat(results.get(0).userPoint().point()).isEqualTo(100);
+    assertThat(results.get(1).userPoint().point()).isEqualTo(200);
+    assertThat(results.get(2).error()).isEqualTo("amount is more than balance");
+    assertThat(results.get(3).userPoint().point()).isEqualTo(70);
+    assertEquals(70, pointService.point(1).point());
+  }
+
+  /**
+   * 일괄 처리시 잘못된 항목은 처리하지 않고 실패로 반환하며, 나머지 항목은 처리되는지 확인합니다.
+   */
+  @Test
+  void batch_with_invalid_items_then_only_invalid_items_failed() {
+    // given
+    List<PointOperation> operations = List.of(
+        new PointOperation(1, 100, null),
+        new PointOperation(1, 100, TransactionType.CHARGE),
+        new PointOperation(0, 100, TransactionType.CHARGE),
+        new PointOperation(1, -50, TransactionType.USE));
+    // when
+    List<PointOperationResult> results = pointService.batch(operations).join();
+    // then
+    assertThat(results).extracting(PointOperationResult::error).containsExactly(
+        "type must not be null", null, "userId must be positive", "amount must be positive");
+    assertThat(results.get(1).userPoint().point()).isEqualTo(100);
+    assertEquals(100, pointService.point(1).point());
+  }
+
+  /**
+   * 같은 멱등키로 다시 요청하면 다시 실행하지 않고 처음 결과를 반환하는지 확인합니다.
+   */
+  @Test
+  void charge_with_same_idempotency_key_then_applied_once() {
+    // given
+    long id = 1;
+    UserPoint first = pointService.chargeAsync(id, 100, "key-1").join();
+    // when
+    UserPoint replayed = pointService.chargeAsync(id, 100, "key-1").join();
+    UserPoint another = pointService.chargeAsync(id, 100, "key-2").join();
+    // then
+    assertEquals(first, replayed);
+    assertEquals(200, another.point());
+    assertThrows(IllegalArgumentException.class, () -> pointService.useAsync(id, 100, "key-1"));
+  }
+
+  /**
+   * 기한이 지나 반영되지 않은 요청은 같은 멱등키로 다시 시도할 수 있는지 확인합니다.
+   */
+  @Test
+  void retry_dropped_request_with_same_idempotency_key_then_applied() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PointService service = blockingService(entered, release, 100);
+    service.addToQueueByCharge(1, 100);
+    entered.await();
+    CompletableFuture<UserPoint> dropped = service.chargeAsync(1, 50, "key-1");
+    assertThatThrownBy(dropped::join).hasCauseInstanceOf(PointTimeoutException.class);
+    release.countDown();
+    service.queueOperation();
+    // when
+    UserPoint retried = service.chargeAsync(1, 50, "key-1").join();
+    // then
+    assertEquals(150, retried.point());
+    service.shutdown();
+  }
+
+  /**
+   * 레인이 가득차면 요청이 PointOverloadedException으로 거절되는지 확인합니다.
+   */
+  @Test
+  void dispatch_to_full_lane_then_overloaded() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PointService service = blockingService(entered, release, 5_000);
+    service.addToQueueByCharge(1, 100);
+    entered.await();
+    service.addToQueueByCharge(1, 100);
+    // when
+    // then
+    assertThrows(PointOverloadedException.class, () -> service.addToQueueByCharge(1, 100));
+    release.countDown();
+    service.shutdown();
+  }
+
+  /**
+   * 일괄 처리중 레인이 가득차 거절된 유저의 이후 항목은, 그 사이 레인에 자리가 나도 거절되는지 확인합니다.
+   */
+  @Test
+  void batch_to_full_lane_then_rejected_user_later_items_rejected() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PointMetrics metrics = spy(new PointMetrics(new SimpleMeterRegistry()));
+    PointService service = blockingService(entered, release, 5_000, metrics);
+    // 첫 거절 직후 레인을 모두 비워서, 다음 항목은 레인에 자리가 있는 상태로 만듦
+    doAnswer(invocation -> {
+      release.countDown();
+      service.queueOperation();
+      return null;
+    }).when(metrics).rejected(PointMetrics.Rejection.OVERLOADED);
+    service.addToQueueByCharge(1, 100);
+    entered.await();
+    List<PointOperation> operations = List.of(
+        new PointOperation(1, 10, TransactionType.CHARGE),
+        new PointOperation(1, 20, TransactionType.CHARGE),
+        new PointOperation(1, 30, TransactionType.CHARGE));
+    // when
+    List<PointOperationResult> results = service.batch(operations).join();
+    // then
+    assertThat(results.get(0).userPoint().point()).isEqualTo(110);
+    assertThat(results.get(1).error()).isEqualTo("요청이 많아 처리할 수 없습니다.");
+    assertThat(results.get(2).error()).isEqualTo("요청이 많아 처리할 수 없습니다.");
+    service.queueOperation();
+    assertEquals(110, service.point(1).point());
+    service.shutdown();
+  }
+
+  /**
+   * 일괄 처리중 레인이 가득차 한번 거절된 뒤로는, 항목마다 enqueueTimeout 동안 기다리지 않고 바로 거절하는지 확인합니다.
+   */
+  @Test
+  void batch_to_full_lane_then_waits_enqueue_timeout_once() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    long enqueueTimeoutMillis = 500;
+    PointService service = pointServiceBuilder()
+        .repository(blockingRepository(entered, release))
+        .maxBatchSize(1)
+        .queueCapacity(1)
+        .enqueueTimeoutMillis(enqueueTimeoutMillis)
+        .build();
+    service.addToQueueByCharge(1, 100);
+    entered.await();
+    service.addToQueueByCharge(1, 100);
+    List<PointOperation> operations = LongStream.rangeClosed(2, 6)
+        .mapToObj(id -> new PointOperation(id, 10, TransactionType.CHARGE))
+        .toList();
+    // when
+    long startNanos = System.nanoTime();
+    List<PointOperationResult> results = service.batch(operations).join();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    // then
+    assertThat(results).extracting(PointOperationResult::error).containsOnly("요청이 많아 처리할 수 없습니다.");
+    assertThat(elapsedMillis).isLessThan(enqueueTimeoutMillis * 2);
+    release.countDown();
+    service.shutdown();
+  }
+
+  /**
+   * 단건 요청도 일괄 처리 항목과 같은 규칙으로 검증되어, 금액이 0이거나 유저 id가 양수가 아니면 거절되는지 확인합니다.
+   */
+  @Test
+  void single_request_validated_with_batch_rules() {
+    // given
+    List<PointOperation> operations = List.of(
+        new PointOperation(1, 0, TransactionType.CHARGE),
+        new PointOperation(0, 100, TransactionType.CHARGE));
+    // when
+    List<PointOperationResult> results = pointService.batch(operations).join();
+    // then
+    assertThat(results).extracting(PointOperationResult::error)
+        .containsExactly("amount must be positive", "userId must be positive");
+    IllegalArgumentException zeroAmount = assertThrows(IllegalArgumentException.class, () -> pointService.charge(1, 0));
+    IllegalArgumentException zeroId = assertThrows(IllegalArgumentException.class, () -> pointService.chargeAsync(0, 100));
+    assertEquals(results.get(0).error(), zeroAmount.getMessage());
+    assertEquals(results.get(1).error(), zeroId.getMessage());
+    assertEquals(0, pointService.point(1).point());
+  }
+
+  /**
+   * 처리 기한까지 결과가 없으면 PointTimeoutException이 발생하고, 레인에서 기한이 지난 요청은 반영되지 않는지 확인합니다.
+   */
+  @Test
+  void wait_past_deadline_then_timeout_and_expired_request_dropped() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PointService service = blockingService(entered, release, 100);
+    service.addToQueueByCharge(1, 100);
+    entered.await();
+    // when
+    QueueEntity queued = service.addToQueueByCharge(1, 50);
+    assertThrows(PointTimeoutException.class, () -> service.futureMapListener(queued));
+    release.countDown();
+    service.queueOperation();
+    // then
+    ExecutionException dropped = assertThrows(ExecutionException.class, queued.future::get);
+    assertThat(dropped.getCause()).isInstanceOf(PointTimeoutException.class);
+    service.shutdown();
+  }
+
+  /**
+   * 이력이 저장될 때마다 유저의 이력 version이 올라가고, 다른 유저의 version은 바뀌지 않는지 확인합니다.
+   */
+  @Test
+  void charge_then_history_version_increased() {
+    // given
+    long before = pointService.historyVersion(1);
+    // when
+    pointService.charge(1, 100);
+    pointService.use(1, 40);
+    // then
+    assertThat(pointService.historyVersion(1)).isGreaterThan(before);
+    assertEquals(0, pointService.historyVersion(2));
+  }
+
+  /**
+   * 처리한 요청 수, 거절 사유, 레인 대기/처리 시간, 저장소 호출 시간이 지표로 기록되는지 확인합니다.
+   */
+  @Test
+  void charge_and_use_then_metrics_recorded() {
+    // given
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    PointService service = pointServiceBuilder().metrics(new PointMetrics(registry)).build();
+    // when
+    service.charge(1, 100);
+    assertThrows(IllegalArgumentException.class, () -> service.use(1, 200));
+    service.queueOperation();
+    // then
+    assertEquals(1, registry.get("point.requests").tag("type", "charge").counter().count());
+    assertEquals(1, registry.get("point.requests").tag("type", "use").counter().count());
+    assertEquals(1, registry.get("point.rejected").tag("reason", "invalid").counter().count());
+    assertEquals(2, registry.get("point.queue.wait").timer().count());
+    assertEquals(1, registry.get("point.process").tag("type", "use").timer().count());
+    assertEquals(0, registry.get("point.queue.depth").tag("lane", "0").gauge().value());
+    assertEquals(1, registry.get("point.repository").tag("method", "insertOrUpdate").timer().count());
+    service.shutdown();
+  }
+
+  /**
+   * 한 유저의 이력 저장과 같은 배치에 있는 다음 유저의 잔액 저장이 동시에 진행되는지 확인합니다.
+   * 둘 다 상대가 시작할 때까지 기다리므로, 차례대로 저장하면 기다리다 실패합니다.
+   */
+  @Test
+  void commit_then_history_write_overlaps_next_user_balance_write() throws InterruptedException {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch bothEntered = new CountDownLatch(2);
+    PointRepository repository = mock(PointRepository.class);
+    doCallRealMethod().when(repository).insertHistoriesAsync(any(), any());
+    when(repository.selectById(anyLong())).thenAnswer(invocation -> UserPoint.empty(invocation.getArgument(0)));
+    when(repository.insertOrUpdate(anyLong(), anyLong())).thenAnswer(invocation -> {
+      long id = invocation.getArgument(0);
+      if (id == 3) {
+        entered.countDown();
+        release.await();
+      } else if (id == 2) {
+        bothEntered.countDown();
+        assertTrue(bothEntered.await(1, TimeUnit.SECONDS));
+      }
+      return new UserPoint(id, invocation.getArgument(1), System.currentTimeMillis(), 1);
+    });
+    doAnswer(invocation -> {
+      List<PointHistory> histories = invocation.getArgument(0);
+      if (histories.get(0).userId() == 1) {
+        bothEntered.countDown();
+        assertTrue(bothEntered.await(1, TimeUnit.SECONDS));
+      }
+      return null;
+    }).when(repository).insertHistories(any());
+    PointService service = pointServiceBuilder().repository(repository).build();
+    // 워커가 유저 3을 처리하는 동안 유저 1, 2의 요청을 쌓아 한 배치로 꺼내지도록 함
+    service.chargeAsync(3, 10);
+    entered.await();
+    CompletableFuture<UserPoint> first = service.chargeAsync(1, 100);
+    CompletableFuture<UserPoint> second = service.chargeAsync(2, 200);
+    // when
+    release.countDown();
+    // then
+    assertEquals(100, first.join().point());
+    assertEquals(200, second.join().point());
+    service.shutdown();
+  }
+
+  /**
+   * 이력 저장이 실패하면 요청이 실패하고, 저장소에 저장했던 잔액도 이전 잔액으로 되돌려지는지 확인합니다.
+   */
+  @Test
+  void history_write_fails_then_request_failed_and_balance_restored() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    PointService service = pointServiceBuilder().repository(repository).build();
+    service.charge(1, 30);
+    doThrow(new IllegalStateException("history store is down")).when(repository).insertHistories(any());
+    // when
+    QueueEntity failed = service.addToQueueByCharge(1, 100);
+    service.queueOperation();
+    // then
+    assertThatThrownBy(failed.future::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertEquals(30, repository.selectById(1).point());
+    assertEquals(30, service.point(1).point());
+    doAnswer(invocation -> invocation.callRealMethod()).when(repository).insertHistories(any());
+    assertEquals(80, service.charge(1, 50).point());
+    service.shutdown();
+  }
+
+  /**
+   * 이력 저장 실패 후 잔액도 되돌리지 못하면, 메모리의 잔액을 저장소와 같게 유지하고 멱등키를 유지하여 재시도가 다시 반영되지 않는지 확인합니다.
+   */
+  @Test
+  void history_write_fails_and_restore_fails_then_balance_kept_and_idempotency_key_kept() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    PointService service = pointServiceBuilder().repository(repository).build();
+    service.charge(1, 30);
+    doThrow(new IllegalStateException("history store is down")).when(repository).insertHistories(any());
+    doCallRealMethod().doThrow(new IllegalStateException("balance store is down"))
+        .when(repository).insertOrUpdate(anyLong(), anyLong());
+    // when
+    assertThatThrownBy(() -> service.chargeAsync(1, 100, "key-1").join())
+        .hasCauseInstanceOf(PointUncompensatedException.class);
+    doCallRealMethod().when(repository).insertHistories(any());
+    doCallRealMethod().when(repository).insertOrUpdate(anyLong(), anyLong());
+    // then
+    assertThatThrownBy(() -> service.chargeAsync(1, 100, "key-1").join())
+        .hasCauseInstanceOf(PointUncompensatedException.class);
+    assertEquals(130, repository.selectById(1).point());
+    assertEquals(130, service.point(1).point());
+    assertEquals(140, service.charge(1, 10).point());
+    service.shutdown();
+  }
+
+  /**
+   * 잔액 저장이 실패하면 요청이 실패하고, 이력은 저장되지 않는지 확인합니다.
+   */
+  @Test
+  void balance_write_fails_then_request_failed_and_history_not_written() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    PointService service = pointServiceBuilder().repository(repository).build();
+    service.charge(1, 30);
+    doThrow(new IllegalStateException("balance store is down")).when(repository).insertOrUpdate(anyLong(), anyLong());
+    // when
+    QueueEntity failed = service.addToQueueByCharge(1, 100);
+    service.queueOperation();
+    // then
+    assertThatThrownBy(failed.future::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertEquals(30, repository.selectById(1).point());
+    assertThat(repository.selectHistories(1)).extracting(PointHistory::amount).containsExactly(30L);
+    service.shutdown();
+  }
+
+  /**
+   * 재분배로 옮겨온 유저는 이전 노드에서 처리된 멱등키로 재시도해도 다시 충전되지 않고, 거절된 요청도 같은 사유로 거절되는지 확인합니다.
+   */
+  @Test
+  void import_user_with_idempotency_entries_then_retry_not_applied_again() {
+    // given
+    PointService source = new PointService(SimulatedPointRepository.withoutLatency());
+    PointService target = new PointService(SimulatedPointRepository.withoutLatency());
+    long id = 1;
+    UserPoint charged = source.chargeAsync(id, 100, "key-1").join();
+    assertThatThrownBy(() -> source.useAsync(id, 500, "key-2").join()).hasCauseInstanceOf(IllegalArgumentException.class);
+    List<IdempotencyEntry> entries = source.idempotencyEntries(Set.of(id)).get(id);
+    // when
+    target.importUser(source.point(id), source.history(id), entries);
+    UserPoint replayed = target.chargeAsync(id, 100, "key-1").join();
+    // then
+    assertThat(entries).hasSize(2);
+    assertEquals(charged, replayed);
+    assertEquals(100, target.point(id).point());
+    assertThatThrownBy(() -> target.useAsync(id, 500, "key-2").join()).hasCauseInstanceOf(IllegalArgumentException.class);
+    assertThat(target.history(id)).hasSize(1);
+    source.shutdown();
+    target.shutdown();
+  }
+
+  /**
+   * 옮겨온 이력은 위치가 아니라 금액, 종류, 시각으로 이미 저장된 이력을 걸러내고, 걸러낼 이력만 있어도 이력 version이 올라가는지 확인합니다.
+   */
+  @Test
+  void import_user_then_stored_rows_skipped_by_identity_and_history_version_increased() {
+    // given
+    PointService service = new PointService(SimulatedPointRepository.withoutLatency());
+    long id = 1;
+    PointHistory charged = new PointHistory(0, id, 100, TransactionType.CHARGE, 10L);
+    PointHistory used = new PointHistory(0, id, 40, TransactionType.USE, 11L);
+    // 옮겨가기 전 이 노드에만 저장된 이력
+    PointHistory local = new PointHistory(0, id, 70, TransactionType.CHARGE, 12L);
+    service.importUser(new UserPoint(id, 170, 12L, 0), List.of(charged, local), List.of());
+    long before = service.historyVersion(id);
+    // when
+    service.importUser(new UserPoint(id, 60, 11L, 0), List.of(charged, used), List.of());
+    long imported = service.historyVersion(id);
+    service.importUser(new UserPoint(id, 60, 11L, 0), List.of(charged, used), List.of());
+    // then
+    assertThat(service.history(id)).extracting(PointHistory::amount).containsExactly(100L, 70L, 40L);
+    assertThat(imported).isGreaterThan(before);
+    assertThat(service.historyVersion(id)).isGreaterThan(imported);
+    assertEquals(60, service.point(id).point());
+    service.shutdown();
+  }
+
+  /**
+   * 이력을 나눠 옮겨올때 앞서 받은 이력과 같은 이력도 저장되고, 옮겨오기 전부터 저장된 이력만 걸러지는지 확인합니다.
+   */
+  @Test
+  void import_histories_in_chunks_then_identical_rows_across_chunks_kept() {
+    // given
+    PointService service = new PointService(SimulatedPointRepository.withoutLatency());
+    long id = 1;
+    PointHistory charged = new PointHistory(0, id, 100, TransactionType.CHARGE, 10L);
+    PointHistory repeated = new PointHistory(0, id, 10, TransactionType.CHARGE, 11L);
+    service.importUser(new UserPoint(id, 100, 10L, 0), List.of(charged), List.of());
+    // when
+    service.importHistories(id, List.of(charged, repeated));
+    service.importHistories(id, List.of(repeated));
+    service.importUser(new UserPoint(id, 120, 11L, 0), List.of(), List.of());
+    // then
+    assertThat(service.history(id)).extracting(PointHistory::amount).containsExactly(100L, 10L, 10L);
+    assertEquals(120, service.point(id).point());
+    service.shutdown();
+  }
+
+  /**
+   * optimistic 모드에서 이력 저장이 실패하면 잔액이 되돌려지고, 같은 멱등키로 재시도하면 한번만 반영되는지 확인합니다.
+   */
+  @Test
+  void optimistic_history_write_fails_then_balance_restored_and_retry_applied_once() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    PointService service = pointServiceBuilder().repository(repository).writeMode("optimistic").build();
+    service.charge(1, 30);
+    doThrow(new IllegalStateException("history store is down"))
+        .when(repository).insertHistory(anyLong(), anyLong(), any(), anyLong());
+    // when
+    assertThatThrownBy(() -> service.chargeAsync(1, 100, "key-1").join()).hasCauseInstanceOf(IllegalStateException.class);
+    doAnswer(invocation -> invocation.callRealMethod())
+        .when(repository).insertHistory(anyLong(), anyLong(), any(), anyLong());
+    UserPoint retried = service.chargeAsync(1, 100, "key-1").join();
+    // then
+    assertEquals(130, retried.point());
+    assertEquals(130, repository.selectById(1).point());
+    service.shutdown();
+  }
+
+  /**
+   * optimistic 모드에서 이력 저장 실패 후 다른 쓰기가 먼저 반영되어 잔액을 되돌리지 못하면, 멱등키를 유지하여 재시도가 다시 반영되지 않는지 확인합니다.
+   */
+  @Test
+  void optimistic_history_write_fails_and_restore_fails_then_idempotency_key_kept() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    PointService service = pointServiceBuilder().repository(repository).writeMode("optimistic").build();
+    doAnswer(invocation -> {
+      // 이력을 저장하기 전에 다른 인스턴스가 잔액을 저장
+      UserPoint current = repository.selectById(1);
+      repository.compareAndSet(1, current.version(), current.point() + 5);
+      throw new IllegalStateException("history store is down");
+    }).when(repository).insertHistory(anyLong(), anyLong(), any(), anyLong());
+    // when
+    assertThatThrownBy(() -> service.chargeAsync(1, 100, "key-1").join())
+        .hasCauseInstanceOf(PointUncompensatedException.class);
+    doAnswer(invocation -> invocation.callRealMethod())
+        .when(repository).insertHistory(anyLong(), anyLong(), any(), anyLong());
+    // then
+    assertThatThrownBy(() -> service.chargeAsync(1, 100, "key-1").join())
+        .hasCauseInstanceOf(PointUncompensatedException.class);
+    assertEquals(105, repository.selectById(1).point());
+    service.shutdown();
+  }
+
+  /**
+   * optimistic 모드에서 compareAndSet이 계속 충돌하면 재시도를 멈추고 PointOverloadedException으로 거절하는지 확인합니다.
+   */
+  @Test
+  void optimistic_write_keeps_conflicting_then_rejected_as_overloaded() {
+    // given
+    PointRepository repository = spy(SimulatedPointRepository.withoutLatency());
+    doReturn(Optional.empty()).when(repository).compareAndSet(anyLong(), anyLong(), anyLong());
+    PointService service = pointServiceBuilder().repository(repository).writeMode("optimistic").build();
+    // when
+    // then
+    assertThatThrownBy(() -> service.chargeAsync(1, 100).join()).hasCauseInstanceOf(PointOverloadedException.class);
+    assertEquals(0, repository.selectById(1).point());
+    service.shutdown();
+  }
+
+  // 레인 1개, 레인 크기 1, 잔액 저장이 release 될때까지 멈추는 저장소를 사용하는 서비스
+  private static PointService blockingService(CountDownLatch entered, CountDownLatch release, long requestTimeoutMillis) {
+    return blockingService(entered, release, requestTimeoutMillis, new PointMetrics(new SimpleMeterRegistry()));
+  }
+
+  private static PointService blockingService(
+      CountDownLatch entered, CountDownLatch release, long requestTimeoutMillis, PointMetrics metrics) {
+    return pointServiceBuilder()
+        .repository(blockingRepository(entered, release))
+        .metrics(metrics)
+        .maxBatchSize(1)
+        .queueCapacity(1)
+        .enqueueTimeoutMillis(0)
+        .requestTimeoutMillis(requestTimeoutMillis)
+        .build();
+  }
+
+  // 잔액 저장이 release 될때까지 멈추는 저장소
+  private static PointRepository blockingRepository(CountDownLatch entered, CountDownLatch release) {
+    PointRepository repository = mock(PointRepository.class);
+    doCallRealMethod().when(repository).insertHistoriesAsync(any(), any());
+    when(repository.selectById(anyLong())).thenReturn(UserPoint.empty(1));
+    when(repository.insertOrUpdate(anyLong(), anyLong())).thenAnswer(invocation -> {
+      entered.countDown();
+      release.await();
+      return new UserPoint(1, invocation.getArgument(1), System.currentTimeMillis(), 1);
+    });
+    return repository;
+  }
+}
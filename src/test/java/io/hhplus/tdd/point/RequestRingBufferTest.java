@@ -0,0 +1,159 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class RequestRingBufferTest {
+
+  /**
+   * 넣은 순서대로 maxBatchSize 개씩 꺼내지는지 확인합니다.
+   */
+  @Test
+  void offer_then_drained_in_order_up_to_batch_size() throws InterruptedException {
+    // given
+    RequestRingBuffer ring = new RequestRingBuffer(8, 3, RequestRingBuffer.WaitStrategy.BLOCKING);
+    for (long sequence = 0; sequence < 5; sequence++) {
+      offer(ring, sequence, 0);
+    }
+    List<QueueEntity> first = new ArrayList<>();
+    List<QueueEntity> second = new ArrayList<>();
+    // when
+    ring.drainTo(first);
+    List<Long> firstSequences = first.stream().map(QueueEntity::getSequence).toList();
+    ring.release();
+    ring.drainTo(second);
+    // then
+    assertThat(firstSequences).containsExactly(0L, 1L, 2L);
+    assertThat(second).extracting(QueueEntity::getSequence).containsExactly(3L, 4L);
+    assertThat(ring.size()).isZero();
+  }
+
+  /**
+   * 기다리기 시작한 시점까지 들어온 요청만 처리되면, 그 뒤에 들어온 요청이 남아있어도 기다림이 끝나는지 확인합니다.
+   */
+  @Test
+  void await_released_then_later_requests_not_waited() throws InterruptedException {
+    // given
+    RequestRingBuffer ring = new RequestRingBuffer(8, 8, RequestRingBuffer.WaitStrategy.BLOCKING);
+    offer(ring, 0, 0);
+    offer(ring, 1, 0);
+    long fence = ring.claimedSequence();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    // when
+    boolean beforeRelease = ring.awaitReleased(fence, System.nanoTime());
+    ring.drainTo(new ArrayList<>());
+    offer(ring, 2, 0);
+    ring.release();
+    // then
+    assertThat(beforeRelease).isFalse();
+    assertThat(ring.awaitReleased(fence, deadline)).isTrue();
+    assertThat(ring.size()).isEqualTo(1);
+  }
+
+  /**
+   * capacity 만큼 쌓이면 timeout 동안 기다린 뒤 실패하고, 꺼내서 자리가 나면 다시 넣을 수 있는지 확인합니다.
+   */
+  @Test
+  void offer_to_full_ring_then_rejected_until_drained() throws InterruptedException {
+    // given
+    RequestRingBuffer ring = new RequestRingBuffer(3, 1, RequestRingBuffer.WaitStrategy.BLOCKING);
+    for (long sequence = 0; sequence < 3; sequence++) {
+      assertThat(offer(ring, sequence, 0)).isTrue();
+    }
+    // when
+    long start = System.nanoTime();
+    boolean rejected = !offer(ring, 3, TimeUnit.MILLISECONDS.toNanos(5));
+    long waited = System.nanoTime() - start;
+    ring.drainTo(new ArrayList<>());
+    // then
+    assertThat(rejected).isTrue();
+    assertThat(waited).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+    assertThat(offer(ring, 3, 0)).isTrue();
+  }
+
+  /**
+   * 미리 만든 슬롯에 요청 값이 복사되고, 꺼낸 슬롯은 release 한 뒤에 비워져 다음 요청에 다시 쓰이는지 확인합니다.
+   */
+  @Test
+  void release_then_slot_reused_for_later_request() throws InterruptedException {
+    // given
+    RequestRingBuffer ring = new RequestRingBuffer(2, 2, RequestRingBuffer.WaitStrategy.BLOCKING);
+    CompletableFuture<UserPoint> future = new CompletableFuture<>();
+    ring.offer(0, 7, 300, TransactionType.USE, Long.MAX_VALUE, future, 0);
+    List<QueueEntity> batch = new ArrayList<>();
+    ring.drainTo(batch);
+    QueueEntity slot = batch.get(0);
+    assertThat(slot.id).isEqualTo(7);
+    assertThat(slot.future).isSameAs(future);
+    // when
+    ring.release();
+    List<QueueEntity> drained = new ArrayList<>();
+    for (long sequence = 1; sequence <= 4; sequence++) {
+      offer(ring, sequence, 0);
+      ring.drainTo(drained);
+      ring.release();
+    }
+    // then
+    assertThat(drained).hasSize(4);
+    assertThat(drained.get(3)).isSameAs(slot);
+    assertThat(slot.future).isNull();
+  }
+
+  /**
+   * 여러 생산자가 동시에 넣어도 대기 방식과 관계없이 모든 요청이 한번씩 꺼내지는지 확인합니다.
+   */
+  @ParameterizedTest
+  @EnumSource(RequestRingBuffer.WaitStrategy.class)
+  void concurrent_offer_then_all_drained_once(RequestRingBuffer.WaitStrategy waitStrategy) throws InterruptedException {
+    // given
+    int threadCount = 4;
+    int perThread = 10_000;
+    RequestRingBuffer ring = new RequestRingBuffer(64, 16, waitStrategy);
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    CountDownLatch latch = new CountDownLatch(threadCount);
+    // when
+    for (int i = 0; i < threadCount; i++) {
+      long base = (long) i * perThread;
+      executorService.execute(() -> {
+        try {
+          for (long sequence = base; sequence < base + perThread; sequence++) {
+            while (!offer(ring, sequence, TimeUnit.MILLISECONDS.toNanos(10))) {
+              // 가득차면 다시 시도
+            }
+          }
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    Set<Long> drained = new HashSet<>();
+    List<QueueEntity> batch = new ArrayList<>();
+    while (drained.size() < threadCount * perThread) {
+      ring.drainTo(batch);
+      batch.forEach(request -> drained.add(request.getSequence()));
+      batch.clear();
+      ring.release();
+    }
+    latch.await();
+    executorService.shutdown();
+    // then
+    assertThat(drained).hasSize(threadCount * perThread);
+    assertThat(ring.size()).isZero();
+  }
+
+  private static boolean offer(RequestRingBuffer ring, long sequence, long timeoutNanos) {
+    return ring.offer(sequence, 1, 100, TransactionType.CHARGE, Long.MAX_VALUE, new CompletableFuture<>(), timeoutNanos);
+  }
+}
@@ -0,0 +1,86 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private final AtomicInteger shared = new AtomicInteger();
+  private final SingleFlight<Long, String> singleFlight = new SingleFlight<>(shared::incrementAndGet);
+
+  /**
+   * 같은 키로 동시에 들어온 조회는 한번만 실행되고, 기다린 요청 모두 같은 결과를 받는지 확인합니다.
+   */
+  @Test
+  void concurrent_load_same_key_then_loaded_once() throws Exception {
+    // given
+    int threadCount = 8;
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    // when
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      results.add(CompletableFuture.supplyAsync(() -> singleFlight.load(1L, key -> {
+        loads.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "value-" + key;
+      }), executorService));
+    }
+    while (shared.get() < threadCount - 1) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+    // then
+    for (CompletableFuture<String> result : results) {
+      assertThat(result.get()).isEqualTo("value-1");
+    }
+    assertThat(loads.get()).isEqualTo(1);
+    executorService.shutdown();
+  }
+
+  /**
+   * 진행중인 조회가 실패하면 기다리던 요청도 같은 예외를 받고, 이후 조회는 다시 실행되는지 확인합니다.
+   */
+  @Test
+  void load_fails_then_waiters_fail_and_next_load_runs() throws Exception {
+    // given
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.load(1L, key -> {
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new IllegalStateException("store is down");
+    }), executorService);
+    entered.await();
+    // when
+    CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> singleFlight.load(1L, key -> "unused"));
+    while (shared.get() < 1) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+    // then
+    assertThatThrownBy(first::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(waiter::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(singleFlight.load(1L, key -> "reloaded")).isEqualTo("reloaded");
+    executorService.shutdown();
+  }
+}
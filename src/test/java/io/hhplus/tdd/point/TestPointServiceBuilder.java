@@ -0,0 +1,87 @@
+package io.hhplus.tdd.point;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// 테스트용 PointService를 만드는 빌더, 바꾸지 않은 설정은 아래의 기본값을 사용
+class TestPointServiceBuilder {
+
+  static final int CACHE_MAX_SIZE = 100;
+  static final long CACHE_TTL_MILLIS = 60_000L;
+  static final int LANE_COUNT = 1;
+  static final int MAX_BATCH_SIZE = 256;
+  static final int QUEUE_CAPACITY = 10_000;
+  static final long ENQUEUE_TIMEOUT_MILLIS = 10L;
+  static final String WAIT_STRATEGY = "blocking";
+  static final long REQUEST_TIMEOUT_MILLIS = 5_000L;
+  static final String WRITE_MODE = "queue";
+  static final int IO_THREADS = 16;
+
+  private PointRepository repository = new PointRepositoryImpl();
+  private PointMetrics metrics = new PointMetrics(new SimpleMeterRegistry());
+  private int laneCount = LANE_COUNT;
+  private int maxBatchSize = MAX_BATCH_SIZE;
+  private int queueCapacity = QUEUE_CAPACITY;
+  private long enqueueTimeoutMillis = ENQUEUE_TIMEOUT_MILLIS;
+  private long requestTimeoutMillis = REQUEST_TIMEOUT_MILLIS;
+  private String writeMode = WRITE_MODE;
+
+  static TestPointServiceBuilder pointServiceBuilder() {
+    return new TestPointServiceBuilder();
+  }
+
+  TestPointServiceBuilder repository(PointRepository repository) {
+    this.repository = repository;
+    return this;
+  }
+
+  TestPointServiceBuilder metrics(PointMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  TestPointServiceBuilder laneCount(int laneCount) {
+    this.laneCount = laneCount;
+    return this;
+  }
+
+  TestPointServiceBuilder maxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  TestPointServiceBuilder queueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  TestPointServiceBuilder enqueueTimeoutMillis(long enqueueTimeoutMillis) {
+    this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    return this;
+  }
+
+  TestPointServiceBuilder requestTimeoutMillis(long requestTimeoutMillis) {
+    this.requestTimeoutMillis = requestTimeoutMillis;
+    return this;
+  }
+
+  TestPointServiceBuilder writeMode(String writeMode) {
+    this.writeMode = writeMode;
+    return this;
+  }
+
+  PointService build() {
+    return new PointService(
+        repository,
+        new UserPointCache(CACHE_MAX_SIZE, CACHE_TTL_MILLIS),
+        new IdempotencyCache(CACHE_MAX_SIZE, CACHE_TTL_MILLIS),
+        metrics,
+        laneCount,
+        maxBatchSize,
+        queueCapacity,
+        enqueueTimeoutMillis,
+        WAIT_STRATEGY,
+        requestTimeoutMillis,
+        writeMode,
+        IO_THREADS);
+  }
+}
@@ -0,0 +1,39 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.Test;
+
+class TimedPointRepositoryTest {
+
+  /**
+   * 비동기 이력 저장을 감싼 저장소의 구현에 위임하고, 완료되면 insertHistories 타이머에 기록하는지 확인합니다.
+   */
+  @Test
+  void insert_histories_async_then_delegated_and_timed() {
+    // given
+    PointRepository delegate = mock(PointRepository.class);
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    when(delegate.insertHistoriesAsync(anyList(), any(Executor.class))).thenReturn(written);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    TimedPointRepository repository = new TimedPointRepository(delegate, registry);
+    List<PointHistory> histories = List.of(new PointHistory(0, 1L, 100L, TransactionType.CHARGE, 10L));
+    // when
+    CompletableFuture<Void> result = repository.insertHistoriesAsync(histories, Runnable::run);
+    written.complete(null);
+    // then
+    assertThat(result).isCompleted();
+    verify(delegate, never()).insertHistories(anyList());
+    assertThat(registry.get("point.repository").tag("method", "insertHistories").timer().count()).isEqualTo(1);
+  }
+}
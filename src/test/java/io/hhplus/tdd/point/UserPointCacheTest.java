@@ -0,0 +1,85 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class UserPointCacheTest {
+
+  /**
+   * put으로 저장한 잔액이 조회되는지 확인합니다.
+   */
+  @Test
+  void put_then_get_results() {
+    // given
+    UserPointCache cache = new UserPointCache(100, 60_000);
+    UserPoint userPoint = new UserPoint(1L, 100L, System.currentTimeMillis());
+    // when
+    cache.put(userPoint);
+    // then
+    assertThat(cache.get(1L)).isEqualTo(userPoint);
+  }
+
+  /**
+   * 캐시 미스로 읽어온 값이 쓰기 경로에서 저장한 값을 덮어쓰지 않는지 확인합니다.
+   */
+  @Test
+  void put_if_absent_does_not_overwrite_written_value() {
+    // given
+    UserPointCache cache = new UserPointCache(100, 60_000);
+    UserPoint written = new UserPoint(1L, 200L, System.currentTimeMillis());
+    UserPoint stale = new UserPoint(1L, 100L, System.currentTimeMillis());
+    // when
+    cache.put(written);
+    cache.putIfAbsent(stale);
+    // then
+    assertThat(cache.get(1L)).isEqualTo(written);
+  }
+
+  /**
+   * 저장 실패로 되돌린 잔액을 캐시에 저장하면, 되돌리기 전에 저장소에서 읽은 잔액이 늦게 반영되어도 덮어쓰지 않는지 확인합니다.
+   */
+  @Test
+  void put_compensated_then_uncommitted_read_not_cached() {
+    // given
+    UserPointCache cache = new UserPointCache(100, 60_000);
+    long now = System.currentTimeMillis();
+    UserPoint uncommitted = new UserPoint(1L, 130L, now, 2);
+    UserPoint compensated = new UserPoint(1L, 30L, now, 3);
+    // when
+    cache.put(compensated);
+    cache.putIfAbsent(uncommitted);
+    // then
+    assertThat(cache.get(1L)).isEqualTo(compensated);
+  }
+
+  /**
+   * TTL이 지난 항목은 조회되지 않는지 확인합니다.
+   */
+  @Test
+  void get_after_ttl_then_no_results() throws InterruptedException {
+    // given
+    UserPointCache cache = new UserPointCache(100, 10);
+    cache.put(new UserPoint(1L, 100L, System.currentTimeMillis()));
+    // when
+    Thread.sleep(50);
+    // then
+    assertThat(cache.get(1L)).isNull();
+  }
+
+  /**
+   * 최대 크기를 넘으면 항목이 제거되는지 확인합니다.
+   */
+  @Test
+  void put_over_max_size_then_evicted() {
+    // given
+    UserPointCache cache = new UserPointCache(16, 60_000);
+    // when
+    // 같은 세그먼트(16개 단위)에 들어가는 id 두개를 저장
+    cache.put(new UserPoint(1L, 100L, System.currentTimeMillis()));
+    cache.put(new UserPoint(17L, 100L, System.currentTimeMillis()));
+    // then
+    assertThat(cache.get(1L)).isNull();
+    assertThat(cache.get(17L)).isNotNull();
+  }
+}
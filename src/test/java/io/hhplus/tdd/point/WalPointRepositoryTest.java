@@ -0,0 +1,248 @@
+package io.hhplus.tdd.point;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.hhplus.tdd.database.IndexedPointHistoryStore;
+import io.hhplus.tdd.database.MappedPointHistoryStore;
+import io.hhplus.tdd.database.TablePointHistoryStore;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WalPointRepositoryTest {
+  @TempDir Path directory;
+
+  private WalPointRepository open(long snapshotEvery) {
+    return new WalPointRepository(
+        new IndexedPointHistoryStore(), directory.toString(), "always", 10, snapshotEvery);
+  }
+
+  /**
+   * 저장소를 닫았다가 다시 열어도 잔액과 이력이 복구되는지 확인합니다.
+   */
+  @Test
+  void reopen_then_balances_and_histories_recovered() {
+    // given
+    WalPointRepository repository = open(1000);
+    repository.insertOrUpdate(1L, 100L);
+    repository.insertHistories(List.of(new PointHistory(0, 1L, 100L, TransactionType.CHARGE, 10L)));
+    repository.insertOrUpdate(1L, 60L);
+    repository.insertHistory(1L, 40L, TransactionType.USE, 11L);
+    repository.close();
+    // when
+    WalPointRepository reopened = open(1000);
+    // then
+    assertThat(reopened.selectById(1L).point()).isEqualTo(60L);
+    assertThat(reopened.selectHistories(1L)).extracting(PointHistory::amount).containsExactly(100L, 40L);
+    reopened.close();
+  }
+
+  /**
+   * 스냅샷 이후의 WAL까지 반영되어 잔액이 복구되는지 확인합니다.
+   */
+  @Test
+  void reopen_after_snapshot_then_balances_recovered() throws IOException {
+    // given
+    WalPointRepository repository = open(3);
+    for (long i = 1; i <= 10; i++) {
+      repository.insertOrUpdate(i % 3, i);
+    }
+    repository.close();
+    // when
+    WalPointRepository reopened = open(3);
+    // then
+    List<String> snapshots;
+    try (Stream<Path> files = Files.list(directory)) {
+      snapshots = files.map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(".snapshot")).sorted().toList();
+    }
+    assertThat(snapshots).hasSize(2);
+    String oldestRetained = snapshots.get(0).replace(".snapshot", ".wal");
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".wal")))
+          .isNotEmpty()
+          .allMatch(name -> name.compareTo(oldestRetained) >= 0);
+    }
+    assertThat(reopened.selectById(0L).point()).isEqualTo(9L);
+    assertThat(reopened.selectById(1L).point()).isEqualTo(10L);
+    assertThat(reopened.selectById(2L).point()).isEqualTo(8L);
+    reopened.close();
+  }
+
+  /**
+   * 세그먼트가 지워진 뒤에도 스냅샷에 담긴 이력과 version이 복구되는지 확인합니다.
+   */
+  @Test
+  void reopen_after_segments_deleted_then_histories_and_versions_recovered() {
+    // given
+    WalPointRepository repository = open(2);
+    for (long i = 1; i <= 6; i++) {
+      repository.insertOrUpdate(1L, i * 10);
+      repository.insertHistory(1L, 10L, TransactionType.CHARGE, i);
+    }
+    long version = repository.selectById(1L).version();
+    repository.close();
+    // when
+    WalPointRepository reopened = open(2);
+    // then
+    assertThat(reopened.selectById(1L).version()).isEqualTo(version);
+    assertThat(reopened.compareAndSet(1L, version, 70L)).isPresent();
+    assertThat(reopened.selectHistories(1L)).extracting(PointHistory::updateMillis)
+        .containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    reopened.close();
+  }
+
+  /**
+   * 스냅샷 전후로 저장한 이력이 재시작 후에도 같은 id로 복구되는지 확인합니다.
+   */
+  @Test
+  void reopen_then_history_ids_kept() {
+    // given
+    WalPointRepository repository = open(3);
+    for (long i = 1; i <= 8; i++) {
+      repository.insertHistory(i % 2, i, TransactionType.CHARGE, i);
+    }
+    List<PointHistory> first = repository.selectHistories(0L);
+    List<PointHistory> second = repository.selectHistories(1L);
+    repository.close();
+    // when
+    WalPointRepository reopened = open(3);
+    reopened.insertHistory(0L, 9L, TransactionType.CHARGE, 9L);
+    // then
+    assertThat(reopened.selectHistories(1L)).isEqualTo(second);
+    assertThat(reopened.selectHistories(0L)).startsWith(first.toArray(PointHistory[]::new));
+    assertThat(reopened.selectHistories(0L).get(first.size()).id()).isEqualTo(9L);
+    reopened.close();
+  }
+
+  /**
+   * 스냅샷마다 직전 스냅샷 이후에 추가된 이력만 이력 세그먼트에 저장하는지 확인합니다.
+   */
+  @Test
+  void snapshot_then_only_new_histories_written() throws IOException {
+    // given
+    WalPointRepository repository = open(1000);
+    for (long i = 1; i <= 10; i++) {
+      repository.insertHistory(1L, i, TransactionType.CHARGE, i);
+    }
+    repository.snapshot();
+    repository.insertHistory(1L, 11L, TransactionType.CHARGE, 11L);
+    // when
+    repository.snapshot();
+    repository.snapshot();
+    repository.close();
+    // then
+    List<Path> segments;
+    try (Stream<Path> files = Files.list(directory)) {
+      segments = files.filter(path -> path.toString().endsWith(".histories")).sorted().toList();
+    }
+    assertThat(segments).hasSize(2);
+    assertThat(Files.size(segments.get(1))).isLessThan(Files.size(segments.get(0)));
+    WalPointRepository reopened = open(1000);
+    assertThat(reopened.selectHistories(1L)).extracting(PointHistory::id)
+        .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L);
+    reopened.close();
+  }
+
+  /**
+   * id를 직접 발급하는 이력 저장소로는 WAL 저장소를 만들 수 없는지 확인합니다.
+   */
+  @Test
+  void open_with_table_history_store_then_rejected() {
+    assertThatThrownBy(() -> new WalPointRepository(
+        new TablePointHistoryStore(), directory.toString(), "always", 10, 1000))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * WAL 끝에 잘린 레코드가 있어도 그 이전까지는 복구되는지 확인합니다.
+   */
+  @Test
+  void reopen_with_torn_tail_then_recovered_until_tail() throws IOException {
+    // given
+    WalPointRepository repository = open(1000);
+    repository.insertOrUpdate(1L, 100L);
+    repository.close();
+    try (Stream<Path> files = Files.list(directory)) {
+      Path segment = files.filter(path -> path.toString().endsWith(".wal")).sorted().toList().get(0);
+      Files.write(segment, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+    }
+    // when
+    WalPointRepository reopened = open(1000);
+    // then
+    assertThat(reopened.selectById(1L).point()).isEqualTo(100L);
+    reopened.close();
+  }
+
+  /**
+   * 영속 이력 저장소에서 스냅샷 이후 디스크에 반영되지 않은 이력은 WAL로 다시 채워지는지 확인합니다.
+   */
+  @Test
+  void reopen_with_unflushed_mapped_rows_then_histories_recovered_from_wal() throws IOException {
+    // given
+    Path historyDirectory = directory.resolve("history");
+    Path walDirectory = directory.resolve("wal");
+    WalPointRepository repository = new WalPointRepository(
+        new MappedPointHistoryStore(historyDirectory.toString(), 16), walDirectory.toString(), "always", 10, 1000);
+    repository.insertHistory(1L, 100L, TransactionType.CHARGE, 10L);
+    repository.snapshot();
+    repository.insertHistory(1L, 40L, TransactionType.USE, 11L);
+    repository.insertHistory(1L, 30L, TransactionType.USE, 12L);
+    repository.close();
+    // 스냅샷 이후의 마지막 행이 디스크에 반영되지 않은 것처럼 행의 id를 지움
+    try (FileChannel channel = FileChannel.open(
+        historyDirectory.resolve("0000000000.history"), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(Long.BYTES), 2L * 40);
+    }
+    // when
+    WalPointRepository reopened = new WalPointRepository(
+        new MappedPointHistoryStore(historyDirectory.toString(), 16), walDirectory.toString(), "always", 10, 1000);
+    // then
+    assertThat(reopened.selectHistories(1L)).extracting(PointHistory::amount).containsExactly(100L, 40L, 30L);
+    reopened.close();
+  }
+
+  /**
+   * 저장된 version과 다른 version으로 compareAndSet 하면 잔액이 바뀌지 않는지 확인합니다.
+   */
+  @Test
+  void compare_and_set_with_stale_version_then_rejected() {
+    // given
+    WalPointRepository repository = open(1000);
+    UserPoint first = repository.insertOrUpdate(1L, 100L);
+    // when
+    Optional<UserPoint> updated = repository.compareAndSet(1L, first.version(), 150L);
+    Optional<UserPoint> stale = repository.compareAndSet(1L, first.version(), 200L);
+    // then
+    assertThat(updated).map(UserPoint::version).contains(first.version() + 1);
+    assertThat(stale).isEmpty();
+    assertThat(repository.selectById(1L).point()).isEqualTo(150L);
+    repository.close();
+  }
+
+  /**
+   * WAL 추가에 실패하면 메모리의 잔액과 version이 바뀌지 않는지 확인합니다.
+   */
+  @Test
+  void append_fails_then_balance_not_published() {
+    // given
+    WalPointRepository repository = open(1000);
+    UserPoint stored = repository.insertOrUpdate(1L, 100L);
+    repository.close();
+    // when
+    // then
+    assertThatThrownBy(() -> repository.insertOrUpdate(1L, 200L)).isInstanceOf(UncheckedIOException.class);
+    assertThat(repository.selectById(1L)).isEqualTo(stored);
+    assertThat(repository.compareAndSet(1L, stored.version() + 1, 300L)).isEmpty();
+  }
+}
@@ -0,0 +1,139 @@
+package io.hhplus.tdd.shard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.hhplus.tdd.TddApplication;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 같은 JVM에 두개의 노드를 띄워, 요청 전달과 재분배를 확인합니다.
+ */
+class ShardRebalanceTest {
+  private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private ConfigurableApplicationContext first;
+  private ConfigurableApplicationContext second;
+
+  @BeforeEach
+  void setUp() {
+    first = start();
+    second = start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    first.close();
+    second.close();
+  }
+
+  /**
+   * 노드를 추가하면 옮겨진 유저의 잔액과 이력이 새 노드에서 조회되고, 어느 노드로 요청해도 같은 결과가 나오는지 확인합니다.
+   */
+  @Test
+  void add_node_then_users_migrated_and_forwarded() throws Exception {
+    // given
+    String firstUrl = urlOf(first);
+    String secondUrl = urlOf(second);
+    // 포트가 매번 달라 유저의 소유 노드도 달라지므로, 노드마다 4명씩 소유하도록 유저를 고름
+    ShardRing ring = new ShardRing(List.of(firstUrl, secondUrl), 128);
+    List<Long> userIds = new ArrayList<>();
+    int movedCount = 0;
+    for (long userId = 1; userIds.size() < 8; userId++) {
+      boolean moves = ring.ownerOf(userId).equals(secondUrl);
+      if (moves ? movedCount < 4 : userIds.size() - movedCount < 4) {
+        userIds.add(userId);
+        movedCount += moves ? 1 : 0;
+      }
+    }
+    for (long userId : userIds) {
+      send(firstUrl, "PATCH", "/point/" + userId + "/charge", String.valueOf(userId * 100));
+    }
+    // when
+    HttpResponse<String> rebalance =
+        send(firstUrl, "PUT", "/shards", "[\"" + firstUrl + "\",\"" + secondUrl + "\"]");
+    // then
+    assertThat(rebalance.statusCode()).isEqualTo(200);
+    for (long userId : userIds) {
+      String expected = "\"point\":" + userId * 100;
+      assertThat(send(firstUrl, "GET", "/point/" + userId, null).body()).contains(expected);
+      assertThat(send(secondUrl, "GET", "/point/" + userId, null).body()).contains(expected);
+      assertThat(send(secondUrl, "GET", "/point/" + userId + "/histories", null).body())
+          .contains("\"amount\":" + userId * 100);
+    }
+    // 옮겨진 유저의 요청은 새 노드에서 처리되어, 새 노드를 거치지 않고 조회해도 반영되어 있어야 합니다.
+    for (long userId : userIds) {
+      send(firstUrl, "PATCH", "/point/" + userId + "/use", "50");
+      String owner = ring.ownerOf(userId);
+      assertThat(send(owner, "GET", "/point/" + userId, null).body()).contains("\"point\":" + (userId * 100 - 50));
+    }
+  }
+
+  /**
+   * 일괄 처리 요청을 받은 노드가 항목을 소유 노드별로 나눠 처리하고, 결과를 요청 순서대로 합쳐 응답하는지 확인합니다.
+   */
+  @Test
+  void batch_then_split_by_owner() throws Exception {
+    // given
+    String firstUrl = urlOf(first);
+    String secondUrl = urlOf(second);
+    send(firstUrl, "PUT", "/shards", "[\"" + firstUrl + "\",\"" + secondUrl + "\"]");
+    int userCount = 8;
+    StringBuilder body = new StringBuilder("[");
+    for (long userId = 1; userId <= userCount; userId++) {
+      body.append(userId == 1 ? "" : ",")
+          .append("{\"userId\":").append(userId).append(",\"amount\":").append(userId * 10)
+          .append(",\"type\":\"CHARGE\"}");
+    }
+    // when
+    HttpResponse<String> response = send(firstUrl, "POST", "/point/batch", body.append("]").toString());
+    // then
+    assertThat(response.statusCode()).isEqualTo(200);
+    ShardRing ring = new ShardRing(List.of(firstUrl, secondUrl), 128);
+    for (long userId = 1; userId <= userCount; userId++) {
+      assertThat(response.body()).contains("\"userId\":" + userId + ",\"amount\":" + userId * 10);
+      assertThat(send(ring.ownerOf(userId), "GET", "/point/" + userId, null).body())
+          .contains("\"point\":" + userId * 10);
+    }
+  }
+
+  /**
+   * 본문을 읽을 수 없는 일괄 처리 요청은 컨트롤러에서 처리할 때와 같이 400으로 응답하는지 확인합니다.
+   */
+  @Test
+  void batch_with_malformed_body_then_bad_request() throws Exception {
+    // given
+    String firstUrl = urlOf(first);
+    // when
+    HttpResponse<String> response = send(firstUrl, "POST", "/point/batch", "[{\"userId\":");
+    // then
+    assertThat(response.statusCode()).isEqualTo(400);
+  }
+
+  private static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(TddApplication.class)
+        .run("--server.port=0", "--point.shard.enabled=true");
+  }
+
+  private static String urlOf(ConfigurableApplicationContext context) {
+    return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+  }
+
+  private HttpResponse<String> send(String node, String method, String path, String body)
+      throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+        .header("Content-Type", "application/json")
+        .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,52 @@
+package io.hhplus.tdd.shard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ShardRingTest {
+
+  /**
+   * 가상 노드로 유저가 노드마다 고르게 분배되는지 확인합니다.
+   */
+  @Test
+  void owner_of_then_users_evenly_distributed() {
+    // given
+    ShardRing ring = new ShardRing(List.of("a", "b", "c"), 128);
+    int userCount = 30_000;
+    // when
+    Map<String, Integer> counts = new HashMap<>();
+    for (long userId = 0; userId < userCount; userId++) {
+      counts.merge(ring.ownerOf(userId), 1, Integer::sum);
+    }
+    // then
+    assertThat(counts).hasSize(3);
+    assertThat(counts.values()).allSatisfy(count ->
+        assertThat(count).isBetween(userCount / 3 * 8 / 10, userCount / 3 * 12 / 10));
+  }
+
+  /**
+   * 노드를 추가하면 새 노드로 옮겨지는 유저만 소유 노드가 바뀌는지 확인합니다.
+   */
+  @Test
+  void add_node_then_only_moved_users_change_owner() {
+    // given
+    ShardRing before = new ShardRing(List.of("a", "b", "c"), 128);
+    ShardRing after = new ShardRing(List.of("a", "b", "c", "d"), 128);
+    int userCount = 30_000;
+    int moved = 0;
+    // when
+    for (long userId = 0; userId < userCount; userId++) {
+      String owner = after.ownerOf(userId);
+      if (!owner.equals(before.ownerOf(userId))) {
+        assertThat(owner).isEqualTo("d");
+        moved++;
+      }
+    }
+    // then
+    assertThat(moved).isBetween(userCount / 4 * 7 / 10, userCount / 4 * 13 / 10);
+  }
+}